@@ -0,0 +1,28 @@
+package com.idp.config;
+
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Caches locaux des données de référence.
+ * Chaque nœud garde sa copie; la cohérence entre nœuds est assurée par
+ * CacheInvalidationService (NOTIFY/LISTEN PostgreSQL).
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String GLOBAL_CONFIG = "globalConfig";
+    public static final String SECURITY_SETTINGS = "securitySettings";
+    public static final String ROLES = "roles";
+    public static final String STATUTS = "statuts";
+
+    @Bean
+    public CacheManager cacheManager() {
+        // Liste fixe: pas de création dynamique de cache pour un nom inconnu
+        return new ConcurrentMapCacheManager(GLOBAL_CONFIG, SECURITY_SETTINGS, ROLES, STATUTS);
+    }
+}
@@ -0,0 +1,26 @@
+package com.idp.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * Mapping JPA selon le backend cartographique.
+ * geo.backend=postgis (défaut): Signalement mappe geom, créée par ddl-auto et tenue à jour par
+ * l'entité. geo.backend=memory: geom est rendue transiente (META-INF/geo-memory-orm.xml) pour
+ * que l'application tourne sur une base sans PostGIS.
+ */
+@Configuration
+public class GeoBackendConfig {
+
+    static final String MAPPING_SANS_GEOM = "META-INF/geo-memory-orm.xml";
+
+    @Bean
+    @ConditionalOnProperty(name = "geo.backend", havingValue = "memory")
+    public HibernatePropertiesCustomizer signalementSansGeom() {
+        return properties -> properties.put("hibernate.orm_xml_files", List.of(MAPPING_SANS_GEOM));
+    }
+}
@@ -2,6 +2,8 @@ package com.idp.config;
 
 import com.idp.entity.Role;
 import com.idp.repository.RoleRepository;
+import com.idp.service.CacheInvalidationService;
+import com.idp.service.SignalementStatsService;
 import com.idp.service.UserService;
 import com.idp.service.StatutAvancementSignalementService;
 
@@ -19,6 +21,8 @@ public class Initializer implements ApplicationRunner {
     private final RoleRepository roleRepository;
     private final UserService userService;
     private final StatutAvancementSignalementService statutService;
+    private final SignalementStatsService signalementStatsService;
+    private final CacheInvalidationService cacheInvalidationService;
 
     @Override
     public void run(ApplicationArguments args) throws Exception {
@@ -40,6 +44,9 @@ public class Initializer implements ApplicationRunner {
         createStatutIfNotExists("EN_COURS", 50);
         createStatutIfNotExists("TERMINE", 100);
         log.info("✅ Initialisation des statuts complétée");
+
+        // Construire l'agrégat des statistiques au premier démarrage
+        signalementStatsService.initialiserSiVide();
     }
 
     private void createRoleIfNotExists(String nom, String description) {
@@ -48,6 +55,7 @@ public class Initializer implements ApplicationRunner {
                     .nom(nom)
                     .build();
             roleRepository.save(role);
+            cacheInvalidationService.invalider(CacheConfig.ROLES, nom);
             log.info("✅ Rôle créé: {}", nom);
         } else {
             log.info("✓ Rôle existe déjà: {}", nom);
@@ -45,6 +45,7 @@ public class SecurityConfig {
                                                                 "/api/users/test/sync-firebase-push",
                                                                                              // signalement
                                                                 "/api/signalements/geo/**", // PostGIS endpoints
+                                                                "/tiles/**", // Tuiles vectorielles de la carte
                                                                 "/api/signalements/statut/**", // Public statut endpoint
                                                                 "/api/signalements",
                                                                 "/api/signalements/stats/recap", // GET tous les signalements
@@ -71,6 +72,9 @@ public class SecurityConfig {
                                                                 "/*.css")
                                                 .permitAll()
 
+                                                // Actuator (santé, métriques): gestionnaires seulement
+                                                .requestMatchers("/actuator/**").hasRole("MANAGER")
+
                                                 // Tous les autres endpoints nécessitent une authentification
                                                 .anyRequest().authenticated())
 
@@ -1,21 +1,30 @@
 package com.idp.controller;
 
 import com.idp.dto.ApiResponse;
+import com.idp.dto.CursorPage;
 import com.idp.dto.SignalementRequest;
 import com.idp.dto.SignalementResponse;
 import com.idp.dto.SignalementRecapResponse;
 import com.idp.dto.DelaiMoyenTraitementResponse;
+import com.idp.dto.GeoClustersResponse;
+import com.idp.dto.NearbySignalementResponse;
+import com.idp.service.SignalementExportService;
+import com.idp.service.SignalementGeoService;
 import com.idp.service.SignalementService;
 import com.idp.service.SyncService;
 import com.idp.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +36,8 @@ import java.util.Map;
 public class SignalementController {
 
     private final SignalementService signalementService;
+    private final SignalementExportService signalementExportService;
+    private final SignalementGeoService signalementGeoService;
     private final SyncService syncService;
     private final UserRepository userRepository;
 
@@ -107,9 +118,19 @@ public class SignalementController {
 
     /**
      * Récupérer tous les signalements
+     * Avec cursor et/ou limit: pagination par curseur (created_at, id)
      */
     @GetMapping
-    public ResponseEntity<ApiResponse<?>> getAllSignalements() {
+    public ResponseEntity<ApiResponse<?>> getAllSignalements(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+
+        if (cursor != null || limit != null) {
+            log.info("Récupération d'une page de signalements (limit={})", limit);
+            CursorPage<SignalementResponse> page = signalementService.getSignalementsPage(cursor, limit);
+            return ResponseEntity.ok(ApiResponse.success(page, "Signalements récupérés avec succès"));
+        }
+
         log.info("Récupération de tous les signalements");
         List<SignalementResponse> signalements = signalementService.getAllSignalements();
 
@@ -135,7 +156,15 @@ public class SignalementController {
     @GetMapping("/utilisateur/mes-signalements")
     @PreAuthorize("hasAnyRole('USER', 'MANAGER')")
     public ResponseEntity<ApiResponse<?>> getMySignalements(
-            Principal principal) {
+            Principal principal,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+
+        if (cursor != null || limit != null) {
+            CursorPage<SignalementResponse> page = signalementService
+                    .getSignalementsPageByUser(principal.getName(), cursor, limit);
+            return ResponseEntity.ok(ApiResponse.success(page, "Signalements récupérés avec succès"));
+        }
 
         log.info("Récupération des signalements de l'utilisateur: {}", principal.getName());
         List<SignalementResponse> signalements = signalementService.getSignalementsByUser(principal.getName());
@@ -148,7 +177,15 @@ public class SignalementController {
      */
     @GetMapping("/statut/{statut}")
     public ResponseEntity<ApiResponse<?>> getSignalementsByStatut(
-            @PathVariable String statut) {
+            @PathVariable String statut,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+
+        if (cursor != null || limit != null) {
+            CursorPage<SignalementResponse> page = signalementService
+                    .getSignalementsPageByStatut(statut, cursor, limit);
+            return ResponseEntity.ok(ApiResponse.success(page, "Signalements récupérés avec succès"));
+        }
 
         log.info("Récupération des signalements avec le statut: {}", statut);
         List<SignalementResponse> signalements = signalementService.getSignalementsByStatut(statut);
@@ -164,7 +201,15 @@ public class SignalementController {
             @RequestParam Double minLat,
             @RequestParam Double maxLat,
             @RequestParam Double minLon,
-            @RequestParam Double maxLon) {
+            @RequestParam Double maxLon,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+
+        if (cursor != null || limit != null) {
+            CursorPage<SignalementResponse> page = signalementService
+                    .getSignalementsPageByGeographicBounds(minLat, maxLat, minLon, maxLon, cursor, limit);
+            return ResponseEntity.ok(ApiResponse.success(page, "Signalements récupérés avec succès"));
+        }
 
         log.info("Récupération des signalements dans la zone: minLat={}, maxLat={}, minLon={}, maxLon={}",
                 minLat, maxLat, minLon, maxLon);
@@ -174,6 +219,60 @@ public class SignalementController {
         return ResponseEntity.ok(ApiResponse.success(signalements, "Signalements récupérés avec succès"));
     }
 
+    /**
+     * Signalements les plus proches d'un point (rayon en mètres), du plus proche au plus lointain
+     */
+    @GetMapping("/geo/nearby")
+    public ResponseEntity<ApiResponse<List<NearbySignalementResponse>>> getSignalementsProches(
+            @RequestParam Double lat,
+            @RequestParam Double lon,
+            @RequestParam(required = false) Double radius,
+            @RequestParam(required = false) Integer k,
+            @RequestParam(required = false) String statut) {
+
+        log.info("Recherche de proximité: lat={}, lon={}, rayon={}, k={}, statut={}", lat, lon, radius, k, statut);
+        List<NearbySignalementResponse> proches = signalementService
+                .getSignalementsProches(lat, lon, radius, k, statut);
+
+        return ResponseEntity.ok(ApiResponse.success(proches, "Signalements proches récupérés avec succès"));
+    }
+
+    /**
+     * Clusters de signalements pour la carte (points individuels à fort zoom)
+     * bbox = minLon,minLat,maxLon,maxLat
+     */
+    @GetMapping("/geo/clusters")
+    public ResponseEntity<ApiResponse<?>> getClusters(
+            @RequestParam String bbox,
+            @RequestParam Integer zoom) {
+
+        log.info("Récupération des clusters: bbox={}, zoom={}", bbox, zoom);
+        GeoClustersResponse clusters = signalementGeoService.getClusters(bbox, zoom);
+
+        return ResponseEntity.ok(ApiResponse.success(clusters, "Clusters récupérés avec succès"));
+    }
+
+    /**
+     * Exporter tous les signalements en flux (ndjson, csv ou geojson)
+     */
+    @GetMapping("/export")
+    @PreAuthorize("hasAnyRole('MANAGER')")
+    public void exportSignalements(
+            @RequestParam(defaultValue = "ndjson") String format,
+            HttpServletResponse response) throws IOException {
+
+        SignalementExportService.ExportFormat exportFormat = SignalementExportService.ExportFormat.fromString(format);
+        log.info("Export des signalements au format {}", exportFormat);
+
+        response.setContentType(exportFormat.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"signalements." + exportFormat.getExtension() + "\"");
+
+        signalementExportService.exporter(exportFormat, response.getOutputStream());
+        response.flushBuffer();
+    }
+
     /**
      * Mettre à jour un signalement
      */
@@ -229,6 +328,20 @@ public class SignalementController {
         return ResponseEntity.ok(ApiResponse.success(recap, "Récapitulatif récupéré avec succès"));
     }
 
+    /**
+     * Reconstruire les statistiques agrégées depuis la table signalements
+     */
+    @PostMapping("/stats/rebuild")
+    @PreAuthorize("hasAnyRole('MANAGER')")
+    public ResponseEntity<ApiResponse<?>> rebuildStats() {
+
+        log.info("Reconstruction des statistiques des signalements");
+        int nbStatuts = signalementService.reconstruireStats();
+
+        return ResponseEntity.ok(ApiResponse.success(Map.of("statuts", nbStatuts),
+                "Statistiques reconstruites avec succès"));
+    }
+
     /**
      * Obtenir les délais moyens de traitement
      */
@@ -0,0 +1,49 @@
+package com.idp.controller;
+
+import com.idp.service.SignalementTileService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tuiles vectorielles (MVT) de la couche signalements pour la carte
+ */
+@RestController
+@RequestMapping("/tiles")
+@RequiredArgsConstructor
+public class TileController {
+
+    private static final MediaType MVT = MediaType.parseMediaType("application/vnd.mapbox-vector-tile");
+
+    private final SignalementTileService signalementTileService;
+
+    @GetMapping("/signalements/{z}/{x}/{y}.mvt")
+    public ResponseEntity<byte[]> getSignalementsTile(
+            @PathVariable int z,
+            @PathVariable int x,
+            @PathVariable int y,
+            WebRequest request) {
+
+        byte[] tuile = signalementTileService.getTile(z, x, y);
+        String etag = "\"" + DigestUtils.md5DigestAsHex(tuile) + "\"";
+
+        // Courte durée: le cache disque est invalidé à chaque modification, le client revalide via l'ETag
+        CacheControl cacheControl = CacheControl.maxAge(60, TimeUnit.SECONDS).cachePublic();
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl).eTag(etag).build();
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MVT)
+                .cacheControl(cacheControl)
+                .eTag(etag)
+                .body(tuile);
+    }
+}
@@ -0,0 +1,23 @@
+package com.idp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Page de résultats paginée par curseur (keyset)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CursorPage<T> {
+
+    private List<T> items;
+    private String nextCursor;   // Curseur opaque à renvoyer pour obtenir la page suivante (null si dernière page)
+    private boolean hasMore;
+    private int limit;
+}
@@ -0,0 +1,22 @@
+package com.idp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Signalement ouvert proche d'un nouveau signalement, doublon possible
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DoublonCandidatResponse {
+
+    private String id;
+    private String titre;
+    private String statut;
+    private Double distanceMetres;
+    private Double similariteTitre;   // Indice de Jaccard sur les mots du titre (0 à 1)
+}
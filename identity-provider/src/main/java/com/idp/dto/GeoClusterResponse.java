@@ -0,0 +1,27 @@
+package com.idp.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Un élément de la carte: cluster de signalements (count > 1) ou signalement isolé (id renseigné)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class GeoClusterResponse {
+
+    private String id;                // Renseigné uniquement pour un signalement individuel
+    private Double latitude;          // Centroïde du cluster ou position du signalement
+    private Double longitude;
+    private Long count;
+    private String statutDominant;    // Statut le plus fréquent dans le cluster
+    private BigDecimal totalBudget;   // prix_m2_global × Σ(niveau × surface_m2)
+}
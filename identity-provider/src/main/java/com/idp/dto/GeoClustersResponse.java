@@ -0,0 +1,20 @@
+package com.idp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GeoClustersResponse {
+
+    private Integer zoom;
+    private Boolean clustered;        // false: chaque élément est un signalement individuel
+    private Double cellSize;          // Taille de la cellule de regroupement (degrés)
+    private List<GeoClusterResponse> items;
+}
@@ -0,0 +1,19 @@
+package com.idp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Signalement proche d'un point, avec sa distance
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class NearbySignalementResponse {
+
+    private Double distanceMetres;    // Distance sur la sphère (grand cercle) au point recherché
+    private SignalementResponse signalement;
+}
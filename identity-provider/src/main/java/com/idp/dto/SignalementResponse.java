@@ -1,5 +1,6 @@
 package com.idp.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -7,6 +8,7 @@ import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @NoArgsConstructor
@@ -47,4 +49,8 @@ public class SignalementResponse {
     private LocalDateTime dateNouveau;      // Date de création (NOUVEAU = 0%)
     private LocalDateTime dateEnCours;      // Date de passage à EN_COURS (50%)
     private LocalDateTime dateTermine;      // Date de passage à TERMINE (100%)
+
+    // Renseigné à la création uniquement: signalements ouverts proches, doublons possibles
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<DoublonCandidatResponse> doublonsPotentiels;
 }
@@ -0,0 +1,73 @@
+package com.idp.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Écriture Firestore en attente (transactional outbox).
+ * La ligne est insérée dans la transaction de l'écriture PostgreSQL: elle n'existe que si
+ * celle-ci est commitée. FirestoreOutboxDispatcher la traite ensuite en arrière-plan,
+ * puis la supprime. Pour un UPSERT, c'est l'état courant de l'entité qui est poussé.
+ */
+@Entity
+@Table(name = "firestore_outbox")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FirestoreOutbox {
+
+    public static final String TYPE_SIGNALEMENT = "SIGNALEMENT";
+    public static final String TYPE_NOTIFICATION = "NOTIFICATION";
+    public static final String TYPE_USER = "USER";
+    public static final String TYPE_SESSION = "SESSION";
+    public static final String TYPE_LOGIN_ATTEMPT = "LOGIN_ATTEMPT";
+
+    public static final String OPERATION_UPSERT = "UPSERT";
+    public static final String OPERATION_DELETE = "DELETE";
+
+    // Séquence: ordre de traitement = ordre d'insertion
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "type_entite", nullable = false, length = 30)
+    private String typeEntite;
+
+    @Column(name = "entite_id", nullable = false, length = 255)
+    private String entiteId;
+
+    @Column(name = "operation", nullable = false, length = 10)
+    private String operation;
+
+    // Renseignés pour un DELETE: l'entité n'existe plus en base
+    @Column(name = "collection", length = 100)
+    private String collection;
+
+    @Column(name = "document_id", length = 255)
+    private String documentId;
+
+    @Column(name = "tentatives", nullable = false)
+    @Builder.Default
+    private Integer tentatives = 0;
+
+    @Column(name = "prochaine_tentative", nullable = false)
+    private LocalDateTime prochaineTentative;
+
+    // Réservée par un nœud jusqu'à cette date (null: disponible)
+    @Column(name = "reserve_jusqu_a")
+    private LocalDateTime reserveJusqua;
+
+    @Column(name = "derniere_erreur", length = 1000)
+    private String derniereErreur;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -1,5 +1,8 @@
 package com.idp.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.idp.event.SignalementModificationPublisher;
+import com.idp.event.SignalementModifieEvent;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
@@ -9,12 +12,17 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.PrecisionModel;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "signalements")
+@EntityListeners(SignalementModificationPublisher.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -42,6 +50,14 @@ public class Signalement {
     @Column(name = "longitude", nullable = false)
     private Double longitude;
 
+    /**
+     * Position PostGIS (WGS84, SRID 4326) dérivée de latitude/longitude.
+     * Indexée en GiST pour les requêtes spatiales (zone, proximité).
+     */
+    @JsonIgnore
+    @Column(name = "geom", columnDefinition = "geometry(Point,4326)")
+    private Point geom;
+
     @Column(name = "surface_m2")
     private BigDecimal surfaceM2;
 
@@ -84,6 +100,10 @@ public class Signalement {
     @Column(name = "last_synced_at")
     private LocalDateTime lastSyncedAt;
 
+    // Champs du document Firebase au dernier push réussi (voir FirestoreEmpreinte)
+    @Column(name = "firestore_snapshot", columnDefinition = "TEXT")
+    private String firestoreSnapshot;
+
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
@@ -91,4 +111,27 @@ public class Signalement {
     @UpdateTimestamp
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
+
+    // État cartographique au chargement, NON persisté - utilisé pour publier les modifications
+    @Transient
+    @JsonIgnore
+    private SignalementModifieEvent.EtatCarte etatCarteCharge;
+
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory(new PrecisionModel(), 4326);
+
+    /**
+     * Garder geom aligné sur latitude/longitude à chaque écriture
+     */
+    @PrePersist
+    @PreUpdate
+    public void synchroniserGeom() {
+        if (latitude == null || longitude == null) {
+            this.geom = null;
+            return;
+        }
+        if (geom == null || geom.getX() != longitude || geom.getY() != latitude) {
+            // Ordre PostGIS: x = longitude, y = latitude
+            this.geom = GEOMETRY_FACTORY.createPoint(new Coordinate(longitude, latitude));
+        }
+    }
 }
\ No newline at end of file
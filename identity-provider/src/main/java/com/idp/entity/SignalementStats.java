@@ -0,0 +1,42 @@
+package com.idp.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Agrégat matérialisé des signalements par statut (une ligne par statut).
+ * Maintenu dans la même transaction que chaque écriture sur signalements,
+ * reconstructible à tout moment depuis la table source.
+ * Le budget n'est pas stocké: budget = prix_m2_global × Σ(niveau × surface_m2)
+ */
+@Entity
+@Table(name = "signalement_stats")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SignalementStats {
+
+    @Id
+    @Column(name = "statut_id", length = 36)
+    private String statutId;
+
+    @Column(name = "nb_signalements", nullable = false)
+    private Long nbSignalements;
+
+    @Column(name = "total_surface_m2", nullable = false, precision = 20, scale = 2)
+    private BigDecimal totalSurfaceM2;
+
+    // Σ(niveau × surface_m2) sur les signalements dont niveau et surface sont définis
+    @Column(name = "total_niveau_surface", nullable = false, precision = 22, scale = 2)
+    private BigDecimal totalNiveauSurface;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,43 @@
+package com.idp.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Document Firestore lu mais pas encore applicable (ex: signalement dont l'utilisateur n'est
+ * pas encore dans PostgreSQL). Le point de reprise du pull l'a dépassé: il est relu par son id
+ * à chaque passage (FirestoreIncrementalPull) jusqu'à ce qu'il s'applique.
+ */
+@Entity
+@Table(name = "sync_reessais",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"collection", "document_id"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SyncReessai {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "collection", nullable = false, length = 100)
+    private String collection;
+
+    @Column(name = "document_id", nullable = false, length = 255)
+    private String documentId;
+
+    @Column(name = "tentatives", nullable = false)
+    @Builder.Default
+    private Integer tentatives = 0;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+}
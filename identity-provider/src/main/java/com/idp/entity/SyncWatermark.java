@@ -0,0 +1,38 @@
+package com.idp.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+/**
+ * Point de reprise du pull incrémental d'une collection Firestore:
+ * dernier document traité dans l'ordre (updatedAt, id du document).
+ */
+@Entity
+@Table(name = "sync_watermarks")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SyncWatermark {
+
+    @Id
+    @Column(name = "collection", length = 100)
+    private String collection;
+
+    // updatedAt (Timestamp Firestore) du dernier document traité
+    @Column(name = "updated_at_max", nullable = false)
+    private Instant updatedAtMax;
+
+    // Départage les documents de même updatedAt ("" = aucun document traité à cet instant)
+    @Column(name = "document_id", nullable = false, length = 255)
+    private String documentId;
+
+    @Column(name = "last_run_at")
+    private LocalDateTime lastRunAt;
+}
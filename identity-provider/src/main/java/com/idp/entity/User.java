@@ -65,6 +65,10 @@ public class User {
     @Column(name = "firebase_uid", length = 128)
     private String firebaseUid;
 
+    // Champs du document Firestore au dernier push réussi (voir FirestoreEmpreinte)
+    @Column(name = "firestore_snapshot", columnDefinition = "TEXT")
+    private String firestoreSnapshot;
+
     @Column(name = "sync_status", length = 20)
     private String syncStatus = "PENDING";
 
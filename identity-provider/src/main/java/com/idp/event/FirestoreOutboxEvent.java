@@ -0,0 +1,8 @@
+package com.idp.event;
+
+/**
+ * Publié à l'insertion d'une entrée dans l'outbox Firestore: après le commit,
+ * le dispatcher est réveillé sans attendre son prochain passage planifié.
+ */
+public record FirestoreOutboxEvent(String typeEntite, String entiteId) {
+}
@@ -0,0 +1,68 @@
+package com.idp.event;
+
+import com.idp.entity.Signalement;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+
+/**
+ * Listener JPA de Signalement: publie un SignalementModifieEvent pour toute écriture,
+ * quel que soit le chemin (service, synchronisation Firebase, type de réparation...).
+ * L'état chargé est mémorisé sur l'entité pour connaître l'ancienne position.
+ */
+@Component
+@RequiredArgsConstructor
+public class SignalementModificationPublisher {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @PostLoad
+    public void apresChargement(Signalement signalement) {
+        signalement.setEtatCarteCharge(etat(signalement));
+    }
+
+    @PostPersist
+    public void apresCreation(Signalement signalement) {
+        SignalementModifieEvent.EtatCarte apres = etat(signalement);
+        signalement.setEtatCarteCharge(apres);
+        eventPublisher.publishEvent(
+                new SignalementModifieEvent(signalement.getId(), signalement.getCreatedAt(), null, apres));
+    }
+
+    @PostUpdate
+    public void apresModification(Signalement signalement) {
+        SignalementModifieEvent.EtatCarte avant = signalement.getEtatCarteCharge();
+        SignalementModifieEvent.EtatCarte apres = etat(signalement);
+        signalement.setEtatCarteCharge(apres);
+        // Les changements sans effet sur la carte (titre, synchronisation...) ne sont pas publiés
+        if (!Objects.equals(avant, apres)) {
+            eventPublisher.publishEvent(
+                    new SignalementModifieEvent(signalement.getId(), signalement.getCreatedAt(), avant, apres));
+        }
+    }
+
+    @PostRemove
+    public void apresSuppression(Signalement signalement) {
+        SignalementModifieEvent.EtatCarte avant = signalement.getEtatCarteCharge() != null
+                ? signalement.getEtatCarteCharge()
+                : etat(signalement);
+        eventPublisher.publishEvent(
+                new SignalementModifieEvent(signalement.getId(), signalement.getCreatedAt(), avant, null));
+    }
+
+    private SignalementModifieEvent.EtatCarte etat(Signalement signalement) {
+        return new SignalementModifieEvent.EtatCarte(
+                signalement.getLatitude(),
+                signalement.getLongitude(),
+                signalement.getStatut() != null ? signalement.getStatut().getId() : null,
+                signalement.getStatut() != null ? signalement.getStatut().getStatut() : null,
+                signalement.getNiveau(),
+                signalement.getSurfaceM2());
+    }
+}
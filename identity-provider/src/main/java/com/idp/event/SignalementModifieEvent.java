@@ -0,0 +1,27 @@
+package com.idp.event;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Un signalement a été créé, modifié (position, statut, niveau ou surface) ou supprimé.
+ * Publié pendant le flush JPA; les consommateurs qui touchent des ressources externes
+ * (tuiles, index en mémoire) l'écoutent après le commit.
+ *
+ * @param avant état cartographique avant l'écriture (null pour une création)
+ * @param apres état cartographique après l'écriture (null pour une suppression)
+ */
+public record SignalementModifieEvent(String signalementId, LocalDateTime createdAt,
+                                      EtatCarte avant, EtatCarte apres) {
+
+    /**
+     * Champs d'un signalement visibles sur la carte
+     */
+    public record EtatCarte(Double latitude, Double longitude, String statutId, String statut,
+                            Integer niveau, BigDecimal surfaceM2) {
+
+        public boolean aUnePosition() {
+            return latitude != null && longitude != null;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.idp.repository;
+
+import com.idp.entity.FirestoreOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface FirestoreOutboxRepository extends JpaRepository<FirestoreOutbox, Long> {
+
+    /**
+     * Écriture identique en attente (non réservée), verrouillée jusqu'au commit de l'appelant:
+     * le dispatcher (SKIP LOCKED) ne peut pas l'envoyer avec l'état d'avant la transaction.
+     * Une réservation en cours de commit est attendue, puis la ligne réservée est écartée.
+     */
+    @Query(value = "SELECT id FROM firestore_outbox " +
+                   "WHERE type_entite = :typeEntite AND entite_id = :entiteId " +
+                   "AND operation = :operation AND reserve_jusqu_a IS NULL " +
+                   "LIMIT 1 " +
+                   "FOR UPDATE",
+           nativeQuery = true)
+    List<Long> verrouillerEnAttente(
+            @Param("typeEntite") String typeEntite,
+            @Param("entiteId") String entiteId,
+            @Param("operation") String operation);
+
+    /**
+     * Entrées prêtes, verrouillées pour la transaction courante.
+     * SKIP LOCKED: plusieurs nœuds se partagent l'outbox sans se bloquer ni traiter deux fois la même ligne.
+     */
+    @Query(value = "SELECT * FROM firestore_outbox " +
+                   "WHERE prochaine_tentative <= :maintenant " +
+                   "AND (reserve_jusqu_a IS NULL OR reserve_jusqu_a < :maintenant) " +
+                   "ORDER BY id " +
+                   "LIMIT :limite " +
+                   "FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<FirestoreOutbox> findPretesPourReservation(
+            @Param("maintenant") LocalDateTime maintenant,
+            @Param("limite") int limite);
+
+    /**
+     * Date d'insertion de la plus ancienne entrée en attente (null si l'outbox est vide)
+     */
+    @Query("SELECT MIN(o.createdAt) FROM FirestoreOutbox o")
+    LocalDateTime findPlusAncienneCreation();
+
+    /**
+     * Libérer une entrée en échec et planifier la prochaine tentative
+     */
+    @Modifying
+    @Query("UPDATE FirestoreOutbox o SET o.tentatives = :tentatives, o.prochaineTentative = :prochaineTentative, " +
+           "o.derniereErreur = :erreur, o.reserveJusqua = NULL WHERE o.id = :id")
+    void reporter(
+            @Param("id") Long id,
+            @Param("tentatives") int tentatives,
+            @Param("prochaineTentative") LocalDateTime prochaineTentative,
+            @Param("erreur") String erreur);
+}
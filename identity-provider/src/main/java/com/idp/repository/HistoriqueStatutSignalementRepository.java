@@ -6,6 +6,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -32,4 +34,71 @@ public interface HistoriqueStatutSignalementRepository extends JpaRepository<His
      */
     @Query("SELECT h FROM HistoriqueStatutSignalement h WHERE h.statutAvancementSignalement.statut = :statut")
     List<HistoriqueStatutSignalement> findAllByStatut(@Param("statut") String statut);
+
+    /**
+     * Dates du premier passage à NOUVEAU / EN_COURS / TERMINE pour un lot de signalements
+     * (une seule requête agrégée au lieu d'un historique complet par signalement)
+     */
+    @Query("SELECT h.signalement.id AS signalementId, " +
+           "MIN(CASE WHEN st.statut = 'NOUVEAU' THEN h.date END) AS dateNouveau, " +
+           "MIN(CASE WHEN st.statut = 'EN_COURS' THEN h.date END) AS dateEnCours, " +
+           "MIN(CASE WHEN st.statut = 'TERMINE' THEN h.date END) AS dateTermine " +
+           "FROM HistoriqueStatutSignalement h JOIN h.statutAvancementSignalement st " +
+           "WHERE h.signalement.id IN :signalementIds " +
+           "GROUP BY h.signalement.id")
+    List<JalonsStatut> findJalonsStatutBySignalementIds(
+            @Param("signalementIds") Collection<String> signalementIds);
+
+    /**
+     * Délais moyens de traitement (en jours) calculés en une seule requête.
+     * Même règle que le calcul Java historique: premier passage à chaque statut,
+     * created_at à défaut d'historique NOUVEAU, durée tronquée à l'heure puis divisée par 24.
+     */
+    @Query(value = "WITH jalons AS (" +
+                   "  SELECT COALESCE(MIN(h.date) FILTER (WHERE st.statut = 'NOUVEAU'), s.created_at) AS date_nouveau, " +
+                   "         MIN(h.date) FILTER (WHERE st.statut = 'EN_COURS') AS date_en_cours, " +
+                   "         MIN(h.date) FILTER (WHERE st.statut = 'TERMINE') AS date_termine " +
+                   "  FROM signalements s " +
+                   "  JOIN historique_statut_signalement h ON h.signalement_id = s.id " +
+                   "  JOIN statut_avancement_signalement st ON st.id = h.statut_id " +
+                   "  GROUP BY s.id, s.created_at" +
+                   ") " +
+                   "SELECT " +
+                   "CAST(AVG(TRUNC(EXTRACT(EPOCH FROM (date_en_cours - date_nouveau)) / 3600) / 24.0) AS double precision) " +
+                   "  AS \"delaiMoyenNouveauEnCours\", " +
+                   "CAST(AVG(TRUNC(EXTRACT(EPOCH FROM (date_termine - date_en_cours)) / 3600) / 24.0) AS double precision) " +
+                   "  AS \"delaiMoyenEnCoursTermine\", " +
+                   "CAST(AVG(TRUNC(EXTRACT(EPOCH FROM (date_termine - date_nouveau)) / 3600) / 24.0) AS double precision) " +
+                   "  AS \"delaiMoyenTraitementTotal\", " +
+                   "COUNT(*) FILTER (WHERE date_nouveau IS NOT NULL AND date_termine IS NOT NULL) " +
+                   "  AS \"nombreSignalementsTraites\" " +
+                   "FROM jalons",
+           nativeQuery = true)
+    DelaisMoyens calculerDelaisMoyens();
+
+    /**
+     * Projection: dates d'avancement d'un signalement
+     */
+    interface JalonsStatut {
+        String getSignalementId();
+
+        LocalDateTime getDateNouveau();
+
+        LocalDateTime getDateEnCours();
+
+        LocalDateTime getDateTermine();
+    }
+
+    /**
+     * Projection: délais moyens de traitement en jours (null si aucun signalement concerné)
+     */
+    interface DelaisMoyens {
+        Double getDelaiMoyenNouveauEnCours();
+
+        Double getDelaiMoyenEnCoursTermine();
+
+        Double getDelaiMoyenTraitementTotal();
+
+        Long getNombreSignalementsTraites();
+    }
 }
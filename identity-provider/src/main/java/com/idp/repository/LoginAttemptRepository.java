@@ -5,6 +5,9 @@ import com.idp.entity.LoginAttempt;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -12,4 +15,10 @@ public interface LoginAttemptRepository extends JpaRepository<LoginAttempt, Stri
     List<LoginAttempt> findByEmailOrderByAttemptedAtDesc(String email);
     List<LoginAttempt> findBySyncStatus(String syncStatus); // AJOUTEZ CETTE LIGNE
 
+    /**
+     * Marquer synchronisée après l'écriture Firestore (dispatcher de l'outbox)
+     */
+    @Modifying
+    @Query("UPDATE LoginAttempt a SET a.syncStatus = 'SYNCED', a.firestoreId = :firestoreId WHERE a.id = :id")
+    int marquerSynchronisee(@Param("id") String id, @Param("firestoreId") String firestoreId);
 }
\ No newline at end of file
@@ -2,6 +2,9 @@ package com.idp.repository;
 
 import com.idp.entity.Notification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -33,4 +36,11 @@ public interface NotificationRepository extends JpaRepository<Notification, Stri
      * Trouver par Firestore ID
      */
     java.util.Optional<Notification> findByFirestoreId(String firestoreId);
+
+    /**
+     * Enregistrer l'id du document Firestore après la première écriture
+     */
+    @Modifying
+    @Query("UPDATE Notification n SET n.firestoreId = :firestoreId WHERE n.id = :id")
+    void definirFirestoreId(@Param("id") String id, @Param("firestoreId") String firestoreId);
 }
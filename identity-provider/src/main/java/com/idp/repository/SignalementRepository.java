@@ -2,13 +2,22 @@ package com.idp.repository;
 
 import com.idp.entity.Signalement;
 import com.idp.entity.StatutAvancementSignalement;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface SignalementRepository extends JpaRepository<Signalement, String> {
@@ -18,15 +27,292 @@ public interface SignalementRepository extends JpaRepository<Signalement, String
     List<Signalement> findByStatut(StatutAvancementSignalement statut);
     
     List<Signalement> findByIsSynchronizedFalse();
+
+    /**
+     * Marquer synchronisé après l'écriture Firebase, si le signalement n'a pas changé depuis sa lecture
+     */
+    @Modifying
+    @Query("UPDATE Signalement s SET s.isSynchronized = true, s.firebaseId = :firebaseId, s.lastSyncedAt = :syncedAt, " +
+           "s.firestoreSnapshot = :empreinte WHERE s.id = :id AND s.updatedAt = :updatedAt")
+    int marquerSynchronise(
+            @Param("id") String id,
+            @Param("firebaseId") String firebaseId,
+            @Param("syncedAt") LocalDateTime syncedAt,
+            @Param("updatedAt") LocalDateTime updatedAt,
+            @Param("empreinte") String empreinte);
+
+    /**
+     * Marquer synchronisé un lot écrit dans Firebase (push-all), sauf les signalements modifiés après luA
+     */
+    @Modifying
+    @Query("UPDATE Signalement s SET s.isSynchronized = true, s.lastSyncedAt = :syncedAt, " +
+           "s.firebaseId = CASE WHEN s.firebaseId IS NULL OR s.firebaseId = '' THEN s.id ELSE s.firebaseId END " +
+           "WHERE s.id IN :ids AND s.updatedAt <= :luA")
+    int marquerSynchronises(
+            @Param("ids") Collection<String> ids,
+            @Param("syncedAt") LocalDateTime syncedAt,
+            @Param("luA") LocalDateTime luA);
+
+    /**
+     * Marquer synchronisé un signalement d'un lot écrit dans Firebase, avec l'empreinte du document écrit
+     */
+    @Modifying
+    @Query("UPDATE Signalement s SET s.isSynchronized = true, s.lastSyncedAt = :syncedAt, " +
+           "s.firebaseId = CASE WHEN s.firebaseId IS NULL OR s.firebaseId = '' THEN s.id ELSE s.firebaseId END, " +
+           "s.firestoreSnapshot = :empreinte WHERE s.id = :id AND s.updatedAt <= :luA")
+    int marquerSynchroniseAvecEmpreinte(
+            @Param("id") String id,
+            @Param("empreinte") String empreinte,
+            @Param("syncedAt") LocalDateTime syncedAt,
+            @Param("luA") LocalDateTime luA);
     
     Optional<Signalement> findByFirebaseId(String firebaseId);
+
+    /**
+     * Signalements déjà importés pour une page de documents Firebase, relations chargées en une requête
+     */
+    @Query("SELECT s FROM Signalement s JOIN FETCH s.statut LEFT JOIN FETCH s.signaleur " +
+           "LEFT JOIN FETCH s.typeReparation WHERE s.firebaseId IN :firebaseIds")
+    List<Signalement> findByFirebaseIdIn(@Param("firebaseIds") Collection<String> firebaseIds);
     
-    @Query("SELECT s FROM Signalement s WHERE s.latitude BETWEEN :minLat AND :maxLat " +
-           "AND s.longitude BETWEEN :minLon AND :maxLon")
+    /**
+     * Signalements dans un rectangle (bornes incluses), servi par l'index GiST sur geom
+     */
+    @Query(value = "SELECT s.* FROM signalements s " +
+                   "WHERE s.geom && ST_MakeEnvelope(:minLon, :minLat, :maxLon, :maxLat, 4326)",
+           nativeQuery = true)
     List<Signalement> findByGeographicBounds(
             @Param("minLat") Double minLat,
             @Param("maxLat") Double maxLat,
             @Param("minLon") Double minLon,
             @Param("maxLon") Double maxLon
     );
+
+    /**
+     * Zone rectangulaire sans PostGIS (colonnes latitude/longitude)
+     */
+    List<Signalement> findByLatitudeBetweenAndLongitudeBetween(
+            Double minLat, Double maxLat, Double minLon, Double maxLon);
+
+    /**
+     * Champs nécessaires à l'index spatial en mémoire, pour tous les signalements
+     */
+    @Query("SELECT s.id AS id, s.latitude AS latitude, s.longitude AS longitude, s.createdAt AS createdAt, " +
+           "st.statut AS statut, s.niveau AS niveau, s.surfaceM2 AS surfaceM2 " +
+           "FROM Signalement s JOIN s.statut st")
+    List<PositionSignalement> findAllPositions();
+
+    @Query("SELECT s.id AS id, s.latitude AS latitude, s.longitude AS longitude, s.createdAt AS createdAt, " +
+           "st.statut AS statut, s.niveau AS niveau, s.surfaceM2 AS surfaceM2 " +
+           "FROM Signalement s JOIN s.statut st WHERE s.id = :id")
+    Optional<PositionSignalement> findPositionById(@Param("id") String id);
+
+    /**
+     * Projection: position d'un signalement pour l'index spatial
+     */
+    interface PositionSignalement {
+        String getId();
+
+        Double getLatitude();
+
+        Double getLongitude();
+
+        LocalDateTime getCreatedAt();
+
+        String getStatut();
+
+        Integer getNiveau();
+
+        BigDecimal getSurfaceM2();
+    }
+
+    // ===== Pagination keyset sur (created_at, id), du plus récent au plus ancien =====
+    // Comparaison de lignes (created_at, id) < (...): PostgreSQL démarre le parcours des index
+    // (created_at DESC, id DESC) de V008 au curseur, au lieu de filtrer depuis le plus récent
+
+    @Query("SELECT s FROM Signalement s ORDER BY s.createdAt DESC, s.id DESC")
+    List<Signalement> findFirstPage(Pageable pageable);
+
+    @Query("SELECT s FROM Signalement s WHERE (s.createdAt, s.id) < (:createdAt, :id) " +
+           "ORDER BY s.createdAt DESC, s.id DESC")
+    List<Signalement> findPageAfter(
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") String id,
+            Pageable pageable);
+
+    @Query("SELECT s FROM Signalement s WHERE s.statut = :statut ORDER BY s.createdAt DESC, s.id DESC")
+    List<Signalement> findFirstPageByStatut(
+            @Param("statut") StatutAvancementSignalement statut,
+            Pageable pageable);
+
+    @Query("SELECT s FROM Signalement s WHERE s.statut = :statut " +
+           "AND (s.createdAt, s.id) < (:createdAt, :id) " +
+           "ORDER BY s.createdAt DESC, s.id DESC")
+    List<Signalement> findPageByStatutAfter(
+            @Param("statut") StatutAvancementSignalement statut,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") String id,
+            Pageable pageable);
+
+    @Query("SELECT s FROM Signalement s WHERE s.signaleur.id = :signaleurId ORDER BY s.createdAt DESC, s.id DESC")
+    List<Signalement> findFirstPageBySignaleurId(
+            @Param("signaleurId") String signaleurId,
+            Pageable pageable);
+
+    @Query("SELECT s FROM Signalement s WHERE s.signaleur.id = :signaleurId " +
+           "AND (s.createdAt, s.id) < (:createdAt, :id) " +
+           "ORDER BY s.createdAt DESC, s.id DESC")
+    List<Signalement> findPageBySignaleurIdAfter(
+            @Param("signaleurId") String signaleurId,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") String id,
+            Pageable pageable);
+
+    @Query(value = "SELECT s.* FROM signalements s " +
+                   "WHERE s.geom && ST_MakeEnvelope(:minLon, :minLat, :maxLon, :maxLat, 4326) " +
+                   "ORDER BY s.created_at DESC, s.id DESC",
+           nativeQuery = true)
+    List<Signalement> findFirstPageByGeographicBounds(
+            @Param("minLat") Double minLat,
+            @Param("maxLat") Double maxLat,
+            @Param("minLon") Double minLon,
+            @Param("maxLon") Double maxLon,
+            Pageable pageable);
+
+    @Query(value = "SELECT s.* FROM signalements s " +
+                   "WHERE s.geom && ST_MakeEnvelope(:minLon, :minLat, :maxLon, :maxLat, 4326) " +
+                   "AND (s.created_at, s.id) < (:createdAt, :id) " +
+                   "ORDER BY s.created_at DESC, s.id DESC",
+           nativeQuery = true)
+    List<Signalement> findPageByGeographicBoundsAfter(
+            @Param("minLat") Double minLat,
+            @Param("maxLat") Double maxLat,
+            @Param("minLon") Double minLon,
+            @Param("maxLon") Double maxLon,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") String id,
+            Pageable pageable);
+
+    // ===== Carte: regroupement côté serveur =====
+
+    /**
+     * Regrouper les signalements d'une zone sur une grille de cellSize degrés
+     */
+    @Query(value = "SELECT COUNT(*) AS \"count\", " +
+                   "AVG(ST_Y(s.geom)) AS \"latitude\", " +
+                   "AVG(ST_X(s.geom)) AS \"longitude\", " +
+                   "MODE() WITHIN GROUP (ORDER BY st.statut) AS \"statutDominant\", " +
+                   "COALESCE(SUM(s.niveau * s.surface_m2), 0) AS \"totalNiveauSurface\", " +
+                   "MIN(s.id) AS \"id\" " +
+                   "FROM signalements s " +
+                   "JOIN statut_avancement_signalement st ON st.id = s.statut_id " +
+                   "WHERE s.geom && ST_MakeEnvelope(:minLon, :minLat, :maxLon, :maxLat, 4326) " +
+                   "GROUP BY ST_SnapToGrid(s.geom, :cellSize)",
+           nativeQuery = true)
+    List<PointCarte> findClustersInBounds(
+            @Param("minLat") Double minLat,
+            @Param("maxLat") Double maxLat,
+            @Param("minLon") Double minLon,
+            @Param("maxLon") Double maxLon,
+            @Param("cellSize") Double cellSize);
+
+    /**
+     * Signalements individuels d'une zone (champs utiles à la carte uniquement)
+     */
+    @Query(value = "SELECT CAST(1 AS bigint) AS \"count\", " +
+                   "s.latitude AS \"latitude\", " +
+                   "s.longitude AS \"longitude\", " +
+                   "st.statut AS \"statutDominant\", " +
+                   "COALESCE(s.niveau * s.surface_m2, 0) AS \"totalNiveauSurface\", " +
+                   "s.id AS \"id\" " +
+                   "FROM signalements s " +
+                   "JOIN statut_avancement_signalement st ON st.id = s.statut_id " +
+                   "WHERE s.geom && ST_MakeEnvelope(:minLon, :minLat, :maxLon, :maxLat, 4326) " +
+                   "LIMIT :maxPoints",
+           nativeQuery = true)
+    List<PointCarte> findPointsInBounds(
+            @Param("minLat") Double minLat,
+            @Param("maxLat") Double maxLat,
+            @Param("minLon") Double minLon,
+            @Param("maxLon") Double maxLon,
+            @Param("maxPoints") int maxPoints);
+
+    /**
+     * Projection: cluster ou signalement isolé sur la carte
+     */
+    interface PointCarte {
+        Long getCount();
+
+        Double getLatitude();
+
+        Double getLongitude();
+
+        String getStatutDominant();
+
+        BigDecimal getTotalNiveauSurface();
+
+        String getId();
+    }
+
+    // ===== Proximité (KNN) =====
+
+    /**
+     * Les k signalements les plus proches d'un point, dans un rayon en mètres.
+     * L'opérateur <-> sur geography (distance sur la sphère) parcourt l'index GiST
+     * idx_signalements_geog par ordre de distance: seules ~k lignes sont lues.
+     */
+    @Query(value = "SELECT s.id AS \"id\", " +
+                   "       ST_Distance(s.geom::geography, p.pt, false) AS \"distance\" " +
+                   "FROM signalements s " +
+                   "JOIN statut_avancement_signalement st ON st.id = s.statut_id, " +
+                   "     (SELECT ST_SetSRID(ST_MakePoint(:lon, :lat), 4326)::geography AS pt) p " +
+                   "WHERE ST_DWithin(s.geom::geography, p.pt, :radius, false) " +
+                   "AND (CAST(:statut AS text) IS NULL OR st.statut = CAST(:statut AS text)) " +
+                   "ORDER BY s.geom::geography <-> p.pt " +
+                   "LIMIT :k",
+           nativeQuery = true)
+    List<Proximite> findNearest(
+            @Param("lat") double lat,
+            @Param("lon") double lon,
+            @Param("radius") double radius,
+            @Param("statut") String statut,
+            @Param("k") int k);
+
+    /**
+     * Comme findNearest, limité à une liste de statuts (ex: signalements encore ouverts)
+     */
+    @Query(value = "SELECT s.id AS \"id\", " +
+                   "       ST_Distance(s.geom::geography, p.pt, false) AS \"distance\" " +
+                   "FROM signalements s " +
+                   "JOIN statut_avancement_signalement st ON st.id = s.statut_id, " +
+                   "     (SELECT ST_SetSRID(ST_MakePoint(:lon, :lat), 4326)::geography AS pt) p " +
+                   "WHERE ST_DWithin(s.geom::geography, p.pt, :radius, false) " +
+                   "AND st.statut IN (:statuts) " +
+                   "ORDER BY s.geom::geography <-> p.pt " +
+                   "LIMIT :k",
+           nativeQuery = true)
+    List<Proximite> findNearestParStatuts(
+            @Param("lat") double lat,
+            @Param("lon") double lon,
+            @Param("radius") double radius,
+            @Param("statuts") Collection<String> statuts,
+            @Param("k") int k);
+
+    /**
+     * Projection: signalement et sa distance (mètres) au point recherché
+     */
+    interface Proximite {
+        String getId();
+
+        Double getDistance();
+    }
+
+    /**
+     * Parcourir tous les signalements en flux (export) - à consommer dans une transaction.
+     * Le fetch size fait lire le curseur JDBC par blocs au lieu de charger toute la table.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT s FROM Signalement s JOIN FETCH s.statut LEFT JOIN FETCH s.signaleur " +
+           "ORDER BY s.createdAt, s.id")
+    Stream<Signalement> streamAllForExport();
 }
@@ -0,0 +1,57 @@
+package com.idp.repository;
+
+import com.idp.entity.SignalementStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+
+@Repository
+public interface SignalementStatsRepository extends JpaRepository<SignalementStats, String> {
+
+    /**
+     * Appliquer un delta sur la ligne d'un statut (upsert atomique, sans lecture préalable)
+     */
+    @Modifying
+    @Query(value = "INSERT INTO signalement_stats " +
+                   "(statut_id, nb_signalements, total_surface_m2, total_niveau_surface, updated_at) " +
+                   "VALUES (:statutId, :deltaNb, :deltaSurface, :deltaNiveauSurface, NOW()) " +
+                   "ON CONFLICT (statut_id) DO UPDATE SET " +
+                   "nb_signalements = signalement_stats.nb_signalements + EXCLUDED.nb_signalements, " +
+                   "total_surface_m2 = signalement_stats.total_surface_m2 + EXCLUDED.total_surface_m2, " +
+                   "total_niveau_surface = signalement_stats.total_niveau_surface + EXCLUDED.total_niveau_surface, " +
+                   "updated_at = NOW()",
+           nativeQuery = true)
+    void appliquerDelta(
+            @Param("statutId") String statutId,
+            @Param("deltaNb") long deltaNb,
+            @Param("deltaSurface") BigDecimal deltaSurface,
+            @Param("deltaNiveauSurface") BigDecimal deltaNiveauSurface);
+
+    // ===== Reconstruction complète =====
+
+    /**
+     * Bloquer les écritures sur signalements (lectures autorisées) pendant la reconstruction
+     */
+    @Modifying
+    @Query(value = "LOCK TABLE signalements, signalement_stats IN SHARE ROW EXCLUSIVE MODE", nativeQuery = true)
+    void verrouillerPourReconstruction();
+
+    @Modifying
+    @Query(value = "DELETE FROM signalement_stats", nativeQuery = true)
+    void viderStats();
+
+    @Modifying
+    @Query(value = "INSERT INTO signalement_stats " +
+                   "(statut_id, nb_signalements, total_surface_m2, total_niveau_surface, updated_at) " +
+                   "SELECT statut_id, COUNT(*), " +
+                   "COALESCE(SUM(surface_m2), 0), " +
+                   "COALESCE(SUM(niveau * surface_m2), 0), " +
+                   "NOW() " +
+                   "FROM signalements GROUP BY statut_id",
+           nativeQuery = true)
+    int reconstruireDepuisSignalements();
+}
@@ -1,6 +1,8 @@
 package com.idp.repository;
 
+import com.idp.config.CacheConfig;
 import com.idp.entity.StatutAvancementSignalement;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -9,5 +11,9 @@ import java.util.Optional;
 @Repository
 public interface StatutAvancementSignalementRepository extends JpaRepository<StatutAvancementSignalement, String> {
     
+    /**
+     * Données de référence: servies par le cache local, invalidé via CacheInvalidationService
+     */
+    @Cacheable(cacheNames = CacheConfig.STATUTS, unless = "#result == null")
     Optional<StatutAvancementSignalement> findByStatut(String statut);
 }
@@ -0,0 +1,27 @@
+package com.idp.repository;
+
+import com.idp.entity.SyncReessai;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface SyncReessaiRepository extends JpaRepository<SyncReessai, Long> {
+
+    List<SyncReessai> findByCollectionAndIdGreaterThanOrderById(String collection, Long apresId, Pageable page);
+
+    /**
+     * Noter un document à relire (sans effet s'il est déjà noté)
+     */
+    @Modifying
+    @Query(value = "INSERT INTO sync_reessais (collection, document_id, tentatives, created_at) " +
+                   "VALUES (:collection, :documentId, 0, NOW()) " +
+                   "ON CONFLICT (collection, document_id) DO NOTHING",
+           nativeQuery = true)
+    void ajouterSiAbsent(@Param("collection") String collection, @Param("documentId") String documentId);
+}
@@ -2,8 +2,13 @@ package com.idp.repository;
 
 import com.idp.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,4 +25,46 @@ public interface UserRepository extends JpaRepository<User, String> {
     
     @Query("SELECT u FROM User u WHERE u.lastFailedLogin < CURRENT_TIMESTAMP - 30 * 60 * 1000 AND u.isLocked = true")
     List<User> findExpiredLockouts();
-}
\ No newline at end of file
+
+    /**
+     * Identifiants Firebase obtenus lors d'une synchronisation
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.firebaseUid = :firebaseUid, u.firestoreId = :firestoreId WHERE u.id = :id")
+    void definirIdentifiantsFirebase(
+            @Param("id") String id,
+            @Param("firebaseUid") String firebaseUid,
+            @Param("firestoreId") String firestoreId);
+
+    /**
+     * Marquer synchronisé (et oublier le mot de passe chiffré) si l'utilisateur n'a pas changé depuis sa lecture,
+     * avec l'empreinte du document écrit
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.syncStatus = 'SYNCED', u.encryptedPassword = NULL, u.firestoreSnapshot = :empreinte " +
+           "WHERE u.id = :id AND u.updatedAt = :updatedAt")
+    int marquerSynchronise(
+            @Param("id") String id,
+            @Param("updatedAt") LocalDateTime updatedAt,
+            @Param("empreinte") String empreinte);
+
+    /**
+     * Marquer SYNCED un lot écrit dans Firestore (push-all), sauf les utilisateurs modifiés après luA
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.syncStatus = 'SYNCED', u.encryptedPassword = NULL " +
+           "WHERE u.id IN :ids AND u.updatedAt <= :luA")
+    int marquerSynchronises(@Param("ids") Collection<String> ids, @Param("luA") LocalDateTime luA);
+
+    /**
+     * Marquer SYNCED un utilisateur d'un lot écrit dans Firestore, avec l'empreinte du document écrit
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.syncStatus = 'SYNCED', u.encryptedPassword = NULL, u.firestoreSnapshot = :empreinte " +
+           "WHERE u.id = :id AND u.updatedAt <= :luA")
+    int marquerSynchroniseAvecEmpreinte(
+            @Param("id") String id,
+            @Param("empreinte") String empreinte,
+            @Param("luA") LocalDateTime luA);
+}
@@ -2,7 +2,9 @@ package com.idp.repository;
 
 import com.idp.entity.UserSession;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -23,4 +25,11 @@ public interface UserSessionRepository extends JpaRepository<UserSession, String
 
     @Query("SELECT s FROM UserSession s WHERE s.isValid = true AND s.expiresAt > CURRENT_TIMESTAMP")
     List<UserSession> findActiveSessions();
+
+    /**
+     * Marquer synchronisée après l'écriture Firestore (dispatcher de l'outbox)
+     */
+    @Modifying
+    @Query("UPDATE UserSession s SET s.syncStatus = 'SYNCED', s.firestoreId = :firestoreId WHERE s.id = :id")
+    int marquerSynchronisee(@Param("id") String id, @Param("firestoreId") String firestoreId);
 }
\ No newline at end of file
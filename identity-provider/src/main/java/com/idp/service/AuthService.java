@@ -10,7 +10,6 @@ import com.idp.exception.*;
 import com.idp.repository.RoleRepository;
 import com.idp.repository.UserRepository;
 import com.idp.repository.UserSessionRepository;
-import com.idp.repository.LoginAttemptRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -29,7 +28,7 @@ public class AuthService {
 
     private final UserRepository userRepository;
     private final UserSessionRepository sessionRepository;
-    private final LoginAttemptRepository loginAttemptRepository;
+    private final LoginAttemptBuffer loginAttemptBuffer;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
     private final JwtService jwtService;
@@ -174,7 +173,8 @@ public class AuthService {
         // Log la connexion réussie
         createLoginAttemptInPostgres(user, email, true, ipAddress, userAgent, null);
 
-        // Sync utilisateur vers Firestore (POSTGRESQL → Firestore)
+        // Sync utilisateur vers Firestore (POSTGRESQL → Firestore): utilisateur, session et tentative
+        // passent par l'outbox, envoyés après le commit; la connexion n'attend pas Firestore
         syncService.syncUserToFirestore(user);
 
         return AuthResponse.builder()
@@ -263,11 +263,9 @@ public class AuthService {
         attempt.setAttemptedAt(LocalDateTime.now());
 
         try {
-            LoginAttempt savedAttempt = loginAttemptRepository.save(attempt);
-            log.info("✅ LoginAttempt sauvegardé dans PostgreSQL: id={}", savedAttempt.getId());
-
-            // Sync vers Firestore (POSTGRESQL → Firestore)
-            syncService.syncLoginAttemptToFirestore(savedAttempt);
+            // Écriture différée par lots, avec l'entrée d'outbox (POSTGRESQL → Firestore)
+            loginAttemptBuffer.enregistrer(attempt);
+            log.info("✅ LoginAttempt mis en file pour PostgreSQL: id={}", attempt.getId());
 
         } catch (Exception e) {
             log.error("❌ ERREUR sauvegarde LoginAttempt: {}", e.getMessage());
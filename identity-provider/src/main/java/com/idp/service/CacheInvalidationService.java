@@ -0,0 +1,227 @@
+package com.idp.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Bus d'invalidation des caches locaux entre les nœuds, via NOTIFY/LISTEN PostgreSQL.
+ *
+ * Publication: pg_notify est exécuté dans la transaction de l'écriture, PostgreSQL ne
+ * délivre donc la notification qu'au commit (rien n'est envoyé en cas de rollback).
+ * Le nœud émetteur évince sa propre copie à la fin de la transaction.
+ *
+ * Réception: un thread dédié garde une connexion en LISTEN. Après une coupure,
+ * tous les caches sont vidés puisque des notifications ont pu être perdues.
+ *
+ * En plus des caches Spring, des caches externes (tuiles sur disque...) peuvent s'abonner
+ * à un nom via enregistrerEcouteur: une clé vide signifie "tout vider".
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CacheInvalidationService implements SmartLifecycle {
+
+    public static final String CHANNEL = "idp_cache_invalidation";
+    private static final String SEPARATOR = "|";
+    // Attente maximale d'une notification avant de revérifier l'arrêt
+    private static final int POLL_TIMEOUT_MS = 5000;
+    private static final long RECONNECT_DELAY_MIN_MS = 1000;
+    private static final long RECONNECT_DELAY_MAX_MS = 30000;
+
+    private final CacheManager cacheManager;
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, Consumer<String>> ecouteurs = new ConcurrentHashMap<>();
+
+    @Value("${cache.invalidation.enabled:true}")
+    private boolean enabled;
+
+    private volatile boolean running = false;
+    private Thread listenerThread;
+
+    /**
+     * Invalider une entrée d'un cache sur tous les nœuds
+     */
+    public void invalider(String cacheName, String key) {
+        publier(cacheName, key);
+    }
+
+    /**
+     * Vider un cache complet sur tous les nœuds
+     */
+    public void invaliderTout(String cacheName) {
+        publier(cacheName, null);
+    }
+
+    /**
+     * Invalider immédiatement, dans une transaction dédiée.
+     * À utiliser hors de la transaction de l'écriture (ex: écouteur AFTER_COMMIT),
+     * où la connexion de la transaction terminée ne doit plus être utilisée.
+     */
+    public void invaliderMaintenant(String cacheName, String key) {
+        if (enabled) {
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            transactionTemplate.executeWithoutResult(status -> notifier(cacheName, key));
+        }
+        evincer(cacheName, key);
+    }
+
+    /**
+     * Abonner un cache externe aux invalidations d'un nom
+     */
+    public void enregistrerEcouteur(String nom, Consumer<String> ecouteur) {
+        ecouteurs.put(nom, ecouteur);
+    }
+
+    private void notifier(String cacheName, String key) {
+        String payload = nodeId + SEPARATOR + cacheName + SEPARATOR + (key != null ? key : "");
+        jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", CHANNEL, payload);
+    }
+
+    private void publier(String cacheName, String key) {
+        if (enabled) {
+            notifier(cacheName, key);
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Commit ou rollback: la copie locale a pu être lue pendant la transaction
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evincer(cacheName, key);
+                }
+            });
+        } else {
+            evincer(cacheName, key);
+        }
+    }
+
+    private void evincer(String cacheName, String key) {
+        Consumer<String> ecouteur = ecouteurs.get(cacheName);
+        if (ecouteur != null) {
+            ecouteur.accept(key != null ? key : "");
+            return;
+        }
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null) {
+            log.warn("Cache inconnu dans une invalidation: {}", cacheName);
+            return;
+        }
+        if (key == null || key.isEmpty()) {
+            cache.clear();
+        } else {
+            cache.evict(key);
+        }
+    }
+
+    private void viderTousLesCaches() {
+        cacheManager.getCacheNames().forEach(name -> {
+            Cache cache = cacheManager.getCache(name);
+            if (cache != null) {
+                cache.clear();
+            }
+        });
+        ecouteurs.values().forEach(ecouteur -> ecouteur.accept(""));
+    }
+
+    private void traiter(String payload) {
+        String[] parts = payload.split("\\|", 3);
+        if (parts.length < 3) {
+            log.warn("Notification d'invalidation mal formée: {}", payload);
+            return;
+        }
+        if (nodeId.equals(parts[0])) {
+            // Déjà évincé localement à la fin de la transaction
+            return;
+        }
+        log.debug("Invalidation reçue: cache={}, clé={}", parts[1], parts[2]);
+        evincer(parts[1], parts[2]);
+    }
+
+    private void ecouter() {
+        long delai = RECONNECT_DELAY_MIN_MS;
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(true);
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                viderTousLesCaches();
+                delai = RECONNECT_DELAY_MIN_MS;
+                log.info("📡 Écoute des invalidations de cache (canal {}, nœud {})", CHANNEL, nodeId);
+
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            traiter(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    break;
+                }
+                log.warn("⚠️ Connexion LISTEN perdue, nouvelle tentative dans {} ms: {}", delai, e.getMessage());
+                viderTousLesCaches();
+                try {
+                    Thread.sleep(delai);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                delai = Math.min(delai * 2, RECONNECT_DELAY_MAX_MS);
+            }
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        listenerThread = new Thread(this::ecouter, "cache-invalidation-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
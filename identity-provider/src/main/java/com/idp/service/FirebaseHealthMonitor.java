@@ -0,0 +1,180 @@
+package com.idp.service;
+
+import com.idp.store.DocumentStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Disponibilité de Firebase, vue par un disjoncteur alimenté par une sonde en arrière-plan.
+ *
+ * Une requête Firestore minimale est envoyée toutes les firebase.health.probe-interval-ms
+ * sur un thread dédié. Les threads des requêtes HTTP ne font que lire l'état du disjoncteur
+ * (isDisponible) et n'attendent jamais une vérification de connexion.
+ *
+ * FERME: Firebase disponible; firebase.health.failure-threshold échecs consécutifs l'ouvrent.
+ * OUVERT: Firebase considéré hors ligne; pas de sonde pendant firebase.health.open-duration-ms.
+ * SEMI_OUVERT: une sonde d'essai décide (succès: FERME, échec: OUVERT). État de départ,
+ * en attendant la première sonde.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FirebaseHealthMonitor {
+
+    public enum Etat {
+        FERME, SEMI_OUVERT, OUVERT
+    }
+
+    private static final String COLLECTION_SONDE = "users";
+
+    private final DocumentStore documentStore;
+    private final MeterRegistry meterRegistry;
+
+    private final ReentrantLock sonde = new ReentrantLock();
+    private final ScheduledExecutorService planificateur = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "firebase-health");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Etat etat = Etat.SEMI_OUVERT;
+    private volatile long ouvertDepuis = 0;
+    private int echecsConsecutifs = 0;
+
+    private Counter sondesReussies;
+    private Counter sondesEchouees;
+    private Timer dureeSonde;
+
+    @Value("${firebase.health.probe-interval-ms:5000}")
+    private long probeIntervalMs;
+
+    @Value("${firebase.health.probe-timeout-seconds:5}")
+    private long probeTimeoutSeconds;
+
+    @Value("${firebase.health.failure-threshold:2}")
+    private int failureThreshold;
+
+    @Value("${firebase.health.open-duration-ms:30000}")
+    private long openDurationMs;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("firebase.circuit.state", this, monitor -> monitor.etat.ordinal())
+                .description("État du disjoncteur Firebase (0 fermé, 1 semi-ouvert, 2 ouvert)")
+                .register(meterRegistry);
+        sondesReussies = Counter.builder("firebase.probe").tag("resultat", "succes").register(meterRegistry);
+        sondesEchouees = Counter.builder("firebase.probe").tag("resultat", "echec").register(meterRegistry);
+        dureeSonde = Timer.builder("firebase.probe.duration").register(meterRegistry);
+
+        planificateur.scheduleWithFixedDelay(this::sonderSiNecessaire, 0, probeIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void arreter() {
+        planificateur.shutdownNow();
+    }
+
+    /**
+     * Firebase est-il utilisable ? Lecture seule, sans attente
+     */
+    public boolean isDisponible() {
+        return etat == Etat.FERME;
+    }
+
+    public Etat getEtat() {
+        return etat;
+    }
+
+    /**
+     * Sonder immédiatement, en attendant le résultat (endpoints de test et d'administration)
+     */
+    public boolean verifierMaintenant() {
+        sonder();
+        return isDisponible();
+    }
+
+    private void sonderSiNecessaire() {
+        if (etat == Etat.OUVERT) {
+            if (System.currentTimeMillis() - ouvertDepuis < openDurationMs) {
+                return;
+            }
+            changerEtat(Etat.SEMI_OUVERT);
+        }
+        sonder();
+    }
+
+    private void sonder() {
+        sonde.lock();
+        try {
+            long debut = System.nanoTime();
+            boolean succes = interrogerFirestore();
+            dureeSonde.record(System.nanoTime() - debut, TimeUnit.NANOSECONDS);
+
+            if (succes) {
+                sondesReussies.increment();
+                echecsConsecutifs = 0;
+                changerEtat(Etat.FERME);
+                return;
+            }
+
+            sondesEchouees.increment();
+            echecsConsecutifs++;
+            if (etat != Etat.FERME || echecsConsecutifs >= failureThreshold) {
+                ouvertDepuis = System.currentTimeMillis();
+                changerEtat(Etat.OUVERT);
+            }
+        } catch (RuntimeException e) {
+            log.error("❌ Sonde Firebase interrompue: {}", e.getMessage(), e);
+        } finally {
+            sonde.unlock();
+        }
+    }
+
+    private boolean interrogerFirestore() {
+        try {
+            documentStore.list(COLLECTION_SONDE, null, 1).get(probeTimeoutSeconds, TimeUnit.SECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            log.warn("⏱️ Sonde Firebase: pas de réponse en {} s", probeTimeoutSeconds);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            log.warn("❌ Sonde Firebase en échec: {} - {}", cause.getClass().getSimpleName(), cause.getMessage());
+            return false;
+        }
+    }
+
+    private void changerEtat(Etat nouvelEtat) {
+        Etat ancien = etat;
+        if (ancien == nouvelEtat) {
+            return;
+        }
+        etat = nouvelEtat;
+        meterRegistry.counter("firebase.circuit.transitions", "vers", nouvelEtat.name()).increment();
+        if (nouvelEtat == Etat.FERME) {
+            log.info("✅ Firebase ONLINE (disjoncteur {} → {})", ancien, nouvelEtat);
+        } else if (nouvelEtat == Etat.OUVERT) {
+            log.warn("🔌 Firebase OFFLINE (disjoncteur {} → {}), nouvel essai dans {} ms",
+                    ancien, nouvelEtat, openDurationMs);
+        } else {
+            log.info("🔍 Firebase: disjoncteur {} → {}", ancien, nouvelEtat);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.idp.service;
+
+import com.idp.store.DocumentAbsentException;
+import com.idp.store.DocumentStore;
+import com.idp.util.FirestoreEmpreinte;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Écritures Firestore groupées pour les synchronisations en masse (push-all).
+ *
+ * Les documents sont envoyés par WriteBatch (au plus firestore.batch.size écritures, limite
+ * Firestore: 500), avec au plus firestore.batch.max-in-flight lots en cours à la fois.
+ * Chaque lot réussi est confirmé en base par l'appelant, dans une transaction courte:
+ * une requête UPDATE groupée par lot au lieu d'un save() par document.
+ *
+ * Une écriture issue d'une empreinte (FirestoreEmpreinte) n'envoie que les champs modifiés
+ * (update); si rien n'a changé, elle est confirmée sans aucun envoi. Un lot refusé parce qu'un
+ * de ses documents n'existe plus dans Firestore est renvoyé une fois en documents complets.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FirestoreBatchWriter {
+
+    private static final int FIRESTORE_BATCH_MAX = 500;
+
+    private final DocumentStore documentStore;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${firestore.batch.size:400}")
+    private int batchSize;
+
+    @Value("${firestore.batch.max-in-flight:4}")
+    private int maxInFlight;
+
+    @Value("${firestore.batch.timeout-seconds:30}")
+    private long timeoutSeconds;
+
+    /**
+     * Un document à écrire, et l'id de l'entité PostgreSQL correspondante.
+     * fusion: seuls les champs fournis sont écrits (document existant); document: document complet,
+     * à écrire à la place si le document a disparu; empreinte: à enregistrer après confirmation
+     */
+    public record Ecriture(String entiteId, String collection, String documentId, Map<String, Object> data,
+                           boolean fusion, Map<String, Object> document, String empreinte) {
+
+        public Ecriture(String entiteId, String collection, String documentId, Map<String, Object> data) {
+            this(entiteId, collection, documentId, data, false, data, null);
+        }
+
+        /**
+         * Écriture complète ou partielle selon la comparaison avec le dernier push
+         */
+        public static Ecriture depuis(String entiteId, String collection, String documentId,
+                                      FirestoreEmpreinte comparaison) {
+            return new Ecriture(entiteId, collection, documentId, comparaison.getChamps(),
+                    !comparaison.isComplet(), comparaison.getDocument(), comparaison.getEmpreinte());
+        }
+
+        /**
+         * Même écriture, en document complet
+         */
+        public Ecriture complete() {
+            return fusion ? new Ecriture(entiteId, collection, documentId, document, false, document, empreinte) : this;
+        }
+
+        /**
+         * Document déjà à jour dans Firestore: rien à envoyer
+         */
+        public boolean inchangee() {
+            return fusion && data.isEmpty();
+        }
+    }
+
+    /**
+     * Bilan d'une écriture en masse
+     */
+    public record Bilan(int ecrits, int inchanges, int echecs, long dureeMs) {
+    }
+
+    private record LotEnVol(List<Ecriture> ecritures, CompletableFuture<Void> commit) {
+    }
+
+    /**
+     * Écrire tous les documents par lots
+     * @param confirmation appelée dans une transaction pour chaque lot commité dans Firestore
+     */
+    public Bilan ecrire(List<Ecriture> ecritures, Consumer<List<Ecriture>> confirmation) {
+        long debut = System.currentTimeMillis();
+        int taille = Math.max(1, Math.min(batchSize, FIRESTORE_BATCH_MAX));
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        Deque<LotEnVol> enVol = new ArrayDeque<>();
+        int[] compteurs = new int[2];
+
+        // Documents déjà à jour: confirmés en base sans écriture Firestore
+        List<Ecriture> inchangees = ecritures.stream().filter(Ecriture::inchangee).collect(Collectors.toList());
+        if (!inchangees.isEmpty()) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> confirmation.accept(inchangees));
+            } catch (Exception e) {
+                log.error("❌ Confirmation en base des documents inchangés impossible: {}", e.getMessage(), e);
+            }
+        }
+        List<Ecriture> aEcrire = inchangees.isEmpty()
+                ? ecritures
+                : ecritures.stream().filter(e -> !e.inchangee()).collect(Collectors.toList());
+
+        for (int i = 0; i < aEcrire.size(); i += taille) {
+            List<Ecriture> lot = aEcrire.subList(i, Math.min(i + taille, aEcrire.size()));
+            enVol.addLast(new LotEnVol(lot, envoyer(lot)));
+
+            // Pas plus de maxInFlight lots en attente: on termine le plus ancien
+            if (enVol.size() >= Math.max(1, maxInFlight)) {
+                terminer(enVol.pollFirst(), confirmation, transactionTemplate, compteurs);
+            }
+        }
+        while (!enVol.isEmpty()) {
+            terminer(enVol.pollFirst(), confirmation, transactionTemplate, compteurs);
+        }
+
+        Bilan bilan = new Bilan(compteurs[0], inchangees.size(), compteurs[1], System.currentTimeMillis() - debut);
+        log.info("📦 Écriture Firestore groupée: {} écrits, {} inchangés, {} en échec, {} ms", bilan.ecrits(),
+                bilan.inchanges(), bilan.echecs(), bilan.dureeMs());
+        return bilan;
+    }
+
+    private CompletableFuture<Void> envoyer(List<Ecriture> lot) {
+        return documentStore.setAll(lot.stream()
+                .map(e -> new DocumentStore.Ecriture(e.collection(), e.documentId(), e.data(), e.fusion()))
+                .collect(Collectors.toList()));
+    }
+
+    private void terminer(LotEnVol lot, Consumer<List<Ecriture>> confirmation,
+            TransactionTemplate transactionTemplate, int[] compteurs) {
+        try {
+            try {
+                lot.commit().get(timeoutSeconds, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                if (!DocumentAbsentException.estCause(e)) {
+                    throw e;
+                }
+                // Document supprimé dans Firestore: un update ne le recrée pas, le lot repart complet
+                log.warn("⚠️ Lot Firestore refusé (document absent), renvoi de {} documents complets",
+                        lot.ecritures().size());
+                envoyer(lot.ecritures().stream().map(Ecriture::complete).collect(Collectors.toList()))
+                        .get(timeoutSeconds, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            compteurs[1] += lot.ecritures().size();
+            log.error("❌ Lot Firestore interrompu ({} documents)", lot.ecritures().size());
+            return;
+        } catch (Exception e) {
+            // WriteBatch atomique: lot non écrit (ou, sur timeout, d'issue inconnue); rien n'est
+            // confirmé en base, les documents restent en attente et seront renvoyés
+            compteurs[1] += lot.ecritures().size();
+            log.error("❌ Lot Firestore en échec ({} documents): {}", lot.ecritures().size(), e.getMessage());
+            return;
+        }
+
+        compteurs[0] += lot.ecritures().size();
+        try {
+            transactionTemplate.executeWithoutResult(status -> confirmation.accept(lot.ecritures()));
+        } catch (Exception e) {
+            // Documents écrits mais non confirmés: ils restent en attente et seront renvoyés
+            log.error("❌ Confirmation en base d'un lot Firestore impossible: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.idp.service;
+
+import com.idp.store.DocumentStore;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Écriture d'une entité dans Firestore pour l'outbox: relire l'entité, la convertir en document,
+ * l'écrire en entier, puis la marquer synchronisée dans la transaction qui retire l'entrée.
+ * Chaque type fournit sa lecture, son id de document, son document et son marquage.
+ */
+@Slf4j
+public class FirestoreEntiteSync<T> implements FirestoreOutboxHandler {
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    private final DocumentStore documentStore;
+    private final FirebaseHealthMonitor healthMonitor;
+    private final String typeEntite;
+    private final String collection;
+    private final Function<String, Optional<T>> lecture;
+    private final Function<T, String> firestoreId;
+    private final Function<T, Map<String, Object>> document;
+    private final BiConsumer<String, String> marquerSynchronisee;
+
+    /**
+     * @param firestoreId id du document Firestore de l'entité
+     * @param document champs propres au type (firestoreId, source et localUpdatedAt sont ajoutés)
+     * @param marquerSynchronisee (id de l'entité, id du document), appelé après une écriture réussie
+     */
+    protected FirestoreEntiteSync(DocumentStore documentStore, FirebaseHealthMonitor healthMonitor,
+                                  String typeEntite, String collection,
+                                  Function<String, Optional<T>> lecture,
+                                  Function<T, String> firestoreId,
+                                  Function<T, Map<String, Object>> document,
+                                  BiConsumer<String, String> marquerSynchronisee) {
+        this.documentStore = documentStore;
+        this.healthMonitor = healthMonitor;
+        this.typeEntite = typeEntite;
+        this.collection = collection;
+        this.lecture = lecture;
+        this.firestoreId = firestoreId;
+        this.document = document;
+        this.marquerSynchronisee = marquerSynchronisee;
+    }
+
+    @Override
+    public String getTypeEntite() {
+        return typeEntite;
+    }
+
+    /**
+     * Écrire l'état courant de l'entité dans Firestore (dispatcher de l'outbox, hors transaction)
+     */
+    @Override
+    public Runnable pousser(String entiteId, long timeoutSecondes) throws Exception {
+        Optional<T> entiteOpt = lecture.apply(entiteId);
+        if (entiteOpt.isEmpty()) {
+            return null;
+        }
+        T entite = entiteOpt.get();
+
+        if (!healthMonitor.isDisponible()) {
+            // Réessayé plus tard par le dispatcher, l'entité reste PENDING
+            throw new IllegalStateException("Firebase hors ligne");
+        }
+
+        String id = firestoreId.apply(entite);
+        Map<String, Object> data = new HashMap<>(document.apply(entite));
+        data.put("firestoreId", id);
+        data.put("source", "POSTGRESQL");
+        data.put("localUpdatedAt", formatDate(LocalDateTime.now()));
+
+        documentStore.set(collection, id, data).get(timeoutSecondes, TimeUnit.SECONDS);
+        log.info("✅ {} {} synchronisé PostgreSQL→Firestore", typeEntite, entiteId);
+
+        return () -> marquerSynchronisee.accept(entiteId, id);
+    }
+
+    protected static String formatDate(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.format(DATE_FORMATTER) : null;
+    }
+}
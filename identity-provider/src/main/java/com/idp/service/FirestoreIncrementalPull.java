@@ -0,0 +1,246 @@
+package com.idp.service;
+
+import com.idp.entity.SyncReessai;
+import com.idp.entity.SyncWatermark;
+import com.idp.repository.SyncReessaiRepository;
+import com.idp.repository.SyncWatermarkRepository;
+import com.idp.store.DocumentStore;
+import com.idp.store.DocumentStore.Document;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Pull incrémental d'une collection Firestore vers PostgreSQL.
+ *
+ * Premier passage (pas de point de reprise): parcours complet paginé par id de document.
+ * Passages suivants: uniquement les documents dont updatedAt (Timestamp Firestore) est
+ * postérieur au point de reprise, triés par (updatedAt, id) et paginés par curseur.
+ * Le tri secondaire par id départage les documents de même updatedAt: aucun n'est sauté
+ * ni relu quand une page s'arrête au milieu d'un groupe d'égalité.
+ *
+ * Chaque page est traitée dans une transaction qui avance aussi le point de reprise:
+ * une page en échec sera relue au passage suivant. Une marge (sync.pull.overlap-seconds)
+ * relit les dernières secondes pour couvrir les horloges décalées des clients qui écrivent
+ * updatedAt eux-mêmes; le traitement d'un document doit donc être idempotent.
+ *
+ * Les requêtes de plage Firestore ne retiennent que les valeurs du même type: seuls les
+ * updatedAt de type Timestamp (écrits par l'application mobile) sont suivis. Les documents
+ * écrits par ce backend (updatedAt texte) reflètent déjà PostgreSQL.
+ *
+ * Un document lu mais pas encore applicable (référence absente de PostgreSQL, ex: utilisateur
+ * mobile pas encore synchronisé) ou en échec est renvoyé par le traitement de la page: il est noté dans
+ * sync_reessais et relu par son id au début de chaque passage, jusqu'à ce qu'il s'applique,
+ * disparaisse de Firestore ou dépasse sync.pull.retry-max-hours.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FirestoreIncrementalPull {
+
+    public static final String CHAMP_UPDATED_AT = DocumentStore.CHAMP_UPDATED_AT;
+
+    private static final Comparator<SyncWatermark> ORDRE = Comparator
+            .comparing(SyncWatermark::getUpdatedAtMax)
+            .thenComparing(SyncWatermark::getDocumentId);
+
+    private final DocumentStore documentStore;
+    private final SyncWatermarkRepository watermarkRepository;
+    private final SyncReessaiRepository reessaiRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${sync.pull.page-size:300}")
+    private int pageSize;
+
+    @Value("${sync.pull.overlap-seconds:30}")
+    private long overlapSeconds;
+
+    @Value("${sync.pull.timeout-seconds:30}")
+    private long timeoutSeconds;
+
+    @Value("${sync.pull.retry-max-hours:72}")
+    private long retryMaxHours;
+
+    /**
+     * Tirer les documents modifiés depuis le dernier passage
+     * @param traiterPage appelée dans une transaction pour chaque page de documents; renvoie les
+     *                    ids des documents à relire plus tard (pas encore applicables)
+     * @return le nombre de documents lus
+     */
+    public int tirer(String collection, Function<List<Document>, Collection<String>> traiterPage)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        long debut = System.currentTimeMillis();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        reessayer(collection, traiterPage);
+        Optional<SyncWatermark> reprise = watermarkRepository.findById(collection);
+        Instant debutPassage = Instant.now();
+
+        int total = 0;
+        Document dernier = null;
+        while (true) {
+            List<Document> documents = page(collection, reprise.orElse(null), dernier)
+                    .get(timeoutSeconds, TimeUnit.SECONDS);
+            if (documents.isEmpty()) {
+                break;
+            }
+            Document fin = documents.get(documents.size() - 1);
+            transactionTemplate.executeWithoutResult(status -> {
+                noterReessais(collection, traiterPage.apply(documents));
+                if (reprise.isPresent()) {
+                    avancer(collection, fin);
+                }
+            });
+            total += documents.size();
+            if (documents.size() < pageSize) {
+                break;
+            }
+            dernier = fin;
+        }
+
+        if (reprise.isEmpty()) {
+            // Parcours complet: tout document modifié depuis le début du passage sera repris
+            watermarkRepository.save(SyncWatermark.builder()
+                    .collection(collection)
+                    .updatedAtMax(debutPassage)
+                    .documentId("")
+                    .lastRunAt(LocalDateTime.now())
+                    .build());
+        } else {
+            transactionTemplate.executeWithoutResult(status -> watermarkRepository.findById(collection)
+                    .ifPresent(watermark -> watermark.setLastRunAt(LocalDateTime.now())));
+        }
+
+        log.info("📥 Pull {} {}: {} documents en {} ms", reprise.isPresent() ? "incrémental" : "complet",
+                collection, total, System.currentTimeMillis() - debut);
+        return total;
+    }
+
+    /**
+     * Noter des documents à relire au prochain passage (à appeler dans une transaction)
+     */
+    public void noterReessais(String collection, Collection<String> documentIds) {
+        if (documentIds == null || documentIds.isEmpty()) {
+            return;
+        }
+        documentIds.forEach(id -> reessaiRepository.ajouterSiAbsent(collection, id));
+        log.info("⏳ Pull {}: {} document(s) à relire plus tard {}", collection, documentIds.size(), documentIds);
+    }
+
+    /**
+     * Relire par leur id les documents notés pour cette collection et les traiter de nouveau
+     * @return le nombre de documents enfin appliqués
+     */
+    public int reessayer(String collection, Function<List<Document>, Collection<String>> traiterPage)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        LocalDateTime limite = LocalDateTime.now().minusHours(Math.max(0, retryMaxHours));
+        int appliques = 0;
+        long apresId = 0;
+        while (true) {
+            List<SyncReessai> reessais = reessaiRepository.findByCollectionAndIdGreaterThanOrderById(
+                    collection, apresId, PageRequest.of(0, pageSize));
+            if (reessais.isEmpty()) {
+                break;
+            }
+            apresId = reessais.get(reessais.size() - 1).getId();
+            List<Document> documents = documentStore.getAll(collection, reessais.stream()
+                    .map(SyncReessai::getDocumentId)
+                    .collect(Collectors.toList())).get(timeoutSeconds, TimeUnit.SECONDS);
+
+            int[] resolus = new int[1];
+            transactionTemplate.executeWithoutResult(status -> {
+                Collection<String> restants = documents.isEmpty() ? List.of() : traiterPage.apply(documents);
+                Set<String> presents = documents.stream().map(Document::id).collect(Collectors.toSet());
+                for (SyncReessai reessai : reessais) {
+                    String documentId = reessai.getDocumentId();
+                    if (!restants.contains(documentId)) {
+                        // Appliqué, ou supprimé de Firestore entre-temps
+                        reessaiRepository.deleteById(reessai.getId());
+                        if (presents.contains(documentId)) {
+                            resolus[0]++;
+                        }
+                    } else if (reessai.getCreatedAt() != null && reessai.getCreatedAt().isBefore(limite)) {
+                        log.warn("⚠️ Pull {}: document {} abandonné après {} tentatives", collection,
+                                documentId, reessai.getTentatives() + 1);
+                        reessaiRepository.deleteById(reessai.getId());
+                    } else {
+                        reessaiRepository.findById(reessai.getId())
+                                .ifPresent(r -> r.setTentatives(r.getTentatives() + 1));
+                    }
+                }
+            });
+            appliques += resolus[0];
+            if (reessais.size() < pageSize) {
+                break;
+            }
+        }
+        if (appliques > 0) {
+            log.info("✅ Pull {}: {} document(s) en attente enfin appliqué(s)", collection, appliques);
+        }
+        return appliques;
+    }
+
+    /**
+     * Page suivante: parcours par id sans point de reprise, sinon par (updatedAt, id)
+     * @param dernier dernier document de la page précédente, null pour la première page
+     */
+    private CompletableFuture<List<Document>> page(String collection, SyncWatermark reprise, Document dernier) {
+        if (reprise == null) {
+            return documentStore.list(collection, dernier != null ? dernier.id() : null, pageSize);
+        }
+        if (dernier != null) {
+            return documentStore.querySince(collection, depuis(reprise),
+                    new DocumentStore.Curseur(dernier.getInstant(CHAMP_UPDATED_AT), dernier.id()), pageSize);
+        }
+        // Sans marge: reprendre juste après le dernier document traité
+        DocumentStore.Curseur apres = overlapSeconds > 0
+                ? null
+                : new DocumentStore.Curseur(reprise.getUpdatedAtMax(), reprise.getDocumentId());
+        return documentStore.querySince(collection, depuis(reprise), apres, pageSize);
+    }
+
+    private Instant depuis(SyncWatermark reprise) {
+        return reprise.getUpdatedAtMax().minusSeconds(Math.max(0, overlapSeconds));
+    }
+
+    /**
+     * Avancer le point de reprise jusqu'au dernier document d'une page (jamais en arrière:
+     * les pages de la marge sont antérieures au point de reprise)
+     */
+    private void avancer(String collection, Document dernier) {
+        Instant updatedAt = dernier.getInstant(CHAMP_UPDATED_AT);
+        if (updatedAt == null) {
+            return;
+        }
+        SyncWatermark candidat = SyncWatermark.builder()
+                .collection(collection)
+                .updatedAtMax(updatedAt)
+                .documentId(dernier.id())
+                .build();
+        SyncWatermark actuel = watermarkRepository.findById(collection).orElse(null);
+        if (actuel == null) {
+            watermarkRepository.save(candidat);
+        } else if (ORDRE.compare(candidat, actuel) > 0) {
+            actuel.setUpdatedAtMax(candidat.getUpdatedAtMax());
+            actuel.setDocumentId(candidat.getDocumentId());
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.idp.service;
+
+import com.idp.store.DocumentStore.Document;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * File d'ingestion des changements reçus par les listeners Firestore.
+ *
+ * Les callbacks des listeners ne font que déposer le document dans une file bornée
+ * (firestore.ingestion.capacity). Plusieurs changements d'un même document en attente
+ * sont fusionnés: seul le dernier état est appliqué, à la place du premier dans l'ordre
+ * d'arrivée. Un document en cours de traitement n'est pas repris par un autre worker,
+ * les états successifs d'un document sont donc appliqués dans l'ordre.
+ *
+ * Les workers prennent jusqu'à firestore.ingestion.batch-size documents et les appliquent
+ * par collection dans une transaction; si elle échoue, chaque document est rejoué seul.
+ * File pleine: le listener attend au plus offer-timeout-ms, puis le changement est
+ * abandonné (compté) et sera rattrapé par le pull incrémental.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FirestoreIngestionQueue implements SmartLifecycle {
+
+    private static final long ARRET_TIMEOUT_MS = 10_000;
+
+    private final MeterRegistry meterRegistry;
+    private final PlatformTransactionManager transactionManager;
+
+    private final Map<String, Consumer<List<Document>>> handlers = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition nonVide = lock.newCondition();
+    private final Condition nonPlein = lock.newCondition();
+    // Clé collection/id, dans l'ordre d'arrivée du premier changement en attente
+    private final LinkedHashMap<String, Changement> enAttente = new LinkedHashMap<>();
+    private final Set<String> enCours = new HashSet<>();
+    private final List<Thread> workers = new ArrayList<>();
+
+    private volatile boolean running = false;
+    private TransactionTemplate transactionTemplate;
+
+    private Counter recus;
+    private Counter fusionnes;
+    private Counter abandonnes;
+    private Counter appliques;
+    private Counter echecs;
+    private Timer latence;
+
+    @Value("${firestore.ingestion.capacity:10000}")
+    private int capacity;
+
+    @Value("${firestore.ingestion.workers:2}")
+    private int workerCount;
+
+    @Value("${firestore.ingestion.batch-size:100}")
+    private int batchSize;
+
+    @Value("${firestore.ingestion.offer-timeout-ms:2000}")
+    private long offerTimeoutMs;
+
+    private record Changement(String cle, String collection, Document document, long soumisA) {
+    }
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        Gauge.builder("firestore.ingestion.queue.depth", this, FirestoreIngestionQueue::profondeur)
+                .description("Documents en attente d'ingestion")
+                .register(meterRegistry);
+        Gauge.builder("firestore.ingestion.queue.oldest.age", this, FirestoreIngestionQueue::ageDuPlusAncien)
+                .description("Âge (ms) du plus ancien changement en attente")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        recus = meterRegistry.counter("firestore.ingestion.changes", "resultat", "recu");
+        fusionnes = meterRegistry.counter("firestore.ingestion.changes", "resultat", "fusionne");
+        abandonnes = meterRegistry.counter("firestore.ingestion.changes", "resultat", "abandonne");
+        appliques = meterRegistry.counter("firestore.ingestion.changes", "resultat", "applique");
+        echecs = meterRegistry.counter("firestore.ingestion.changes", "resultat", "echec");
+        latence = Timer.builder("firestore.ingestion.lag")
+                .description("Délai entre la réception d'un changement et son application")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Déclarer le traitement d'une collection (appelé dans une transaction, par lot)
+     */
+    public void enregistrer(String collection, Consumer<List<Document>> traiterLot) {
+        handlers.put(collection, traiterLot);
+    }
+
+    /**
+     * Déposer un changement reçu par un listener
+     * @return false si la file est restée pleine (changement abandonné)
+     */
+    public boolean soumettre(String collection, Document document) {
+        String cle = collection + "/" + document.id();
+        recus.increment();
+        lock.lock();
+        try {
+            Changement existant = enAttente.get(cle);
+            if (existant != null) {
+                // Garde sa place et son heure d'arrivée, avec le dernier état du document
+                enAttente.put(cle, new Changement(cle, collection, document, existant.soumisA()));
+                fusionnes.increment();
+                return true;
+            }
+
+            long restant = TimeUnit.MILLISECONDS.toNanos(offerTimeoutMs);
+            while (enAttente.size() >= capacity) {
+                if (restant <= 0) {
+                    abandonnes.increment();
+                    log.warn("⚠️ File d'ingestion pleine ({}), changement {} abandonné", capacity, cle);
+                    return false;
+                }
+                restant = nonPlein.awaitNanos(restant);
+            }
+            enAttente.put(cle, new Changement(cle, collection, document, System.currentTimeMillis()));
+            nonVide.signal();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandonnes.increment();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int profondeur() {
+        lock.lock();
+        try {
+            return enAttente.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long ageDuPlusAncien() {
+        lock.lock();
+        try {
+            return enAttente.values().stream()
+                    .findFirst()
+                    .map(changement -> System.currentTimeMillis() - changement.soumisA())
+                    .orElse(0L);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void travailler() {
+        while (running) {
+            try {
+                List<Changement> lot = prendreLot();
+                if (!lot.isEmpty()) {
+                    try {
+                        traiter(lot);
+                    } finally {
+                        liberer(lot);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("❌ Worker d'ingestion Firestore: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private List<Changement> prendreLot() throws InterruptedException {
+        lock.lock();
+        try {
+            while (running) {
+                List<Changement> lot = new ArrayList<>();
+                Iterator<Map.Entry<String, Changement>> it = enAttente.entrySet().iterator();
+                while (it.hasNext() && lot.size() < batchSize) {
+                    Map.Entry<String, Changement> entree = it.next();
+                    if (enCours.contains(entree.getKey())) {
+                        // Un état plus ancien est en cours d'application: attendre la fin
+                        continue;
+                    }
+                    lot.add(entree.getValue());
+                    enCours.add(entree.getKey());
+                    it.remove();
+                }
+                if (!lot.isEmpty()) {
+                    nonPlein.signalAll();
+                    return lot;
+                }
+                nonVide.await(1, TimeUnit.SECONDS);
+            }
+            return List.of();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void liberer(List<Changement> lot) {
+        lock.lock();
+        try {
+            lot.forEach(changement -> enCours.remove(changement.cle()));
+            nonVide.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void traiter(List<Changement> lot) {
+        Map<String, List<Changement>> parCollection = lot.stream()
+                .collect(Collectors.groupingBy(Changement::collection, LinkedHashMap::new, Collectors.toList()));
+
+        parCollection.forEach((collection, changements) -> {
+            Consumer<List<Document>> handler = handlers.get(collection);
+            if (handler == null) {
+                log.warn("Aucun traitement d'ingestion pour la collection {}, {} changements ignorés",
+                        collection, changements.size());
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> handler.accept(changements.stream()
+                        .map(Changement::document)
+                        .collect(Collectors.toList())));
+                changements.forEach(this::enregistrerApplique);
+            } catch (Exception e) {
+                log.warn("⚠️ Lot d'ingestion {} en échec ({} documents), rejeu document par document: {}",
+                        collection, changements.size(), e.getMessage());
+                for (Changement changement : changements) {
+                    try {
+                        transactionTemplate.executeWithoutResult(
+                                status -> handler.accept(List.of(changement.document())));
+                        enregistrerApplique(changement);
+                    } catch (Exception ex) {
+                        echecs.increment();
+                        log.error("❌ Ingestion de {} impossible: {}", changement.cle(), ex.getMessage());
+                    }
+                }
+            }
+        });
+    }
+
+    private void enregistrerApplique(Changement changement) {
+        appliques.increment();
+        latence.record(System.currentTimeMillis() - changement.soumisA(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < Math.max(1, workerCount); i++) {
+            Thread worker = new Thread(this::travailler, "firestore-ingestion-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        log.info("📥 File d'ingestion Firestore démarrée ({} workers, capacité {})", workers.size(), capacity);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        lock.lock();
+        try {
+            nonVide.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        // Laisser finir le lot en cours (sans interrompre une transaction)
+        for (Thread worker : workers) {
+            try {
+                worker.join(ARRET_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        workers.clear();
+        int restants = profondeur();
+        if (restants > 0) {
+            log.warn("⏹️ File d'ingestion arrêtée avec {} changements en attente (rattrapés par le pull)", restants);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,246 @@
+package com.idp.service;
+
+import com.idp.entity.FirestoreOutbox;
+import com.idp.event.FirestoreOutboxEvent;
+import com.idp.repository.FirestoreOutboxRepository;
+import com.idp.store.DocumentStore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Envoi en arrière-plan des écritures de l'outbox vers Firestore.
+ *
+ * Chaque passage réserve un lot d'entrées (SELECT ... FOR UPDATE SKIP LOCKED, puis bail de
+ * firestore.outbox.lease-seconds), les envoie hors transaction avec un timeout, puis supprime
+ * chaque entrée réussie dans la même transaction que sa confirmation en base.
+ * Un échec est replanifié avec un délai exponentiel. Un nœud arrêté en plein envoi
+ * libère ses entrées à l'expiration du bail.
+ *
+ * Les passages tournent tous sur le thread firestore-outbox (jamais sur le thread @Scheduled
+ * partagé) et sont sautés tant que le disjoncteur Firebase est ouvert: les entrées attendent
+ * en base au lieu d'épuiser chacune leur timeout.
+ *
+ * Métriques: firestore.outbox.backlog (entrées en attente), firestore.outbox.oldest.age
+ * (âge de la plus ancienne), firestore.outbox.delay{type} (délai entre l'écriture en base
+ * et sa présence dans Firestore, visible côté mobile), firestore.outbox.writes{type,resultat}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FirestoreOutboxDispatcher {
+
+    private static final int ERREUR_MAX_LENGTH = 1000;
+
+    private final FirestoreOutboxRepository outboxRepository;
+    private final DocumentStore documentStore;
+    private final List<FirestoreOutboxHandler> handlers;
+    private final FirebaseHealthMonitor healthMonitor;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, FirestoreOutboxHandler> handlersParType = new HashMap<>();
+    private final AtomicLong enAttente = new AtomicLong();
+    private volatile LocalDateTime plusAncienne;
+    // Un seul passage en file: une demande reçue pendant un passage en planifie un autre
+    private final AtomicBoolean reveilPlanifie = new AtomicBoolean(false);
+    private final ExecutorService reveil = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "firestore-outbox");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${firestore.outbox.enabled:true}")
+    private boolean enabled;
+
+    @Value("${firestore.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${firestore.outbox.lease-seconds:60}")
+    private long leaseSeconds;
+
+    @Value("${firestore.outbox.write-timeout-seconds:10}")
+    private long writeTimeoutSeconds;
+
+    @Value("${firestore.outbox.max-backoff-seconds:300}")
+    private long maxBackoffSeconds;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        handlers.forEach(handler -> handlersParType.put(handler.getTypeEntite(), handler));
+        log.info("📮 Outbox Firestore: handlers {}", handlersParType.keySet());
+
+        Gauge.builder("firestore.outbox.backlog", enAttente, AtomicLong::get)
+                .description("Écritures Firestore en attente dans l'outbox")
+                .register(meterRegistry);
+        Gauge.builder("firestore.outbox.oldest.age", this, FirestoreOutboxDispatcher::ageDeLaPlusAncienne)
+                .description("Âge (ms) de la plus ancienne écriture en attente")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void arreter() {
+        reveil.shutdownNow();
+    }
+
+    /**
+     * Réveil après le commit d'une transaction ayant alimenté l'outbox
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOutboxAlimentee(FirestoreOutboxEvent event) {
+        demanderPassage();
+    }
+
+    /**
+     * Filet de sécurité: entrées à réessayer, réveils perdus, baux expirés.
+     * Le passage lui-même est confié au thread firestore-outbox.
+     */
+    @Scheduled(fixedDelayString = "${firestore.outbox.poll-interval-ms:5000}")
+    public void planifierPassage() {
+        demanderPassage();
+    }
+
+    private void demanderPassage() {
+        if (enabled && reveilPlanifie.compareAndSet(false, true)) {
+            try {
+                reveil.execute(() -> {
+                    reveilPlanifie.set(false);
+                    drainer();
+                });
+            } catch (RejectedExecutionException e) {
+                // Arrêt en cours
+                reveilPlanifie.set(false);
+            }
+        }
+    }
+
+    private void drainer() {
+        if (!healthMonitor.isDisponible()) {
+            log.debug("Outbox Firestore: Firebase hors ligne, passage reporté");
+            mesurerAttente();
+            return;
+        }
+        try {
+            List<FirestoreOutbox> lot;
+            do {
+                lot = reserverLot();
+                for (FirestoreOutbox entree : lot) {
+                    if (!healthMonitor.isDisponible()) {
+                        // Disjoncteur ouvert en cours de lot: le reste sera repris à l'expiration du bail
+                        log.warn("🔌 Outbox Firestore: Firebase hors ligne, passage interrompu");
+                        return;
+                    }
+                    traiter(entree);
+                }
+            } while (lot.size() == batchSize);
+        } catch (Exception e) {
+            log.error("❌ Outbox Firestore: passage interrompu: {}", e.getMessage(), e);
+        } finally {
+            mesurerAttente();
+        }
+    }
+
+    /**
+     * Relever la taille de l'outbox et sa plus ancienne entrée (fin de chaque passage)
+     */
+    private void mesurerAttente() {
+        try {
+            enAttente.set(outboxRepository.count());
+            plusAncienne = outboxRepository.findPlusAncienneCreation();
+        } catch (Exception e) {
+            log.debug("Outbox Firestore: mesure de l'attente impossible: {}", e.getMessage());
+        }
+    }
+
+    private double ageDeLaPlusAncienne() {
+        LocalDateTime date = plusAncienne;
+        return date != null ? Math.max(0, Duration.between(date, LocalDateTime.now()).toMillis()) : 0;
+    }
+
+    private List<FirestoreOutbox> reserverLot() {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime maintenant = LocalDateTime.now();
+            List<FirestoreOutbox> lot = outboxRepository.findPretesPourReservation(maintenant, batchSize);
+            // Modifications écrites au commit (entités gérées)
+            lot.forEach(entree -> entree.setReserveJusqua(maintenant.plusSeconds(leaseSeconds)));
+            return lot;
+        });
+    }
+
+    private void traiter(FirestoreOutbox entree) {
+        try {
+            Runnable confirmation = envoyer(entree);
+            transactionTemplate.executeWithoutResult(status -> {
+                if (confirmation != null) {
+                    confirmation.run();
+                }
+                outboxRepository.deleteById(entree.getId());
+            });
+            meterRegistry.counter("firestore.outbox.writes", "type", entree.getTypeEntite(), "resultat", "succes")
+                    .increment();
+            if (entree.getCreatedAt() != null) {
+                Timer.builder("firestore.outbox.delay")
+                        .description("Délai entre l'écriture en base et sa présence dans Firestore")
+                        .tag("type", entree.getTypeEntite())
+                        .register(meterRegistry)
+                        .record(Duration.between(entree.getCreatedAt(), LocalDateTime.now()));
+            }
+        } catch (Exception e) {
+            meterRegistry.counter("firestore.outbox.writes", "type", entree.getTypeEntite(), "resultat", "echec")
+                    .increment();
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            int tentatives = entree.getTentatives() + 1;
+            long delai = Math.min(maxBackoffSeconds, 1L << Math.min(tentatives, 20));
+            String erreur = e.getClass().getSimpleName() + ": " + e.getMessage();
+            log.warn("⚠️ Outbox Firestore: échec {} {} {} (tentative {}), nouvel essai dans {} s: {}",
+                    entree.getOperation(), entree.getTypeEntite(), entree.getEntiteId(), tentatives, delai, erreur);
+            transactionTemplate.executeWithoutResult(status -> outboxRepository.reporter(
+                    entree.getId(), tentatives, LocalDateTime.now().plusSeconds(delai),
+                    erreur.length() > ERREUR_MAX_LENGTH ? erreur.substring(0, ERREUR_MAX_LENGTH) : erreur));
+        }
+    }
+
+    private Runnable envoyer(FirestoreOutbox entree) throws Exception {
+        if (FirestoreOutbox.OPERATION_DELETE.equals(entree.getOperation())) {
+            documentStore.delete(entree.getCollection(), entree.getDocumentId())
+                    .get(writeTimeoutSeconds, TimeUnit.SECONDS);
+            log.info("🗑️ Document {}/{} supprimé de Firestore", entree.getCollection(), entree.getDocumentId());
+            return null;
+        }
+
+        FirestoreOutboxHandler handler = handlersParType.get(entree.getTypeEntite());
+        if (handler == null) {
+            throw new IllegalStateException("Aucun handler pour le type " + entree.getTypeEntite());
+        }
+        return handler.pousser(entree.getEntiteId(), writeTimeoutSeconds);
+    }
+}
@@ -0,0 +1,19 @@
+package com.idp.service;
+
+/**
+ * Écriture vers Firestore de l'état courant d'un type d'entité, pour FirestoreOutboxDispatcher
+ */
+public interface FirestoreOutboxHandler {
+
+    /**
+     * Type d'entité géré (FirestoreOutbox.TYPE_...)
+     */
+    String getTypeEntite();
+
+    /**
+     * Écrire l'état courant de l'entité dans Firestore. Appelé hors transaction, sur le thread du dispatcher.
+     * @return mise à jour PostgreSQL à appliquer après succès (dans la transaction qui retire
+     *         l'entrée de l'outbox), ou null s'il n'y a rien à enregistrer
+     */
+    Runnable pousser(String entiteId, long timeoutSecondes) throws Exception;
+}
@@ -0,0 +1,92 @@
+package com.idp.service;
+
+import com.idp.entity.FirestoreOutbox;
+import com.idp.event.FirestoreOutboxEvent;
+import com.idp.repository.FirestoreOutboxRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Enregistrement des écritures Firestore à faire, dans la transaction de l'appelant.
+ * Le thread de la requête ne parle jamais à Firestore: FirestoreOutboxDispatcher s'en charge après le commit.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FirestoreOutboxService {
+
+    private static final String INSERT_UPSERT_SQL = "INSERT INTO firestore_outbox (type_entite, entite_id, " +
+            "operation, tentatives, prochaine_tentative, created_at) VALUES (?, ?, ?, 0, ?, ?)";
+
+    private final FirestoreOutboxRepository outboxRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Planifier l'écriture de l'état courant d'une entité
+     */
+    @Transactional
+    public void enregistrer(String typeEntite, String entiteId) {
+        // Une entrée en attente lira l'état au moment de l'envoi: inutile d'en ajouter une seconde.
+        // Verrouillée jusqu'au commit, elle ne peut pas partir avant que ce nouvel état soit visible.
+        if (!outboxRepository.verrouillerEnAttente(typeEntite, entiteId, FirestoreOutbox.OPERATION_UPSERT).isEmpty()) {
+            return;
+        }
+        ajouter(FirestoreOutbox.builder()
+                .typeEntite(typeEntite)
+                .entiteId(entiteId)
+                .operation(FirestoreOutbox.OPERATION_UPSERT)
+                .build());
+    }
+
+    /**
+     * Planifier l'écriture d'entités qui viennent d'être créées (aucune entrée ne peut déjà
+     * exister pour elles: pas de vérification préalable). Insertion par batch JDBC: l'id IDENTITY
+     * empêche Hibernate de grouper les INSERT d'un saveAll.
+     */
+    @Transactional
+    public void enregistrerNouvelles(String typeEntite, List<String> entiteIds) {
+        if (entiteIds.isEmpty()) {
+            return;
+        }
+        LocalDateTime maintenant = LocalDateTime.now();
+        jdbcTemplate.batchUpdate(INSERT_UPSERT_SQL, entiteIds, entiteIds.size(), (ps, entiteId) -> {
+            ps.setString(1, typeEntite);
+            ps.setString(2, entiteId);
+            ps.setString(3, FirestoreOutbox.OPERATION_UPSERT);
+            ps.setObject(4, maintenant);
+            ps.setObject(5, maintenant);
+        });
+        log.debug("📮 Outbox Firestore: {} UPSERT {}", entiteIds.size(), typeEntite);
+        // Un seul réveil du dispatcher suffit pour tout le lot
+        eventPublisher.publishEvent(new FirestoreOutboxEvent(typeEntite, entiteIds.get(0)));
+    }
+
+    /**
+     * Planifier la suppression d'un document Firestore
+     */
+    @Transactional
+    public void enregistrerSuppression(String typeEntite, String entiteId, String collection, String documentId) {
+        ajouter(FirestoreOutbox.builder()
+                .typeEntite(typeEntite)
+                .entiteId(entiteId)
+                .operation(FirestoreOutbox.OPERATION_DELETE)
+                .collection(collection)
+                .documentId(documentId)
+                .build());
+    }
+
+    private void ajouter(FirestoreOutbox entree) {
+        entree.setProchaineTentative(LocalDateTime.now());
+        outboxRepository.save(entree);
+        log.debug("📮 Outbox Firestore: {} {} {}", entree.getOperation(), entree.getTypeEntite(), entree.getEntiteId());
+        eventPublisher.publishEvent(new FirestoreOutboxEvent(entree.getTypeEntite(), entree.getEntiteId()));
+    }
+}
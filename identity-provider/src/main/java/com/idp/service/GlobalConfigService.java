@@ -1,15 +1,18 @@
 package com.idp.service;
 
+import com.idp.config.CacheConfig;
 import com.idp.entity.GlobalConfig;
 import com.idp.exception.BusinessException;
 import com.idp.repository.GlobalConfigRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Service de gestion de la configuration globale.
@@ -21,6 +24,8 @@ import java.util.List;
 public class GlobalConfigService {
 
     private final GlobalConfigRepository globalConfigRepository;
+    private final CacheManager cacheManager;
+    private final CacheInvalidationService cacheInvalidationService;
 
     /**
      * Valeur par défaut du prix global au m² (en Ariary)
@@ -31,9 +36,38 @@ public class GlobalConfigService {
      * Récupérer le prix global au m²
      */
     public BigDecimal getPrixM2Global() {
-        return globalConfigRepository.findByConfigKey(GlobalConfig.PRIX_M2_GLOBAL_KEY)
-                .map(GlobalConfig::getValueAsBigDecimal)
-                .orElse(DEFAULT_PRIX_M2_GLOBAL);
+        return findPrixM2Global().orElse(DEFAULT_PRIX_M2_GLOBAL);
+    }
+
+    /**
+     * Prix global au m² tel que configuré en base (vide s'il n'est pas défini)
+     */
+    public Optional<BigDecimal> findPrixM2Global() {
+        return findConfigValue(GlobalConfig.PRIX_M2_GLOBAL_KEY)
+                .map(GlobalConfigService::toBigDecimal);
+    }
+
+    /**
+     * Même conversion que GlobalConfig.getValueAsBigDecimal
+     */
+    private static BigDecimal toBigDecimal(String value) {
+        try {
+            return new BigDecimal(value);
+        } catch (NumberFormatException e) {
+            return BigDecimal.ZERO;
+        }
+    }
+
+    /**
+     * Valeur d'une configuration, servie par le cache local
+     * (invalidé sur tous les nœuds à chaque modification)
+     */
+    public Optional<String> findConfigValue(String key) {
+        String value = cacheManager.getCache(CacheConfig.GLOBAL_CONFIG).get(key,
+                () -> globalConfigRepository.findByConfigKey(key)
+                        .map(GlobalConfig::getConfigValue)
+                        .orElse(null));
+        return Optional.ofNullable(value);
     }
 
     /**
@@ -56,6 +90,7 @@ public class GlobalConfigService {
 
         config.setValueFromBigDecimal(prixM2);
         GlobalConfig saved = globalConfigRepository.save(config);
+        cacheInvalidationService.invalider(CacheConfig.GLOBAL_CONFIG, GlobalConfig.PRIX_M2_GLOBAL_KEY);
 
         log.info("✅ Prix global au m² mis à jour: {} Ar", prixM2);
         return saved;
@@ -113,7 +148,9 @@ public class GlobalConfigService {
             config.setDescription(description);
         }
 
-        return globalConfigRepository.save(config);
+        GlobalConfig saved = globalConfigRepository.save(config);
+        cacheInvalidationService.invalider(CacheConfig.GLOBAL_CONFIG, key);
+        return saved;
     }
 
     /**
@@ -0,0 +1,235 @@
+package com.idp.service;
+
+import com.idp.entity.FirestoreOutbox;
+import com.idp.entity.LoginAttempt;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Écriture différée (write-behind) des tentatives de connexion.
+ *
+ * La connexion dépose la tentative dans un tampon borné (login-attempts.buffer.capacity) et
+ * continue. Un thread l'insère ensuite par lots JDBC: dès batch-size tentatives, ou au plus
+ * flush-interval-ms après la première en attente, avec dans la même transaction les entrées
+ * d'outbox qui les enverront à Firestore. Un lot refusé est rejoué tentative par tentative.
+ * Tampon plein ou arrêté: la tentative est écrite tout de suite, par l'appelant.
+ *
+ * Durabilité: une tentative en tampon n'est pas encore en base quand la connexion répond.
+ * Un arrêt normal vide le tampon (SmartLifecycle, après l'arrêt du serveur web); un arrêt
+ * brutal (kill -9, crash de la JVM) perd les tentatives en attente, soit au plus environ
+ * flush-interval-ms de connexions. Seul l'historique d'audit est concerné: le compteur
+ * d'échecs et le verrouillage du compte restent écrits sur l'utilisateur, de façon synchrone.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LoginAttemptBuffer implements SmartLifecycle {
+
+    private static final long ARRET_TIMEOUT_MS = 10_000;
+    private static final String INSERT_SQL = "INSERT INTO login_attempts (id, user_id, email, ip_address, " +
+            "user_agent, success, failure_reason, attempted_at, firestore_id, sync_status) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FirestoreOutboxService outboxService;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    private BlockingQueue<LoginAttempt> tampon;
+    private Thread ecrivain;
+    private volatile boolean running = false;
+    private TransactionTemplate transactionTemplate;
+
+    private Counter ecritesParLot;
+    private Counter ecritesDirectes;
+    private Counter echecs;
+    private Timer dureeLot;
+
+    @Value("${login-attempts.buffer.enabled:true}")
+    private boolean enabled;
+
+    @Value("${login-attempts.buffer.capacity:10000}")
+    private int capacity;
+
+    @Value("${login-attempts.buffer.batch-size:200}")
+    private int batchSize;
+
+    @Value("${login-attempts.buffer.flush-interval-ms:500}")
+    private long flushIntervalMs;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        tampon = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        Gauge.builder("login.attempts.buffer.size", this, buffer -> buffer.tampon.size())
+                .description("Tentatives de connexion en attente d'écriture")
+                .register(meterRegistry);
+        ecritesParLot = meterRegistry.counter("login.attempts.writes", "mode", "lot");
+        ecritesDirectes = meterRegistry.counter("login.attempts.writes", "mode", "direct");
+        echecs = meterRegistry.counter("login.attempts.writes", "mode", "echec");
+        dureeLot = Timer.builder("login.attempts.flush")
+                .description("Durée d'écriture d'un lot de tentatives de connexion")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Enregistrer une tentative de connexion (id, date et statut de sync déjà renseignés)
+     */
+    public void enregistrer(LoginAttempt attempt) {
+        if (enabled && running && tampon.offer(attempt)) {
+            return;
+        }
+        // Tampon désactivé, arrêté ou plein: écriture immédiate plutôt que perte
+        ecrire(List.of(attempt));
+        ecritesDirectes.increment();
+    }
+
+    private void travailler() {
+        List<LoginAttempt> lot = new ArrayList<>(batchSize);
+        while (running || !tampon.isEmpty()) {
+            try {
+                LoginAttempt premiere = tampon.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (premiere == null) {
+                    continue;
+                }
+                lot.add(premiere);
+
+                // Compléter jusqu'à batch-size, sans attendre plus de flush-interval-ms après la première
+                long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (lot.size() < batchSize) {
+                    tampon.drainTo(lot, batchSize - lot.size());
+                    long reste = limite - System.nanoTime();
+                    if (lot.size() >= batchSize || reste <= 0 || !running) {
+                        break;
+                    }
+                    LoginAttempt suivante = tampon.poll(reste, TimeUnit.NANOSECONDS);
+                    if (suivante == null) {
+                        break;
+                    }
+                    lot.add(suivante);
+                }
+
+                ecrireLot(lot);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("❌ Tampon des tentatives de connexion: erreur inattendue: {}", e.getMessage(), e);
+            } finally {
+                lot.clear();
+            }
+        }
+    }
+
+    private void ecrireLot(List<LoginAttempt> lot) {
+        long debut = System.nanoTime();
+        try {
+            ecrire(lot);
+            ecritesParLot.increment(lot.size());
+        } catch (Exception e) {
+            // Une tentative refusée (ex: utilisateur supprimé entre-temps) ne bloque pas les autres
+            log.warn("⚠️ Lot de {} tentatives de connexion refusé ({}), écriture une par une",
+                    lot.size(), e.getMessage());
+            for (LoginAttempt attempt : lot) {
+                try {
+                    ecrire(List.of(attempt));
+                    ecritesParLot.increment();
+                } catch (Exception ex) {
+                    echecs.increment();
+                    log.error("❌ Tentative de connexion {} ({}) non enregistrée: {}",
+                            attempt.getId(), attempt.getEmail(), ex.getMessage());
+                }
+            }
+        } finally {
+            dureeLot.record(System.nanoTime() - debut, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Insérer les tentatives (batch JDBC) et planifier leur envoi vers Firestore
+     */
+    private void ecrire(List<LoginAttempt> attempts) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_SQL, attempts, attempts.size(), (ps, attempt) -> {
+                ps.setString(1, attempt.getId());
+                ps.setString(2, attempt.getUser() != null ? attempt.getUser().getId() : null);
+                ps.setString(3, attempt.getEmail());
+                ps.setString(4, attempt.getIpAddress());
+                ps.setString(5, attempt.getUserAgent());
+                ps.setBoolean(6, Boolean.TRUE.equals(attempt.getSuccess()));
+                ps.setString(7, attempt.getFailureReason());
+                ps.setObject(8, attempt.getAttemptedAt() != null ? attempt.getAttemptedAt() : LocalDateTime.now());
+                ps.setString(9, attempt.getFirestoreId());
+                ps.setString(10, attempt.getSyncStatus());
+            });
+            outboxService.enregistrerNouvelles(FirestoreOutbox.TYPE_LOGIN_ATTEMPT,
+                    attempts.stream().map(LoginAttempt::getId).collect(Collectors.toList()));
+        });
+    }
+
+    @Override
+    public void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        ecrivain = new Thread(this::travailler, "login-attempts-writer");
+        ecrivain.setDaemon(true);
+        ecrivain.start();
+        log.info("📝 Tampon des tentatives de connexion démarré (capacité {}, lots de {}, {} ms)",
+                capacity, batchSize, flushIntervalMs);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        // Le thread vide le tampon avant de s'arrêter
+        if (ecrivain != null) {
+            try {
+                ecrivain.join(ARRET_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ecrivain = null;
+        }
+        // Restes éventuels (délai dépassé): écrits par le thread d'arrêt
+        List<LoginAttempt> restants = new ArrayList<>();
+        tampon.drainTo(restants);
+        if (!restants.isEmpty()) {
+            log.warn("⏹️ {} tentatives de connexion encore en tampon, écriture avant l'arrêt", restants.size());
+            ecrireLot(restants);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Arrêté après le serveur web (plus aucune connexion entrante), avant la source de données
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+}
@@ -0,0 +1,43 @@
+package com.idp.service;
+
+import com.idp.entity.FirestoreOutbox;
+import com.idp.entity.LoginAttempt;
+import com.idp.repository.LoginAttemptRepository;
+import com.idp.store.DocumentStore;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Écriture des tentatives de connexion dans Firestore pour l'outbox: une connexion,
+ * réussie ou non, n'attend plus Firestore.
+ */
+@Service
+public class LoginAttemptFirestoreSync extends FirestoreEntiteSync<LoginAttempt> {
+
+    public static final String COLLECTION_NAME = "login_attempts";
+
+    public LoginAttemptFirestoreSync(LoginAttemptRepository loginAttemptRepository, DocumentStore documentStore,
+                                     FirebaseHealthMonitor healthMonitor) {
+        super(documentStore, healthMonitor, FirestoreOutbox.TYPE_LOGIN_ATTEMPT, COLLECTION_NAME,
+                loginAttemptRepository::findById,
+                attempt -> attempt.getFirestoreId() != null ? attempt.getFirestoreId() : "attempt_" + attempt.getId(),
+                LoginAttemptFirestoreSync::document,
+                loginAttemptRepository::marquerSynchronisee);
+    }
+
+    private static Map<String, Object> document(LoginAttempt attempt) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("id", attempt.getId());
+        data.put("userId", attempt.getUser() != null ? attempt.getUser().getId() : null);
+        data.put("email", attempt.getEmail());
+        data.put("ipAddress", attempt.getIpAddress());
+        data.put("userAgent", attempt.getUserAgent());
+        data.put("success", attempt.getSuccess() != null ? attempt.getSuccess() : false);
+        data.put("failureReason", attempt.getFailureReason());
+        data.put("attemptedAt", formatDate(attempt.getAttemptedAt()));
+        data.put("syncStatus", attempt.getSyncStatus() != null ? attempt.getSyncStatus() : "PENDING");
+        return data;
+    }
+}
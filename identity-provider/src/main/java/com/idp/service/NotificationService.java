@@ -1,10 +1,9 @@
 package com.idp.service;
 
-import com.google.cloud.firestore.Firestore;
-import com.google.cloud.firestore.WriteResult;
 import com.idp.entity.*;
 import com.idp.exception.BusinessException;
 import com.idp.repository.NotificationRepository;
+import com.idp.store.DocumentStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -15,15 +14,17 @@ import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
-public class NotificationService {
+public class NotificationService implements FirestoreOutboxHandler {
 
     private final NotificationRepository notificationRepository;
-    private final Firestore firestore;
+    private final DocumentStore documentStore;
+    private final FirestoreOutboxService outboxService;
 
     private static final String COLLECTION_NAME = "notifications";
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
@@ -77,51 +78,61 @@ public class NotificationService {
     }
 
     /**
-     * Synchroniser une notification vers Firestore
+     * Planifier la synchronisation d'une notification vers Firestore (outbox, envoyée après le commit)
      */
     public void synchronizeToFirestore(Notification notification) {
-        try {
-            Map<String, Object> data = new HashMap<>();
-            data.put("id", notification.getId());
-            data.put("motif", notification.getMotif());
-            
-            if (notification.getHistoriqueStatutSignalement() != null) {
-                data.put("history_id", notification.getHistoriqueStatutSignalement().getId());
-            }
-            
-            data.put("signalement_id", notification.getSignalement().getId());
-            data.put("signalement_titre", notification.getSignalement().getTitre());
-            data.put("user_id", notification.getUser().getId());
-            
-            if (notification.getStatut() != null) {
-                data.put("status_id", notification.getStatut().getId());
-                data.put("status_libelle", notification.getStatut().getStatut());
-                data.put("status_avancement", notification.getStatut().getAvancement());
-            }
-            
-            data.put("date", notification.getDate() != null 
-                    ? notification.getDate().format(DATE_FORMATTER) 
-                    : LocalDateTime.now().format(DATE_FORMATTER));
-            data.put("lu", notification.getLu());
-
-            // Sauvegarder dans Firestore
-            WriteResult result = firestore.collection(COLLECTION_NAME)
-                    .document(notification.getId())
-                    .set(data)
-                    .get();
-
-            // Mettre à jour le firestore_id
-            notification.setFirestoreId(notification.getId());
-            notificationRepository.save(notification);
+        outboxService.enregistrer(FirestoreOutbox.TYPE_NOTIFICATION, notification.getId());
+    }
+
+    @Override
+    public String getTypeEntite() {
+        return FirestoreOutbox.TYPE_NOTIFICATION;
+    }
+
+    /**
+     * Écrire l'état courant d'une notification dans Firestore (dispatcher de l'outbox, hors transaction)
+     */
+    @Override
+    public Runnable pousser(String notificationId, long timeoutSecondes) throws Exception {
+        Optional<Notification> notificationOpt = notificationRepository.findById(notificationId);
+        if (notificationOpt.isEmpty()) {
+            return null;
+        }
+        Notification notification = notificationOpt.get();
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("id", notification.getId());
+        data.put("motif", notification.getMotif());
+
+        if (notification.getHistoriqueStatutSignalement() != null) {
+            data.put("history_id", notification.getHistoriqueStatutSignalement().getId());
+        }
 
-            log.info("✅ Notification {} synchronisée vers Firestore à {}", 
-                    notification.getId(), result.getUpdateTime());
+        data.put("signalement_id", notification.getSignalement().getId());
+        data.put("signalement_titre", notification.getSignalement().getTitre());
+        data.put("user_id", notification.getUser().getId());
 
-        } catch (ExecutionException | InterruptedException e) {
-            log.error("❌ Erreur lors de la synchronisation Firestore de la notification {}", 
-                    notification.getId(), e);
-            Thread.currentThread().interrupt();
+        if (notification.getStatut() != null) {
+            data.put("status_id", notification.getStatut().getId());
+            data.put("status_libelle", notification.getStatut().getStatut());
+            data.put("status_avancement", notification.getStatut().getAvancement());
         }
+
+        data.put("date", notification.getDate() != null
+                ? notification.getDate().format(DATE_FORMATTER)
+                : LocalDateTime.now().format(DATE_FORMATTER));
+        data.put("lu", notification.getLu());
+
+        // Sauvegarder dans Firestore (document complet: couvre aussi le changement de "lu")
+        documentStore.set(COLLECTION_NAME, notification.getId(), data)
+                .get(timeoutSecondes, TimeUnit.SECONDS);
+
+        log.info("✅ Notification {} synchronisée vers Firestore", notification.getId());
+
+        // Mettre à jour le firestore_id
+        return notification.getFirestoreId() == null
+                ? () -> notificationRepository.definirFirestoreId(notificationId, notificationId)
+                : null;
     }
 
     /**
@@ -158,7 +169,7 @@ public class NotificationService {
         notification = notificationRepository.save(notification);
 
         // Mettre à jour dans Firestore
-        updateLuStatusInFirestore(notification);
+        synchronizeToFirestore(notification);
 
         return notification;
     }
@@ -173,33 +184,13 @@ public class NotificationService {
         for (Notification notification : unreadNotifications) {
             notification.setLu(true);
             notificationRepository.save(notification);
-            updateLuStatusInFirestore(notification);
+            synchronizeToFirestore(notification);
         }
         
         log.info("✅ {} notifications marquées comme lues pour l'utilisateur {}", 
                 unreadNotifications.size(), userId);
     }
 
-    /**
-     * Mettre à jour le statut "lu" dans Firestore
-     */
-    private void updateLuStatusInFirestore(Notification notification) {
-        try {
-            if (notification.getFirestoreId() != null) {
-                Map<String, Object> updates = new HashMap<>();
-                updates.put("lu", notification.getLu());
-
-                firestore.collection(COLLECTION_NAME)
-                        .document(notification.getFirestoreId())
-                        .update(updates)
-                        .get();
-            }
-        } catch (ExecutionException | InterruptedException e) {
-            log.error("❌ Erreur lors de la mise à jour Firestore du statut lu", e);
-            Thread.currentThread().interrupt();
-        }
-    }
-
     /**
      * Supprimer une notification
      */
@@ -209,17 +200,10 @@ public class NotificationService {
                 .orElseThrow(() -> new BusinessException("NOTIFICATION_NOT_FOUND", 
                         "Notification non trouvée: " + notificationId));
 
-        // Supprimer de Firestore
+        // Supprimer de Firestore après le commit
         if (notification.getFirestoreId() != null) {
-            try {
-                firestore.collection(COLLECTION_NAME)
-                        .document(notification.getFirestoreId())
-                        .delete()
-                        .get();
-            } catch (ExecutionException | InterruptedException e) {
-                log.warn("⚠️ Erreur lors de la suppression Firestore", e);
-                Thread.currentThread().interrupt();
-            }
+            outboxService.enregistrerSuppression(FirestoreOutbox.TYPE_NOTIFICATION, notification.getId(),
+                    COLLECTION_NAME, notification.getFirestoreId());
         }
 
         notificationRepository.delete(notification);
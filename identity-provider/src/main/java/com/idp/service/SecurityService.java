@@ -1,10 +1,12 @@
 package com.idp.service;
 
+import com.idp.config.CacheConfig;
 import com.idp.dto.SecuritySettingsRequest;
 import com.idp.entity.SecuritySetting;
 import com.idp.repository.SecuritySettingRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.util.HashMap;
@@ -15,6 +17,8 @@ import java.util.Map;
 public class SecurityService {
 
     private final SecuritySettingRepository securitySettingRepository;
+    private final CacheManager cacheManager;
+    private final CacheInvalidationService cacheInvalidationService;
 
     @Value("${security.max.login.attempts:3}")
     private Integer defaultMaxAttempts;
@@ -62,11 +66,15 @@ public class SecurityService {
                             newSetting.setValue(value);
                             securitySettingRepository.save(newSetting);
                         });
+        cacheInvalidationService.invalider(CacheConfig.SECURITY_SETTINGS, key);
     }
 
     private Integer getSettingValue(String key, Integer defaultValue) {
-        return securitySettingRepository.findByKey(key)
-                .map(setting -> Integer.parseInt(setting.getValue()))
-                .orElse(defaultValue);
+        // Valeur brute en cache local, invalidée sur tous les nœuds à chaque mise à jour
+        String value = cacheManager.getCache(CacheConfig.SECURITY_SETTINGS).get(key,
+                () -> securitySettingRepository.findByKey(key)
+                        .map(SecuritySetting::getValue)
+                        .orElse(null));
+        return value != null ? Integer.parseInt(value) : defaultValue;
     }
 }
\ No newline at end of file
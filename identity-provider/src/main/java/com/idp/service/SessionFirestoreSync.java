@@ -0,0 +1,44 @@
+package com.idp.service;
+
+import com.idp.entity.FirestoreOutbox;
+import com.idp.entity.UserSession;
+import com.idp.repository.UserSessionRepository;
+import com.idp.store.DocumentStore;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Écriture des sessions dans Firestore pour l'outbox: la connexion et la déconnexion
+ * enregistrent la session en base et rendent la main, le dispatcher l'envoie ensuite.
+ */
+@Service
+public class SessionFirestoreSync extends FirestoreEntiteSync<UserSession> {
+
+    public static final String COLLECTION_NAME = "user_sessions";
+
+    public SessionFirestoreSync(UserSessionRepository sessionRepository, DocumentStore documentStore,
+                                FirebaseHealthMonitor healthMonitor) {
+        super(documentStore, healthMonitor, FirestoreOutbox.TYPE_SESSION, COLLECTION_NAME,
+                sessionRepository::findById,
+                session -> session.getFirestoreId() != null ? session.getFirestoreId() : "session_" + session.getId(),
+                SessionFirestoreSync::document,
+                sessionRepository::marquerSynchronisee);
+    }
+
+    private static Map<String, Object> document(UserSession session) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("id", session.getId());
+        data.put("userId", session.getUser() != null ? session.getUser().getId() : null);
+        data.put("sessionToken", session.getSessionToken());
+        data.put("refreshToken", session.getRefreshToken());
+        data.put("deviceInfo", session.getDeviceInfo());
+        data.put("ipAddress", session.getIpAddress());
+        data.put("expiresAt", formatDate(session.getExpiresAt()));
+        data.put("createdAt", formatDate(session.getCreatedAt()));
+        data.put("isValid", session.getIsValid() != null ? session.getIsValid() : true);
+        data.put("syncStatus", session.getSyncStatus() != null ? session.getSyncStatus() : "PENDING");
+        return data;
+    }
+}
@@ -0,0 +1,109 @@
+package com.idp.service;
+
+import com.idp.dto.DoublonCandidatResponse;
+import com.idp.entity.Signalement;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Détection des doublons à la création d'un signalement: signalements encore ouverts
+ * dans un petit rayon (recherche KNN indexée), éventuellement filtrés par ressemblance du titre.
+ * Les candidats sont renvoyés au client, qui décide; rien n'est fusionné automatiquement.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SignalementDoublonService {
+
+    private final SignalementGeoService geoService;
+
+    @Value("${signalement.doublons.enabled:true}")
+    private boolean enabled;
+
+    // Rayon de recherche en mètres
+    @Value("${signalement.doublons.radius:25}")
+    private double rayon;
+
+    @Value("${signalement.doublons.max-candidats:5}")
+    private int maxCandidats;
+
+    // Statuts considérés comme ouverts
+    @Value("${signalement.doublons.statuts:NOUVEAU,EN_COURS}")
+    private List<String> statutsOuverts;
+
+    // Similarité minimale des titres (0 = critère désactivé, la distance suffit)
+    @Value("${signalement.doublons.similarite-titre-min:0}")
+    private double similariteTitreMin;
+
+    /**
+     * Doublons possibles d'un signalement sur le point d'être créé, du plus proche au plus lointain.
+     * Transaction séparée: une erreur SQL ici ne doit pas annuler la transaction de création.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public List<DoublonCandidatResponse> rechercherDoublons(Double latitude, Double longitude, String titre) {
+        if (!enabled || latitude == null || longitude == null) {
+            return List.of();
+        }
+        long debut = System.nanoTime();
+        Set<String> motsTitre = mots(titre);
+
+        List<DoublonCandidatResponse> candidats = geoService
+                .findNearbyParStatuts(latitude, longitude, rayon, maxCandidats, statutsOuverts).stream()
+                .map(proche -> {
+                    Signalement s = proche.signalement();
+                    return DoublonCandidatResponse.builder()
+                            .id(s.getId())
+                            .titre(s.getTitre())
+                            .statut(s.getStatut() != null ? s.getStatut().getStatut() : null)
+                            .distanceMetres(proche.distanceMetres())
+                            .similariteTitre(jaccard(motsTitre, mots(s.getTitre())))
+                            .build();
+                })
+                .filter(c -> similariteTitreMin <= 0 || c.getSimilariteTitre() >= similariteTitreMin)
+                .collect(Collectors.toList());
+
+        if (!candidats.isEmpty()) {
+            log.info("🔁 {} doublon(s) possible(s) à moins de {} m de ({}, {}) en {} µs",
+                    candidats.size(), rayon, latitude, longitude, (System.nanoTime() - debut) / 1000);
+        }
+        return candidats;
+    }
+
+    /**
+     * Mots significatifs d'un titre: minuscules, sans accents, 3 lettres ou plus
+     */
+    static Set<String> mots(String texte) {
+        if (texte == null) {
+            return Set.of();
+        }
+        String normalise = Normalizer.normalize(texte, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+        return Arrays.stream(normalise.split("[^a-z0-9]+"))
+                .filter(mot -> mot.length() >= 3)
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    static double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0.0;
+        }
+        Set<String> intersection = new HashSet<>(a);
+        intersection.retainAll(b);
+        Set<String> union = new HashSet<>(a);
+        union.addAll(b);
+        return (double) intersection.size() / union.size();
+    }
+}
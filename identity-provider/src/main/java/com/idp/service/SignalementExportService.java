@@ -0,0 +1,244 @@
+package com.idp.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.idp.entity.Signalement;
+import com.idp.exception.BusinessException;
+import com.idp.repository.SignalementRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Export des signalements en flux (NDJSON, CSV, GeoJSON).
+ * Chaque ligne lue est écrite directement dans la réponse puis détachée:
+ * la mémoire utilisée reste constante quelle que soit la taille de la table.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SignalementExportService {
+
+    private final SignalementRepository signalementRepository;
+    private final GlobalConfigService globalConfigService;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    // Nombre de lignes entre deux flush vers le client
+    private static final int FLUSH_INTERVAL = 500;
+
+    private static final List<String> CSV_COLUMNS = List.of(
+            "id", "titre", "description", "statut", "avancement", "latitude", "longitude",
+            "surfaceM2", "niveau", "budget", "entrepriseConcernee", "signaleurId", "firebaseId",
+            "createdAt", "updatedAt");
+
+    public enum ExportFormat {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv;charset=UTF-8", "csv"),
+        GEOJSON("application/geo+json", "geojson");
+
+        private final String contentType;
+        private final String extension;
+
+        ExportFormat(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static ExportFormat fromString(String value) {
+            for (ExportFormat format : values()) {
+                if (format.name().equalsIgnoreCase(value)) {
+                    return format;
+                }
+            }
+            throw new BusinessException("INVALID_EXPORT_FORMAT",
+                    "Format d'export non supporté: " + value + " (ndjson, csv, geojson)");
+        }
+    }
+
+    /**
+     * Exporter tous les signalements vers le flux de sortie
+     * @return le nombre de signalements exportés
+     */
+    @Transactional(readOnly = true)
+    public long exporter(ExportFormat format, OutputStream out) throws IOException {
+        BigDecimal prixM2Global = globalConfigService.findPrixM2Global().orElse(BigDecimal.ZERO);
+
+        long count;
+        try (Stream<Signalement> signalements = signalementRepository.streamAllForExport()) {
+            Iterator<Signalement> iterator = signalements.iterator();
+            switch (format) {
+                case CSV -> count = exporterCsv(iterator, prixM2Global, out);
+                case GEOJSON -> count = exporterGeoJson(iterator, prixM2Global, out);
+                default -> count = exporterNdjson(iterator, prixM2Global, out);
+            }
+        }
+
+        log.info("📦 Export {} terminé: {} signalements", format, count);
+        return count;
+    }
+
+    private long exporterNdjson(Iterator<Signalement> signalements, BigDecimal prixM2Global, OutputStream out)
+            throws IOException {
+        long count = 0;
+        try (JsonGenerator generator = creerGenerateur(out)) {
+            // Une valeur JSON par ligne, sans séparateur ajouté par Jackson
+            generator.setRootValueSeparator(null);
+            while (signalements.hasNext()) {
+                Signalement signalement = signalements.next();
+                generator.writeObject(toLigne(signalement, prixM2Global));
+                generator.writeRaw('\n');
+                entityManager.detach(signalement);
+
+                if (++count % FLUSH_INTERVAL == 0) {
+                    generator.flush();
+                }
+            }
+        }
+        return count;
+    }
+
+    private long exporterCsv(Iterator<Signalement> signalements, BigDecimal prixM2Global, OutputStream out)
+            throws IOException {
+        long count = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(String.join(",", CSV_COLUMNS));
+        writer.write("\r\n");
+
+        while (signalements.hasNext()) {
+            Signalement signalement = signalements.next();
+            Map<String, Object> ligne = toLigne(signalement, prixM2Global);
+            for (int i = 0; i < CSV_COLUMNS.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(echapperCsv(ligne.get(CSV_COLUMNS.get(i))));
+            }
+            writer.write("\r\n");
+            entityManager.detach(signalement);
+
+            if (++count % FLUSH_INTERVAL == 0) {
+                writer.flush();
+            }
+        }
+        writer.flush();
+        return count;
+    }
+
+    private long exporterGeoJson(Iterator<Signalement> signalements, BigDecimal prixM2Global, OutputStream out)
+            throws IOException {
+        long count = 0;
+        try (JsonGenerator generator = creerGenerateur(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("type", "FeatureCollection");
+            generator.writeArrayFieldStart("features");
+
+            while (signalements.hasNext()) {
+                Signalement signalement = signalements.next();
+                Map<String, Object> proprietes = toLigne(signalement, prixM2Global);
+                proprietes.remove("latitude");
+                proprietes.remove("longitude");
+
+                generator.writeStartObject();
+                generator.writeStringField("type", "Feature");
+                generator.writeStringField("id", signalement.getId());
+                generator.writeObjectFieldStart("geometry");
+                generator.writeStringField("type", "Point");
+                generator.writeArrayFieldStart("coordinates");
+                // GeoJSON: [longitude, latitude]
+                generator.writeNumber(signalement.getLongitude());
+                generator.writeNumber(signalement.getLatitude());
+                generator.writeEndArray();
+                generator.writeEndObject();
+                generator.writeObjectField("properties", proprietes);
+                generator.writeEndObject();
+                entityManager.detach(signalement);
+
+                if (++count % FLUSH_INTERVAL == 0) {
+                    generator.flush();
+                }
+            }
+
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        return count;
+    }
+
+    /**
+     * Générateur JSON qui ne ferme pas le flux de la réponse HTTP
+     */
+    private JsonGenerator creerGenerateur(OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return generator;
+    }
+
+    /**
+     * Ligne d'export à plat (mêmes champs pour les trois formats)
+     */
+    private Map<String, Object> toLigne(Signalement signalement, BigDecimal prixM2Global) {
+        BigDecimal budget = BigDecimal.ZERO;
+        if (signalement.getSurfaceM2() != null && signalement.getNiveau() != null) {
+            budget = prixM2Global
+                    .multiply(new BigDecimal(signalement.getNiveau()))
+                    .multiply(signalement.getSurfaceM2());
+        }
+
+        Map<String, Object> ligne = new LinkedHashMap<>();
+        ligne.put("id", signalement.getId());
+        ligne.put("titre", signalement.getTitre());
+        ligne.put("description", signalement.getDescription());
+        ligne.put("statut", signalement.getStatut().getStatut());
+        ligne.put("avancement", signalement.getStatut().getAvancement());
+        ligne.put("latitude", signalement.getLatitude());
+        ligne.put("longitude", signalement.getLongitude());
+        ligne.put("surfaceM2", signalement.getSurfaceM2());
+        ligne.put("niveau", signalement.getNiveau());
+        ligne.put("budget", budget);
+        ligne.put("entrepriseConcernee", signalement.getEntrepriseConcernee());
+        ligne.put("signaleurId", signalement.getSignaleur() != null ? signalement.getSignaleur().getId() : null);
+        ligne.put("firebaseId", signalement.getFirebaseId());
+        ligne.put("createdAt", signalement.getCreatedAt());
+        ligne.put("updatedAt", signalement.getUpdatedAt());
+        return ligne;
+    }
+
+    /**
+     * Échapper une valeur CSV (RFC 4180)
+     */
+    private String echapperCsv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String texte = value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString();
+        if (texte.contains(",") || texte.contains("\"") || texte.contains("\n") || texte.contains("\r")) {
+            return "\"" + texte.replace("\"", "\"\"") + "\"";
+        }
+        return texte;
+    }
+}
@@ -0,0 +1,137 @@
+package com.idp.service;
+
+import com.idp.store.DocumentStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingestion temps réel des signalements créés ou modifiés sur l'application mobile.
+ *
+ * Démarrage (et reprise après une erreur du listener): rattrapage par le pull incrémental
+ * depuis le point de reprise, puis listener sur les documents dont updatedAt (Timestamp)
+ * est postérieur au début du rattrapage, moins la marge sync.pull.overlap-seconds.
+ * Seuls les documents modifiés arrivent, appliqués par lots via FirestoreIngestionQueue.
+ * Les documents écrits par ce backend (updatedAt texte) ne correspondent pas à la requête
+ * et ne reviennent donc pas en écho.
+ *
+ * Une surveillance (signalements.listener.check-interval-ms) relance le listener tombé
+ * dès que Firebase est de nouveau disponible.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SignalementFirestoreListener {
+
+    private final DocumentStore documentStore;
+    private final SignalementService signalementService;
+    private final FirestoreIngestionQueue ingestionQueue;
+    private final FirestoreIncrementalPull incrementalPull;
+    private final FirebaseHealthMonitor firebaseHealthMonitor;
+
+    private final ScheduledExecutorService surveillance = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "signalements-listener");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile DocumentStore.Abonnement abonnement;
+
+    @Value("${signalements.listener.enabled:true}")
+    private boolean enabled;
+
+    @Value("${signalements.listener.check-interval-ms:10000}")
+    private long checkIntervalMs;
+
+    @Value("${sync.pull.overlap-seconds:30}")
+    private long overlapSeconds;
+
+    @PostConstruct
+    public void init() {
+        ingestionQueue.enregistrer(SignalementService.COLLECTION_NAME, documents -> incrementalPull.noterReessais(
+                SignalementService.COLLECTION_NAME, importer(documents)));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void demarrer() {
+        if (enabled) {
+            surveillance.scheduleWithFixedDelay(this::surveiller, 0, checkIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void arreter() {
+        surveillance.shutdownNow();
+        arreterListener();
+    }
+
+    public boolean isActif() {
+        return abonnement != null;
+    }
+
+    private void surveiller() {
+        if (!firebaseHealthMonitor.isDisponible()) {
+            return;
+        }
+        if (abonnement != null) {
+            reessayer();
+            return;
+        }
+        try {
+            Instant debut = Instant.now();
+            incrementalPull.tirer(SignalementService.COLLECTION_NAME, this::importer);
+
+            Instant depuis = debut.minusSeconds(overlapSeconds);
+            abonnement = documentStore.listen(SignalementService.COLLECTION_NAME, depuis,
+                    documents -> documents.forEach(
+                            document -> ingestionQueue.soumettre(SignalementService.COLLECTION_NAME, document)),
+                    erreur -> {
+                        // Listener terminé: relancé par la surveillance, avec rattrapage
+                        log.warn("⚠️ Listener signalements interrompu: {}", erreur.getMessage());
+                        arreterListener();
+                    });
+            log.info("📡 Listener signalements démarré (modifications depuis {})", depuis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("⚠️ Démarrage du listener signalements impossible, nouvel essai dans {} ms: {}",
+                    checkIntervalMs, e.getMessage());
+        }
+    }
+
+    /**
+     * Listener actif: relire les documents dont l'utilisateur manquait encore
+     */
+    private void reessayer() {
+        try {
+            incrementalPull.reessayer(SignalementService.COLLECTION_NAME, this::importer);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("⚠️ Relecture des signalements en attente impossible: {}", e.getMessage());
+        }
+    }
+
+    private List<String> importer(List<? extends DocumentStore.Document> documents) {
+        return signalementService.importerDocumentsFirebase(documents).aReessayer();
+    }
+
+    private void arreterListener() {
+        DocumentStore.Abonnement actuel = abonnement;
+        abonnement = null;
+        if (actuel != null) {
+            actuel.arreter();
+        }
+    }
+}
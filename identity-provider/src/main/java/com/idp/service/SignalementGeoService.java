@@ -0,0 +1,446 @@
+package com.idp.service;
+
+import com.idp.dto.GeoClusterResponse;
+import com.idp.dto.GeoClustersResponse;
+import com.idp.entity.Signalement;
+import com.idp.exception.BusinessException;
+import com.idp.repository.SignalementRepository;
+import com.idp.repository.SignalementRepository.PointCarte;
+import com.idp.service.SignalementSpatialIndex.Entree;
+import com.idp.util.KeysetCursor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Requêtes cartographiques sur les signalements.
+ *
+ * geo.backend=postgis (défaut): requêtes sur la colonne geom et son index GiST.
+ * geo.backend=memory: base sans PostGIS, les zones sont résolues par SignalementSpatialIndex
+ * et seules les lignes retenues sont lues en base (par id).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SignalementGeoService {
+
+    private final SignalementRepository signalementRepository;
+    private final GlobalConfigService globalConfigService;
+    private final ObjectProvider<SignalementSpatialIndex> spatialIndex;
+
+    // Ordre de la pagination keyset: created_at DESC, id DESC
+    private static final Comparator<Entree> ORDRE_PAGE = Comparator
+            .comparing(Entree::createdAt, Comparator.nullsLast(Comparator.<LocalDateTime>naturalOrder()))
+            .thenComparing(Entree::id)
+            .reversed();
+
+    private static final int ZOOM_MIN = 0;
+    private static final int ZOOM_MAX = 22;
+    // Nombre de cellules de regroupement par tuile de 256 px (soit des cellules de 64 px)
+    private static final int CELLS_PER_TILE = 4;
+
+    private static final double RAYON_TERRE_M = 6371008.8;
+    private static final double METRES_PAR_DEGRE_LAT = 111320.0;
+
+    // Recherche de proximité: rayon (mètres) et nombre de résultats par défaut / maximum
+    @Value("${geo.nearby.default-radius:1000}")
+    private double nearbyDefaultRadius;
+
+    @Value("${geo.nearby.max-radius:50000}")
+    private double nearbyMaxRadius;
+
+    @Value("${geo.nearby.default-k:20}")
+    private int nearbyDefaultK;
+
+    @Value("${geo.nearby.max-k:200}")
+    private int nearbyMaxK;
+
+    // À partir de ce zoom, les signalements sont renvoyés individuellement
+    @Value("${geo.clusters.points-min-zoom:16}")
+    private int pointsMinZoom;
+
+    // Au-delà, on regroupe même à fort zoom pour garder une réponse bornée
+    @Value("${geo.clusters.max-points:2000}")
+    private int maxPoints;
+
+    /**
+     * Clusters (ou points individuels à fort zoom) d'une zone de la carte
+     * @param bbox "minLon,minLat,maxLon,maxLat"
+     */
+    @Transactional(readOnly = true)
+    public GeoClustersResponse getClusters(String bbox, Integer zoom) {
+        double[] bornes = parseBbox(bbox);
+        int z = zoom == null ? ZOOM_MIN : zoom;
+        if (z < ZOOM_MIN || z > ZOOM_MAX) {
+            throw new BusinessException("INVALID_ZOOM", "Le zoom doit être entre " + ZOOM_MIN + " et " + ZOOM_MAX);
+        }
+
+        double minLon = bornes[0];
+        double minLat = bornes[1];
+        double maxLon = bornes[2];
+        double maxLat = bornes[3];
+        BigDecimal prixM2Global = globalConfigService.findPrixM2Global().orElse(BigDecimal.ZERO);
+
+        if (isMemoire()) {
+            return getClustersEnMemoire(entreesDansZone(minLat, maxLat, minLon, maxLon), z, prixM2Global);
+        }
+
+        if (z >= pointsMinZoom) {
+            List<PointCarte> points = signalementRepository.findPointsInBounds(
+                    minLat, maxLat, minLon, maxLon, maxPoints + 1);
+            if (points.size() <= maxPoints) {
+                return GeoClustersResponse.builder()
+                        .zoom(z)
+                        .clustered(false)
+                        .items(toResponses(points, prixM2Global))
+                        .build();
+            }
+            log.debug("Zone trop dense pour le zoom {} ({}+ points), regroupement", z, maxPoints);
+        }
+
+        double cellSize = tailleCellule(z);
+        List<PointCarte> clusters = signalementRepository.findClustersInBounds(
+                minLat, maxLat, minLon, maxLon, cellSize);
+
+        return GeoClustersResponse.builder()
+                .zoom(z)
+                .clustered(true)
+                .cellSize(cellSize)
+                .items(toResponses(clusters, prixM2Global))
+                .build();
+    }
+
+    /**
+     * Signalement trouvé par une recherche de proximité
+     */
+    public record Proche(Signalement signalement, double distanceMetres) {
+    }
+
+    /**
+     * Les k signalements les plus proches d'un point, du plus proche au plus lointain
+     * @param radius rayon en mètres (défaut geo.nearby.default-radius)
+     * @param statut statut à retenir (optionnel)
+     */
+    @Transactional(readOnly = true)
+    public List<Proche> findNearby(Double lat, Double lon, Double radius, Integer k, String statut) {
+        if (lat == null || lon == null || lat < -90 || lat > 90 || lon < -180 || lon > 180) {
+            throw new BusinessException("INVALID_COORDINATES", "lat doit être entre -90 et 90, lon entre -180 et 180");
+        }
+        double rayon = radius == null ? nearbyDefaultRadius : radius;
+        if (rayon <= 0 || rayon > nearbyMaxRadius) {
+            throw new BusinessException("INVALID_RADIUS", "Le rayon doit être entre 0 et " + (long) nearbyMaxRadius + " m");
+        }
+        int nombre = k == null ? nearbyDefaultK : Math.max(1, Math.min(k, nearbyMaxK));
+        String statutFiltre = statut == null || statut.isBlank() ? null : statut.trim().toUpperCase();
+
+        Map<String, Double> distances = new LinkedHashMap<>();
+        if (isMemoire()) {
+            procheEnMemoire(lat, lon, rayon, nombre, s -> statutFiltre == null || statutFiltre.equals(s))
+                    .forEach(e -> distances.put(e.id(), distance(lat, lon, e.latitude(), e.longitude())));
+        } else {
+            signalementRepository.findNearest(lat, lon, rayon, statutFiltre, nombre)
+                    .forEach(p -> distances.put(p.getId(), p.getDistance()));
+        }
+        return chargerProches(distances);
+    }
+
+    /**
+     * Les signalements les plus proches parmi certains statuts (détection de doublons).
+     * Rayon et nombre ne sont pas bornés: appel interne uniquement.
+     */
+    @Transactional(readOnly = true)
+    public List<Proche> findNearbyParStatuts(double lat, double lon, double rayon, int nombre,
+            Collection<String> statuts) {
+        if (statuts.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Double> distances = new LinkedHashMap<>();
+        if (isMemoire()) {
+            procheEnMemoire(lat, lon, rayon, nombre, statuts::contains)
+                    .forEach(e -> distances.put(e.id(), distance(lat, lon, e.latitude(), e.longitude())));
+        } else {
+            signalementRepository.findNearestParStatuts(lat, lon, rayon, statuts, nombre)
+                    .forEach(p -> distances.put(p.getId(), p.getDistance()));
+        }
+        return chargerProches(distances);
+    }
+
+    /**
+     * Charger les signalements par id, dans l'ordre des distances
+     */
+    private List<Proche> chargerProches(Map<String, Double> distances) {
+        if (distances.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Signalement> parId = signalementRepository.findAllById(distances.keySet()).stream()
+                .collect(Collectors.toMap(Signalement::getId, Function.identity()));
+        return distances.entrySet().stream()
+                .filter(e -> parId.containsKey(e.getKey()))
+                .map(e -> new Proche(parId.get(e.getKey()), e.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Sans PostGIS: rectangle englobant le cercle dans l'index, puis distance exacte
+     */
+    private List<Entree> procheEnMemoire(double lat, double lon, double rayon, int nombre,
+            Predicate<String> statutRetenu) {
+        double dLat = rayon / METRES_PAR_DEGRE_LAT;
+        double cosLat = Math.cos(Math.toRadians(lat));
+        // Près des pôles, le rectangle couvre toutes les longitudes
+        double dLon = cosLat < 1e-6 ? 180 : Math.min(180, rayon / (METRES_PAR_DEGRE_LAT * cosLat));
+
+        return entreesDansZone(Math.max(-90, lat - dLat), Math.min(90, lat + dLat),
+                Math.max(-180, lon - dLon), Math.min(180, lon + dLon)).stream()
+                .filter(e -> statutRetenu.test(e.statut()))
+                .filter(e -> distance(lat, lon, e.latitude(), e.longitude()) <= rayon)
+                .sorted(Comparator.comparingDouble(e -> distance(lat, lon, e.latitude(), e.longitude())))
+                .limit(nombre)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Distance du grand cercle (haversine), en mètres
+     */
+    static double distance(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * RAYON_TERRE_M * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Signalements d'une zone rectangulaire
+     */
+    @Transactional(readOnly = true)
+    public List<Signalement> findInBounds(Double minLat, Double maxLat, Double minLon, Double maxLon) {
+        if (!isMemoire()) {
+            return signalementRepository.findByGeographicBounds(minLat, maxLat, minLon, maxLon);
+        }
+        List<Entree> entrees = entreesDansZone(minLat, maxLat, minLon, maxLon);
+        entrees.sort(ORDRE_PAGE);
+        return chargerDansLOrdre(entrees);
+    }
+
+    /**
+     * Première page (keyset) d'une zone rectangulaire
+     */
+    @Transactional(readOnly = true)
+    public List<Signalement> findFirstPageInBounds(Double minLat, Double maxLat, Double minLon, Double maxLon,
+            Pageable pageable) {
+        if (!isMemoire()) {
+            return signalementRepository.findFirstPageByGeographicBounds(minLat, maxLat, minLon, maxLon, pageable);
+        }
+        return pageEnMemoire(entreesDansZone(minLat, maxLat, minLon, maxLon), null, pageable.getPageSize());
+    }
+
+    /**
+     * Page suivante (keyset) d'une zone rectangulaire, après le curseur
+     */
+    @Transactional(readOnly = true)
+    public List<Signalement> findPageInBoundsAfter(Double minLat, Double maxLat, Double minLon, Double maxLon,
+            KeysetCursor cursor, Pageable pageable) {
+        if (!isMemoire()) {
+            return signalementRepository.findPageByGeographicBoundsAfter(
+                    minLat, maxLat, minLon, maxLon, cursor.getCreatedAt(), cursor.getId(), pageable);
+        }
+        return pageEnMemoire(entreesDansZone(minLat, maxLat, minLon, maxLon), cursor, pageable.getPageSize());
+    }
+
+    private boolean isMemoire() {
+        return spatialIndex.getIfAvailable() != null;
+    }
+
+    /**
+     * Entrées d'une zone: depuis l'index, ou depuis la base tant qu'il n'est pas chargé
+     */
+    private List<Entree> entreesDansZone(Double minLat, Double maxLat, Double minLon, Double maxLon) {
+        SignalementSpatialIndex index = spatialIndex.getIfAvailable();
+        if (index != null && index.isPret()) {
+            return index.rechercher(minLat, maxLat, minLon, maxLon);
+        }
+        log.debug("Index spatial pas encore chargé, lecture directe de la zone en base");
+        return signalementRepository.findByLatitudeBetweenAndLongitudeBetween(minLat, maxLat, minLon, maxLon)
+                .stream()
+                .map(s -> new Entree(s.getId(), s.getLatitude(), s.getLongitude(), s.getCreatedAt(),
+                        s.getStatut() != null ? s.getStatut().getStatut() : null,
+                        s.getNiveau() != null && s.getSurfaceM2() != null
+                                ? s.getSurfaceM2().multiply(BigDecimal.valueOf(s.getNiveau()))
+                                : BigDecimal.ZERO))
+                .collect(Collectors.toList());
+    }
+
+    private List<Signalement> pageEnMemoire(List<Entree> entrees, KeysetCursor cursor, int taille) {
+        Entree borne = cursor == null ? null
+                : new Entree(cursor.getId(), 0, 0, cursor.getCreatedAt(), null, null);
+        List<Entree> page = entrees.stream()
+                .filter(e -> borne == null || ORDRE_PAGE.compare(e, borne) > 0)
+                .sorted(ORDRE_PAGE)
+                .limit(taille)
+                .collect(Collectors.toList());
+        return chargerDansLOrdre(page);
+    }
+
+    /**
+     * Charger les signalements par id en conservant l'ordre des entrées
+     */
+    private List<Signalement> chargerDansLOrdre(List<Entree> entrees) {
+        if (entrees.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Signalement> parId = signalementRepository
+                .findAllById(entrees.stream().map(Entree::id).collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(Signalement::getId, Function.identity()));
+        return entrees.stream()
+                .map(e -> parId.get(e.id()))
+                // Supprimé entre la lecture de l'index et celle de la base
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Regroupement sur la même grille que findClustersInBounds, calculé en Java
+     */
+    private GeoClustersResponse getClustersEnMemoire(List<Entree> entrees, int z, BigDecimal prixM2Global) {
+        if (z >= pointsMinZoom && entrees.size() <= maxPoints) {
+            List<GeoClusterResponse> points = entrees.stream()
+                    .map(e -> GeoClusterResponse.builder()
+                            .id(e.id())
+                            .latitude(e.latitude())
+                            .longitude(e.longitude())
+                            .count(1L)
+                            .statutDominant(e.statut())
+                            .totalBudget(prixM2Global.multiply(e.niveauSurface()))
+                            .build())
+                    .collect(Collectors.toList());
+            return GeoClustersResponse.builder().zoom(z).clustered(false).items(points).build();
+        }
+
+        double cellSize = tailleCellule(z);
+        Map<String, Cellule> cellules = new LinkedHashMap<>();
+        for (Entree entree : entrees) {
+            // Même accrochage que ST_SnapToGrid: point de grille le plus proche
+            long cx = Math.round(entree.longitude() / cellSize);
+            long cy = Math.round(entree.latitude() / cellSize);
+            cellules.computeIfAbsent(cx + ":" + cy, k -> new Cellule()).ajouter(entree);
+        }
+
+        List<GeoClusterResponse> clusters = cellules.values().stream()
+                .map(c -> GeoClusterResponse.builder()
+                        .id(c.count == 1 ? c.premierId : null)
+                        .latitude(c.sommeLat / c.count)
+                        .longitude(c.sommeLon / c.count)
+                        .count(c.count)
+                        .statutDominant(c.statutDominant())
+                        .totalBudget(prixM2Global.multiply(c.totalNiveauSurface))
+                        .build())
+                .collect(Collectors.toList());
+
+        return GeoClustersResponse.builder()
+                .zoom(z)
+                .clustered(true)
+                .cellSize(cellSize)
+                .items(clusters)
+                .build();
+    }
+
+    private static final class Cellule {
+        private long count;
+        private double sommeLat;
+        private double sommeLon;
+        private String premierId;
+        private BigDecimal totalNiveauSurface = BigDecimal.ZERO;
+        private final Map<String, Integer> parStatut = new HashMap<>();
+
+        void ajouter(Entree entree) {
+            if (count == 0) {
+                premierId = entree.id();
+            }
+            count++;
+            sommeLat += entree.latitude();
+            sommeLon += entree.longitude();
+            totalNiveauSurface = totalNiveauSurface.add(entree.niveauSurface());
+            if (entree.statut() != null) {
+                parStatut.merge(entree.statut(), 1, Integer::sum);
+            }
+        }
+
+        /**
+         * Statut le plus fréquent; à égalité le premier par ordre alphabétique (comme MODE())
+         */
+        String statutDominant() {
+            return parStatut.entrySet().stream()
+                    .max(Map.Entry.<String, Integer>comparingByValue()
+                            .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder())))
+                    .map(Map.Entry::getKey)
+                    .orElse(null);
+        }
+    }
+
+    /**
+     * Largeur en degrés d'une cellule de regroupement pour un zoom donné
+     * (une tuile couvre 360 / 2^zoom degrés de longitude)
+     */
+    private double tailleCellule(int zoom) {
+        return 360.0 / ((1L << zoom) * CELLS_PER_TILE);
+    }
+
+    private List<GeoClusterResponse> toResponses(List<PointCarte> points, BigDecimal prixM2Global) {
+        return points.stream()
+                .map(p -> GeoClusterResponse.builder()
+                        .id(p.getCount() != null && p.getCount() == 1 ? p.getId() : null)
+                        .latitude(p.getLatitude())
+                        .longitude(p.getLongitude())
+                        .count(p.getCount())
+                        .statutDominant(p.getStatutDominant())
+                        .totalBudget(prixM2Global.multiply(
+                                p.getTotalNiveauSurface() != null ? p.getTotalNiveauSurface() : BigDecimal.ZERO))
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Lire une bbox "minLon,minLat,maxLon,maxLat" (ordre GeoJSON / OGC)
+     */
+    double[] parseBbox(String bbox) {
+        if (bbox == null || bbox.isBlank()) {
+            throw new BusinessException("INVALID_BBOX", "Paramètre bbox obligatoire: minLon,minLat,maxLon,maxLat");
+        }
+        String[] parts = bbox.split(",");
+        if (parts.length != 4) {
+            throw new BusinessException("INVALID_BBOX", "bbox doit contenir 4 valeurs: minLon,minLat,maxLon,maxLat");
+        }
+        double[] bornes = new double[4];
+        try {
+            for (int i = 0; i < 4; i++) {
+                bornes[i] = Double.parseDouble(parts[i].trim());
+            }
+        } catch (NumberFormatException e) {
+            throw new BusinessException("INVALID_BBOX", "bbox contient une valeur non numérique: " + bbox);
+        }
+        if (bornes[0] > bornes[2] || bornes[1] > bornes[3]) {
+            throw new BusinessException("INVALID_BBOX", "bbox invalide: min doit être inférieur ou égal à max");
+        }
+        return bornes;
+    }
+}
@@ -1,54 +1,79 @@
 package com.idp.service;
 
-import com.google.cloud.firestore.Firestore;
-import com.google.cloud.firestore.WriteResult;
+import com.idp.dto.CursorPage;
+import com.idp.dto.DoublonCandidatResponse;
+import com.idp.dto.NearbySignalementResponse;
 import com.idp.dto.SignalementRequest;
 import com.idp.dto.SignalementResponse;
+import com.idp.entity.FirestoreOutbox;
 import com.idp.entity.HistoriqueStatutSignalement;
 import com.idp.entity.Signalement;
 import com.idp.entity.StatutAvancementSignalement;
 import com.idp.entity.User;
 import com.idp.exception.BusinessException;
 import com.idp.repository.HistoriqueStatutSignalementRepository;
+import com.idp.repository.HistoriqueStatutSignalementRepository.JalonsStatut;
 import com.idp.repository.SignalementRepository;
 import com.idp.repository.StatutAvancementSignalementRepository;
 import com.idp.repository.UserRepository;
-import com.idp.repository.GlobalConfigRepository;
+import com.idp.store.DocumentStore;
+import com.idp.store.DocumentStore.Document;
+import com.idp.util.FirestoreEmpreinte;
+import com.idp.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
-public class SignalementService {
+public class SignalementService implements FirestoreOutboxHandler {
 
     private final SignalementRepository signalementRepository;
     private final UserRepository userRepository;
     private final StatutAvancementSignalementRepository statutRepository;
     private final HistoriqueStatutSignalementRepository historiqueRepository;
     private final NotificationService notificationService;
-    private final Firestore firestore;
-    private final GlobalConfigRepository globalConfigRepository;
-    private static final String COLLECTION_NAME = "signalements";
+    private final DocumentStore documentStore;
+    private final GlobalConfigService globalConfigService;
+    private final SignalementStatsService statsService;
+    private final SignalementGeoService geoService;
+    private final SignalementDoublonService doublonService;
+    private final FirestoreOutboxService outboxService;
+    private final FirestoreBatchWriter batchWriter;
+    private final FirestoreIncrementalPull incrementalPull;
+    public static final String COLLECTION_NAME = "signalements";
+    // Champs réécrits à chaque push, hors comparaison avec l'empreinte du dernier push
+    private static final Set<String> METADONNEES_FIREBASE = Set.of("updatedAt", "synchronized");
+    // Taille max d'une clause IN pour le chargement groupé de l'historique
+    private static final int JALONS_BATCH_SIZE = 1000;
+    // Pagination par curseur
+    private static final int PAGE_SIZE_DEFAULT = 50;
+    private static final int PAGE_SIZE_MAX = 500;
 
     /**
      * Récupérer le prix global au m² depuis la configuration
      */
     private BigDecimal getPrixM2Global() {
-        return globalConfigRepository.findByConfigKey(com.idp.entity.GlobalConfig.PRIX_M2_GLOBAL_KEY)
-                .map(com.idp.entity.GlobalConfig::getValueAsBigDecimal)
-                .orElse(BigDecimal.ZERO);
+        return globalConfigService.findPrixM2Global().orElse(BigDecimal.ZERO);
     }
 
     /**
@@ -77,6 +102,9 @@ public class SignalementService {
             StatutAvancementSignalement statutNouveauOpt = statutRepository.findByStatut("NOUVEAU")
                     .orElseThrow(() -> new BusinessException("STATUT_NOT_FOUND", "Statut 'NOUVEAU' introuvable"));
 
+            // Avant l'insertion, pour ne pas se trouver soi-même
+            List<DoublonCandidatResponse> doublons = rechercherDoublons(request);
+
             Signalement signalement = Signalement.builder()
                     .titre(request.getTitre())
                     .description(request.getDescription())
@@ -91,12 +119,15 @@ public class SignalementService {
                     .build();
 
             signalement = signalementRepository.save(signalement);
+            statsService.enregistrerAjout(signalement);
             enregistrerHistoriqueStatut(signalement, statutNouveauOpt, LocalDateTime.now());
 
             // Synchroniser vers Firebase
             synchronizeToFirebase(signalement);
 
-            return mapToResponse(signalement);
+            SignalementResponse response = mapToResponse(signalement);
+            response.setDoublonsPotentiels(doublons);
+            return response;
         } catch (BusinessException e) {
             throw e;
         } catch (Exception e) {
@@ -105,14 +136,24 @@ public class SignalementService {
         }
     }
 
+    /**
+     * Doublons possibles, à titre indicatif: un échec de la recherche n'empêche pas la création
+     */
+    private List<DoublonCandidatResponse> rechercherDoublons(SignalementRequest request) {
+        try {
+            return doublonService.rechercherDoublons(
+                    request.getLatitude(), request.getLongitude(), request.getTitre());
+        } catch (Exception e) {
+            log.warn("⚠️ Recherche de doublons impossible, création sans candidats: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
     /**
      * Récupérer tous les signalements
      */
     public List<SignalementResponse> getAllSignalements() {
-        return signalementRepository.findAll()
-                .stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        return mapToResponses(signalementRepository.findAll());
     }
 
     /**
@@ -128,10 +169,7 @@ public class SignalementService {
      * Récupérer tous les signalements d'un utilisateur
      */
     public List<SignalementResponse> getSignalementsByUser(String userId) {
-        return signalementRepository.findBySignaleurId(userId)
-                .stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        return mapToResponses(signalementRepository.findBySignaleurId(userId));
     }
 
     /**
@@ -141,10 +179,7 @@ public class SignalementService {
         StatutAvancementSignalement statutObj = statutRepository.findByStatut(statut.toUpperCase())
                 .orElseThrow(() -> new BusinessException("STATUT_NOT_FOUND", "Statut introuvable: " + statut));
 
-        return signalementRepository.findByStatut(statutObj)
-                .stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        return mapToResponses(signalementRepository.findByStatut(statutObj));
     }
 
     /**
@@ -154,6 +189,7 @@ public class SignalementService {
     public SignalementResponse updateSignalement(String id, SignalementRequest request) {
         Signalement signalement = signalementRepository.findById(id)
                 .orElseThrow(() -> new BusinessException("SIGNALEMENT_NOT_FOUND", "Signalement non trouvé"));
+        SignalementStatsService.Contribution avant = statsService.contribution(signalement);
 
         signalement.setTitre(request.getTitre());
         signalement.setDescription(request.getDescription());
@@ -165,6 +201,7 @@ public class SignalementService {
 
         signalement.setIsSynchronized(false);
         signalement = signalementRepository.save(signalement);
+        statsService.enregistrerModification(avant, signalement);
 
         // Synchroniser vers Firebase
         synchronizeToFirebase(signalement);
@@ -183,9 +220,11 @@ public class SignalementService {
         StatutAvancementSignalement statut = statutRepository.findByStatut(newStatut.toUpperCase())
                 .orElseThrow(() -> new BusinessException("STATUT_NOT_FOUND", "Statut introuvable: " + newStatut));
 
+        SignalementStatsService.Contribution avant = statsService.contribution(signalement);
         signalement.setStatut(statut);
         signalement.setIsSynchronized(false);
         signalement = signalementRepository.save(signalement);
+        statsService.enregistrerModification(avant, signalement);
 
         // Enregistrer l'historique du changement de statut
         HistoriqueStatutSignalement historique = enregistrerHistoriqueStatut(signalement, statut, LocalDateTime.now());
@@ -214,16 +253,15 @@ public class SignalementService {
         Signalement signalement = signalementRepository.findById(id)
                 .orElseThrow(() -> new BusinessException("SIGNALEMENT_NOT_FOUND", "Signalement non trouvé"));
 
-        // Supprimer de Firebase
+        // Supprimer de Firebase après le commit
         if (signalement.getFirebaseId() != null && !signalement.getFirebaseId().isEmpty()) {
-            try {
-                firestore.collection(COLLECTION_NAME).document(signalement.getFirebaseId()).delete().get();
-            } catch (ExecutionException | InterruptedException e) {
-                log.warn("Erreur lors de la suppression du signalement dans Firebase", e);
-            }
+            outboxService.enregistrerSuppression(FirestoreOutbox.TYPE_SIGNALEMENT, signalement.getId(),
+                    COLLECTION_NAME, signalement.getFirebaseId());
         }
 
+        SignalementStatsService.Contribution avant = statsService.contribution(signalement);
         signalementRepository.delete(signalement);
+        statsService.enregistrerSuppression(avant);
     }
 
     /**
@@ -231,167 +269,356 @@ public class SignalementService {
      */
     public List<SignalementResponse> getSignalementsByGeographicBounds(Double minLat, Double maxLat, Double minLon,
             Double maxLon) {
-        return signalementRepository.findByGeographicBounds(minLat, maxLat, minLon, maxLon)
-                .stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        return mapToResponses(geoService.findInBounds(minLat, maxLat, minLon, maxLon));
+    }
+
+    /**
+     * Signalements les plus proches d'un point, classés par distance
+     */
+    public List<NearbySignalementResponse> getSignalementsProches(Double lat, Double lon, Double radius,
+            Integer k, String statut) {
+        List<SignalementGeoService.Proche> proches = geoService.findNearby(lat, lon, radius, k, statut);
+        List<SignalementResponse> responses = mapToResponses(proches.stream()
+                .map(SignalementGeoService.Proche::signalement)
+                .collect(Collectors.toList()));
+
+        List<NearbySignalementResponse> resultats = new ArrayList<>(proches.size());
+        for (int i = 0; i < proches.size(); i++) {
+            resultats.add(NearbySignalementResponse.builder()
+                    .distanceMetres(proches.get(i).distanceMetres())
+                    .signalement(responses.get(i))
+                    .build());
+        }
+        return resultats;
+    }
+
+    /**
+     * Récupérer une page de signalements (pagination par curseur)
+     */
+    public CursorPage<SignalementResponse> getSignalementsPage(String cursor, Integer limit) {
+        return paginer(cursor, limit,
+                signalementRepository::findFirstPage,
+                (c, pageable) -> signalementRepository.findPageAfter(c.getCreatedAt(), c.getId(), pageable));
+    }
+
+    /**
+     * Récupérer une page des signalements d'un utilisateur
+     */
+    public CursorPage<SignalementResponse> getSignalementsPageByUser(String userId, String cursor, Integer limit) {
+        return paginer(cursor, limit,
+                pageable -> signalementRepository.findFirstPageBySignaleurId(userId, pageable),
+                (c, pageable) -> signalementRepository.findPageBySignaleurIdAfter(
+                        userId, c.getCreatedAt(), c.getId(), pageable));
+    }
+
+    /**
+     * Récupérer une page de signalements par statut
+     */
+    public CursorPage<SignalementResponse> getSignalementsPageByStatut(String statut, String cursor, Integer limit) {
+        StatutAvancementSignalement statutObj = statutRepository.findByStatut(statut.toUpperCase())
+                .orElseThrow(() -> new BusinessException("STATUT_NOT_FOUND", "Statut introuvable: " + statut));
+
+        return paginer(cursor, limit,
+                pageable -> signalementRepository.findFirstPageByStatut(statutObj, pageable),
+                (c, pageable) -> signalementRepository.findPageByStatutAfter(
+                        statutObj, c.getCreatedAt(), c.getId(), pageable));
     }
 
     /**
-     * Synchroniser un signalement vers Firebase
+     * Récupérer une page de signalements dans une zone géographique
+     */
+    public CursorPage<SignalementResponse> getSignalementsPageByGeographicBounds(Double minLat, Double maxLat,
+            Double minLon, Double maxLon, String cursor, Integer limit) {
+        return paginer(cursor, limit,
+                pageable -> geoService.findFirstPageInBounds(minLat, maxLat, minLon, maxLon, pageable),
+                (c, pageable) -> geoService.findPageInBoundsAfter(minLat, maxLat, minLon, maxLon, c, pageable));
+    }
+
+    /**
+     * Pagination keyset: on lit limit + 1 lignes après le curseur pour savoir s'il reste
+     * une page, sans requête de comptage ni OFFSET
+     */
+    private CursorPage<SignalementResponse> paginer(String cursor, Integer limit,
+            Function<Pageable, List<Signalement>> premierePage,
+            BiFunction<KeysetCursor, Pageable, List<Signalement>> pageSuivante) {
+        int taille = limit == null ? PAGE_SIZE_DEFAULT : Math.max(1, Math.min(limit, PAGE_SIZE_MAX));
+        Pageable pageable = PageRequest.of(0, taille + 1);
+
+        List<Signalement> lignes = (cursor == null || cursor.isBlank())
+                ? premierePage.apply(pageable)
+                : pageSuivante.apply(KeysetCursor.decode(cursor), pageable);
+
+        boolean hasMore = lignes.size() > taille;
+        List<Signalement> page = hasMore ? lignes.subList(0, taille) : lignes;
+
+        String nextCursor = null;
+        if (hasMore) {
+            Signalement dernier = page.get(page.size() - 1);
+            nextCursor = KeysetCursor.of(dernier.getCreatedAt(), dernier.getId()).encode();
+        }
+
+        return CursorPage.<SignalementResponse>builder()
+                .items(mapToResponses(page))
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .limit(taille)
+                .build();
+    }
+
+    /**
+     * Planifier la synchronisation d'un signalement vers Firebase (outbox, envoyé après le commit)
      */
     @Transactional
     public void synchronizeToFirebase(Signalement signalement) {
-        try {
-            Map<String, Object> data = new HashMap<>();
-            data.put("id", signalement.getId());
-            data.put("titre", signalement.getTitre());
-            data.put("description", signalement.getDescription());
-            data.put("statutId", signalement.getStatut().getId());
-            data.put("latitude", signalement.getLatitude());
-            data.put("longitude", signalement.getLongitude());
-            data.put("surfaceM2", signalement.getSurfaceM2());
-            data.put("budget", signalement.getBudget());
-            data.put("entrepriseConcernee", signalement.getEntrepriseConcernee());
-            data.put("createdAt", signalement.getCreatedAt());
-            data.put("updatedAt", signalement.getUpdatedAt());
-            // ⭐ IMPORTANT: Ajouter le user_id pour la synchronisation inverse
-            if (signalement.getSignaleur() != null) {
-                data.put("userId", signalement.getSignaleur().getId());
-            }
-            data.put("synchronized", true);
-
-            @SuppressWarnings("all")
-            WriteResult result = null;
-            if (signalement.getFirebaseId() != null && !signalement.getFirebaseId().isEmpty()) {
-                // Mise à jour
-                log.info("📝 Mise à jour du signalement {} dans Firebase", signalement.getFirebaseId());
-                result = firestore.collection(COLLECTION_NAME)
-                        .document(signalement.getFirebaseId())
-                        .set(data)
-                        .get();
-                log.info("✅ Signalement {} mis à jour dans Firebase", signalement.getFirebaseId());
-            } else {
-                // Création - Firestore crée automatiquement la collection au premier write
-                log.info("🆕 Création du signalement {} dans Firebase (collection: {})", signalement.getId(),
-                        COLLECTION_NAME);
-                result = firestore.collection(COLLECTION_NAME)
-                        .document(signalement.getId())
-                        .set(data)
-                        .get();
-
-                signalement.setFirebaseId(signalement.getId());
-                log.info("✅ Signalement {} créé dans Firebase avec succès", signalement.getId());
-            }
+        outboxService.enregistrer(FirestoreOutbox.TYPE_SIGNALEMENT, signalement.getId());
+    }
 
-            signalement.setIsSynchronized(true);
-            signalement.setLastSyncedAt(LocalDateTime.now());
-            signalementRepository.save(signalement);
-
-            log.info("✅ Signalement {} synchronisé vers Firebase", signalement.getId());
-        } catch (ExecutionException e) {
-            log.error("❌ Erreur ExecutionException lors de la synchronisation vers Firebase: {}", e.getMessage(), e);
-            throw new BusinessException("FIREBASE_SYNC_ERROR", "Erreur lors de la synchronisation: " + e.getMessage());
-        } catch (InterruptedException e) {
-            log.error("❌ Erreur InterruptedException lors de la synchronisation vers Firebase: {}", e.getMessage(), e);
-            Thread.currentThread().interrupt();
-            throw new BusinessException("FIREBASE_SYNC_ERROR", "Synchronisation interrompue");
+    @Override
+    public String getTypeEntite() {
+        return FirestoreOutbox.TYPE_SIGNALEMENT;
+    }
+
+    /**
+     * Écrire l'état courant d'un signalement dans Firebase (dispatcher de l'outbox, hors transaction)
+     */
+    @Override
+    public Runnable pousser(String signalementId, long timeoutSecondes) throws Exception {
+        Optional<Signalement> signalementOpt = signalementRepository.findById(signalementId);
+        if (signalementOpt.isEmpty()) {
+            // Supprimé depuis: la suppression a sa propre entrée dans l'outbox
+            return null;
+        }
+        Signalement signalement = signalementOpt.get();
+
+        String firebaseId = documentFirebaseId(signalement);
+        FirestoreEmpreinte comparaison = FirestoreEmpreinte.comparer(firebaseId, donneesFirebase(signalement),
+                signalement.getFirestoreSnapshot(), METADONNEES_FIREBASE);
+        if (comparaison.isInchange()) {
+            log.info("⏭️ Signalement {} inchangé côté Firebase, aucune écriture", signalement.getId());
+        } else {
+            comparaison.ecrire(documentStore, COLLECTION_NAME).get(timeoutSecondes, TimeUnit.SECONDS);
+            log.info("✅ Signalement {} synchronisé vers Firebase ({})", signalement.getId(),
+                    comparaison.isComplet() ? "document complet" : comparaison.getChamps().keySet());
         }
+
+        // Sans effet si le signalement a été modifié entre-temps: une nouvelle entrée le renverra
+        LocalDateTime version = signalement.getUpdatedAt();
+        String empreinte = comparaison.getEmpreinte();
+        return () -> signalementRepository.marquerSynchronise(signalementId, firebaseId, LocalDateTime.now(), version,
+                empreinte);
     }
 
     /**
-     * Synchroniser tous les signalements non synchronisés
+     * Document Firebase d'un signalement
+     */
+    private Map<String, Object> donneesFirebase(Signalement signalement) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("id", signalement.getId());
+        data.put("titre", signalement.getTitre());
+        data.put("description", signalement.getDescription());
+        data.put("statutId", signalement.getStatut().getId());
+        data.put("latitude", signalement.getLatitude());
+        data.put("longitude", signalement.getLongitude());
+        data.put("surfaceM2", signalement.getSurfaceM2());
+        data.put("budget", signalement.getBudget());
+        data.put("entrepriseConcernee", signalement.getEntrepriseConcernee());
+        data.put("createdAt", signalement.getCreatedAt());
+        data.put("updatedAt", signalement.getUpdatedAt());
+        // ⭐ IMPORTANT: Ajouter le user_id pour la synchronisation inverse
+        if (signalement.getSignaleur() != null) {
+            data.put("userId", signalement.getSignaleur().getId());
+        }
+        data.put("synchronized", true);
+        return data;
+    }
+
+    /**
+     * Id du document Firebase: celui déjà connu, sinon l'id du signalement (création)
+     */
+    private String documentFirebaseId(Signalement signalement) {
+        return signalement.getFirebaseId() != null && !signalement.getFirebaseId().isEmpty()
+                ? signalement.getFirebaseId()
+                : signalement.getId();
+    }
+
+    /**
+     * Synchroniser tous les signalements non synchronisés, par lots Firestore (WriteBatch)
+     * avec une mise à jour groupée en base par lot. Hors transaction: rien n'est tenu
+     * ouvert pendant les allers-retours Firestore.
      */
-    @Transactional
     public void synchronizeAllPending() {
+        // Les signalements modifiés après cette lecture ne seront pas marqués synchronisés
+        LocalDateTime luA = LocalDateTime.now();
         List<Signalement> pendingSignalements = signalementRepository.findByIsSynchronizedFalse();
+        log.info("🔄 Synchronisation de {} signalements vers Firebase", pendingSignalements.size());
 
-        for (Signalement signalement : pendingSignalements) {
-            try {
-                synchronizeToFirebase(signalement);
-            } catch (Exception e) {
-                log.error("Erreur lors de la synchronisation du signalement {}", signalement.getId(), e);
+        List<FirestoreBatchWriter.Ecriture> ecritures = pendingSignalements.stream()
+                .map(s -> FirestoreBatchWriter.Ecriture.depuis(s.getId(), COLLECTION_NAME, documentFirebaseId(s),
+                        FirestoreEmpreinte.comparer(documentFirebaseId(s), donneesFirebase(s),
+                                s.getFirestoreSnapshot(), METADONNEES_FIREBASE)))
+                .collect(Collectors.toList());
+
+        LocalDateTime syncedAt = LocalDateTime.now();
+        batchWriter.ecrire(ecritures, lot -> {
+            // Inchangés: l'empreinte reste la même, une requête groupée suffit
+            List<String> inchanges = lot.stream()
+                    .filter(FirestoreBatchWriter.Ecriture::inchangee)
+                    .map(FirestoreBatchWriter.Ecriture::entiteId)
+                    .collect(Collectors.toList());
+            if (!inchanges.isEmpty()) {
+                signalementRepository.marquerSynchronises(inchanges, syncedAt, luA);
             }
-        }
+            lot.stream()
+                    .filter(e -> !e.inchangee())
+                    .forEach(e -> signalementRepository.marquerSynchroniseAvecEmpreinte(e.entiteId(), e.empreinte(),
+                            syncedAt, luA));
+        });
     }
 
     /**
-     * Récupérer les signalements depuis Firebase
+     * Récupérer depuis Firebase les signalements modifiés depuis le dernier passage
+     * (pull incrémental, voir FirestoreIncrementalPull)
      */
     public List<SignalementResponse> syncFromFirebase() {
         try {
-            var documents = firestore.collection(COLLECTION_NAME).get().get();
-
-            return documents.getDocuments().stream()
-                    .map(doc -> {
-                        Optional<Signalement> existing = signalementRepository.findByFirebaseId(doc.getId());
-
-                        Signalement signalement = existing.orElse(Signalement.builder().build());
-                        signalement.setFirebaseId(doc.getId());
-                        signalement.setTitre(doc.getString("titre"));
-                        signalement.setDescription(doc.getString("description"));
-                        signalement.setLatitude(convertToDouble(doc.get("latitude")));
-                        signalement.setLongitude(convertToDouble(doc.get("longitude")));
-
-                        Object surfaceObj = doc.get("surfaceM2");
-                        Double surfaceM2 = convertToDouble(surfaceObj);
-                        signalement.setSurfaceM2(surfaceM2 != null ? new java.math.BigDecimal(surfaceM2) : null);
-
-                        Object budgetObj = doc.get("budget");
-                        Double budget = convertToDouble(budgetObj);
-                        signalement.setBudget(budget != null ? new java.math.BigDecimal(budget) : null);
-
-                        signalement.setEntrepriseConcernee(doc.getString("entrepriseConcernee"));
-
-                        // Récupérer les timestamps
-                        signalement.setCreatedAt(convertToLocalDateTime(doc.get("createdAt")));
-                        signalement.setUpdatedAt(convertToLocalDateTime(doc.get("updatedAt")));
-
-                        // Récupérer et convertir le statut
-                        String statutId = doc.getString("statutId");
-                        StatutAvancementSignalement statut = null;
-                        if (statutId != null && !statutId.isEmpty()) {
-                            statut = statutRepository.findById(statutId).orElse(null);
-                        }
-                        if (statut == null) {
-                            statut = statutRepository.findByStatut("NOUVEAU").orElse(null);
-                            if (statut == null) {
-                                log.warn("Statut 'NOUVEAU' introuvable, sync impossible");
-                                return null;
-                            }
-                        }
-                        signalement.setStatut(statut);
-
-                        // ⭐ IMPORTANT: Récupérer le user_id depuis Firebase et charger l'utilisateur
-                        String userId = doc.getString("userId");
-                        if (userId != null && !userId.isEmpty()) {
-                            Optional<User> user = userRepository.findById(userId);
-                            if (user.isPresent()) {
-                                signalement.setSignaleur(user.get());
-                            } else {
-                                log.warn("⚠️ Utilisateur {} introuvable pour le signalement {}", userId, doc.getId());
-                                // Skip ce signalement si l'utilisateur n'existe pas
-                                return null;
-                            }
-                        } else {
-                            log.warn("⚠️ Pas de userId dans le signalement Firebase {}, sync impossible", doc.getId());
-                            // Skip ce signalement s'il n'a pas de userId
-                            return null;
-                        }
-
-                        signalement.setIsSynchronized(true);
-
-                        signalementRepository.save(signalement);
-                        return mapToResponse(signalement);
-                    })
-                    .filter(response -> response != null) // Filtrer les signalements non synchronisés
-                    .collect(Collectors.toList());
-        } catch (ExecutionException | InterruptedException e) {
+            List<Signalement> synchronises = new ArrayList<>();
+            incrementalPull.tirer(COLLECTION_NAME, documents -> {
+                ImportFirebase resultat = importerDocumentsFirebase(documents);
+                synchronises.addAll(resultat.enregistres());
+                return resultat.aReessayer();
+            });
+
+            return mapToResponses(synchronises);
+        } catch (ExecutionException | InterruptedException | TimeoutException e) {
             log.error("Erreur lors de la récupération des données depuis Firebase", e);
             throw new BusinessException("FIREBASE_SYNC_ERROR", "Erreur lors de la synchronisation");
         }
     }
 
+    /**
+     * Résultat de l'import d'une page de documents Firebase
+     * @param enregistres signalements créés ou mis à jour
+     * @param aReessayer ids des documents dont l'utilisateur n'est pas encore dans PostgreSQL
+     */
+    public record ImportFirebase(List<Signalement> enregistres, List<String> aReessayer) {
+    }
+
+    /**
+     * Créer ou mettre à jour une page de signalements depuis leurs documents Firebase.
+     * Signalements existants, statuts et utilisateurs référencés sont chargés en quelques
+     * requêtes IN pour toute la page; les écritures partent groupées au flush
+     * (hibernate.jdbc.batch_size) et l'agrégat des stats reçoit une requête par statut.
+     * À appeler dans une transaction (pull incrémental, listener temps réel).
+     * @return les signalements enregistrés et les documents à relire plus tard (les autres
+     *         documents non synchronisables sont ignorés)
+     */
+    public ImportFirebase importerDocumentsFirebase(List<? extends Document> documents) {
+        Map<String, Signalement> existants = signalementRepository.findByFirebaseIdIn(
+                        documents.stream().map(Document::id).collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(Signalement::getFirebaseId, Function.identity(), (a, b) -> a));
+        Map<String, StatutAvancementSignalement> statuts = statutRepository.findAllById(
+                        referencesNonVides(documents, "statutId"))
+                .stream()
+                .collect(Collectors.toMap(StatutAvancementSignalement::getId, Function.identity()));
+        Map<String, User> users = userRepository.findAllById(referencesNonVides(documents, "userId"))
+                .stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        StatutAvancementSignalement statutNouveau = statutRepository.findByStatut("NOUVEAU").orElse(null);
+
+        List<SignalementStatsService.Contribution> avants = new ArrayList<>();
+        List<Signalement> aEnregistrer = new ArrayList<>();
+        List<String> aReessayer = new ArrayList<>();
+        for (Document doc : documents) {
+            Signalement existant = existants.get(doc.id());
+            SignalementStatsService.Contribution avant = statsService.contribution(existant);
+            Signalement signalement = importerDepuisFirebase(doc, existant, statuts, users, statutNouveau, aReessayer);
+            if (signalement != null) {
+                avants.add(avant);
+                aEnregistrer.add(signalement);
+            }
+        }
+
+        List<Signalement> saved = signalementRepository.saveAll(aEnregistrer);
+        statsService.enregistrerModifications(avants, saved);
+        return new ImportFirebase(saved, aReessayer);
+    }
+
+    private static List<String> referencesNonVides(List<? extends Document> documents, String champ) {
+        return documents.stream()
+                .map(doc -> doc.getString(champ))
+                .filter(id -> id != null && !id.isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Appliquer un document Firebase sur un signalement (références déjà chargées)
+     * @param aReessayer reçoit l'id du document si son utilisateur n'est pas encore synchronisé
+     * @return le signalement à enregistrer, null s'il ne peut pas être synchronisé
+     */
+    private Signalement importerDepuisFirebase(Document doc, Signalement existant,
+            Map<String, StatutAvancementSignalement> statuts, Map<String, User> users,
+            StatutAvancementSignalement statutNouveau, List<String> aReessayer) {
+        // Références vérifiées avant toute modification: un signalement existant ignoré reste intact
+
+        // Récupérer et convertir le statut
+        String statutId = doc.getString("statutId");
+        StatutAvancementSignalement statut = statutId != null ? statuts.get(statutId) : null;
+        if (statut == null) {
+            statut = statutNouveau;
+            if (statut == null) {
+                log.warn("Statut 'NOUVEAU' introuvable, sync impossible");
+                return null;
+            }
+        }
+
+        // ⭐ IMPORTANT: Récupérer le user_id depuis Firebase et charger l'utilisateur
+        String userId = doc.getString("userId");
+        User user = null;
+        if (userId != null && !userId.isEmpty()) {
+            user = users.get(userId);
+            if (user == null) {
+                log.warn("⚠️ Utilisateur {} introuvable pour le signalement {}, nouvel essai plus tard", userId, doc.id());
+                // Utilisateur mobile pas encore tiré de Firestore: relu au prochain passage
+                aReessayer.add(doc.id());
+                return null;
+            }
+        } else {
+            log.warn("⚠️ Pas de userId dans le signalement Firebase {}, sync impossible", doc.id());
+            // Skip ce signalement s'il n'a pas de userId
+            return null;
+        }
+
+        Signalement signalement = existant != null ? existant : Signalement.builder().build();
+        signalement.setFirebaseId(doc.id());
+        // Document modifié hors du backend: le prochain push le réécrira en entier
+        signalement.setFirestoreSnapshot(null);
+        signalement.setTitre(doc.getString("titre"));
+        signalement.setDescription(doc.getString("description"));
+        signalement.setLatitude(convertToDouble(doc.get("latitude")));
+        signalement.setLongitude(convertToDouble(doc.get("longitude")));
+
+        Object surfaceObj = doc.get("surfaceM2");
+        Double surfaceM2 = convertToDouble(surfaceObj);
+        signalement.setSurfaceM2(surfaceM2 != null ? new java.math.BigDecimal(surfaceM2) : null);
+
+        Object budgetObj = doc.get("budget");
+        Double budget = convertToDouble(budgetObj);
+        signalement.setBudget(budget != null ? new java.math.BigDecimal(budget) : null);
+
+        signalement.setEntrepriseConcernee(doc.getString("entrepriseConcernee"));
+
+        // Récupérer les timestamps
+        signalement.setCreatedAt(convertToLocalDateTime(doc.get("createdAt")));
+        signalement.setUpdatedAt(convertToLocalDateTime(doc.get("updatedAt")));
+
+        signalement.setStatut(statut);
+        signalement.setSignaleur(user);
+        signalement.setIsSynchronized(true);
+        return signalement;
+    }
+
     /**
      * Convertir un objet Firebase en Double de manière sûre
      */
@@ -462,114 +689,32 @@ public class SignalementService {
 
     /**
      * Obtenir le récapitulatif des statistiques des signalements
+     * Lu depuis l'agrégat signalement_stats (une ligne par statut)
      */
     public com.idp.dto.SignalementRecapResponse getRecap() {
-        List<Signalement> allSignalements = signalementRepository.findAll();
-
-        long total = allSignalements.size();
-        long nouveaux = allSignalements.stream().filter(s -> s.getStatut().getStatut().equals("NOUVEAU")).count();
-        long enCours = allSignalements.stream().filter(s -> s.getStatut().getStatut().equals("EN_COURS")).count();
-        long termines = allSignalements.stream().filter(s -> s.getStatut().getStatut().equals("TERMINE")).count();
-        long annules = allSignalements.stream().filter(s -> s.getStatut().getStatut().equals("ANNULE")).count();
+        return statsService.getRecap(getPrixM2Global());
+    }
 
-        java.math.BigDecimal totalSurfaceM2 = allSignalements.stream()
-                .map(Signalement::getSurfaceM2)
-                .filter(java.util.Objects::nonNull)
-                .reduce(java.math.BigDecimal.ZERO, java.math.BigDecimal::add);
-
-        // Calcul dynamique du budget total: prix_m2_global × niveau × surface_m2
-        BigDecimal prixM2Global = globalConfigRepository.findByConfigKey(com.idp.entity.GlobalConfig.PRIX_M2_GLOBAL_KEY)
-                .map(com.idp.entity.GlobalConfig::getValueAsBigDecimal)
-                .orElse(BigDecimal.ZERO);
-
-        java.math.BigDecimal totalBudget = allSignalements.stream()
-                .filter(s -> s.getSurfaceM2() != null && s.getNiveau() != null)
-                .map(s -> prixM2Global.multiply(new BigDecimal(s.getNiveau())).multiply(s.getSurfaceM2()))
-                .reduce(java.math.BigDecimal.ZERO, java.math.BigDecimal::add);
-
-        Double averageAvancement = allSignalements.stream()
-                .mapToInt(s -> s.getStatut().getAvancement())
-                .average()
-                .orElse(0.0);
-
-        return com.idp.dto.SignalementRecapResponse.builder()
-                .totalSignalements(total)
-                .signalementNouveaux(nouveaux)
-                .signalementEnCours(enCours)
-                .signalementTermines(termines)
-                .signalementAnnules(annules)
-                .totalSurfaceM2(totalSurfaceM2)
-                .totalBudget(totalBudget)
-                .averageAvancement(averageAvancement)
-                .build();
+    /**
+     * Reconstruire l'agrégat des statistiques depuis la table signalements
+     */
+    public int reconstruireStats() {
+        return statsService.reconstruire();
     }
 
     /**
      * Obtenir les délais moyens de traitement
+     * Calculés en base en une seule requête agrégée sur l'historique des statuts
      */
     public com.idp.dto.DelaiMoyenTraitementResponse getDelaiMoyenTraitement() {
-        List<Signalement> allSignalements = signalementRepository.findAll();
-
-        // Calculer les délais moyens de traitement
-        java.util.List<Double> delaisNouveauEnCours = new java.util.ArrayList<>();
-        java.util.List<Double> delaisEnCoursTermine = new java.util.ArrayList<>();
-        java.util.List<Double> delaisTotal = new java.util.ArrayList<>();
-
-        for (Signalement signalement : allSignalements) {
-            List<HistoriqueStatutSignalement> historique = historiqueRepository
-                    .findBySignalementIdOrderByDateAsc(signalement.getId());
-
-            LocalDateTime dateNouveau = null;
-            LocalDateTime dateEnCours = null;
-            LocalDateTime dateTermine = null;
-
-            for (HistoriqueStatutSignalement h : historique) {
-                String statut = h.getStatutAvancementSignalement().getStatut();
-                if ("NOUVEAU".equals(statut) && dateNouveau == null) {
-                    dateNouveau = h.getDate();
-                } else if ("EN_COURS".equals(statut) && dateEnCours == null) {
-                    dateEnCours = h.getDate();
-                } else if ("TERMINE".equals(statut) && dateTermine == null) {
-                    dateTermine = h.getDate();
-                }
-            }
-
-            // Si pas d'historique NOUVEAU, utiliser createdAt
-            if (dateNouveau == null) {
-                dateNouveau = signalement.getCreatedAt();
-            }
-
-            // Calculer délai NOUVEAU -> EN_COURS
-            if (dateNouveau != null && dateEnCours != null) {
-                double delaiJours = java.time.Duration.between(dateNouveau, dateEnCours).toHours() / 24.0;
-                delaisNouveauEnCours.add(delaiJours);
-            }
-
-            // Calculer délai EN_COURS -> TERMINE
-            if (dateEnCours != null && dateTermine != null) {
-                double delaiJours = java.time.Duration.between(dateEnCours, dateTermine).toHours() / 24.0;
-                delaisEnCoursTermine.add(delaiJours);
-            }
-
-            // Calculer délai total NOUVEAU -> TERMINE
-            if (dateNouveau != null && dateTermine != null) {
-                double delaiJours = java.time.Duration.between(dateNouveau, dateTermine).toHours() / 24.0;
-                delaisTotal.add(delaiJours);
-            }
-        }
-
-        Double delaiMoyenNouveauEnCours = delaisNouveauEnCours.isEmpty() ? null
-                : delaisNouveauEnCours.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
-        Double delaiMoyenEnCoursTermine = delaisEnCoursTermine.isEmpty() ? null
-                : delaisEnCoursTermine.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
-        Double delaiMoyenTraitementTotal = delaisTotal.isEmpty() ? null
-                : delaisTotal.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
+        HistoriqueStatutSignalementRepository.DelaisMoyens delais = historiqueRepository.calculerDelaisMoyens();
 
         return com.idp.dto.DelaiMoyenTraitementResponse.builder()
-                .delaiMoyenNouveauEnCours(delaiMoyenNouveauEnCours)
-                .delaiMoyenEnCoursTermine(delaiMoyenEnCoursTermine)
-                .delaiMoyenTraitementTotal(delaiMoyenTraitementTotal)
-                .nombreSignalementsTraites((long) delaisTotal.size())
+                .delaiMoyenNouveauEnCours(delais.getDelaiMoyenNouveauEnCours())
+                .delaiMoyenEnCoursTermine(delais.getDelaiMoyenEnCoursTermine())
+                .delaiMoyenTraitementTotal(delais.getDelaiMoyenTraitementTotal())
+                .nombreSignalementsTraites(delais.getNombreSignalementsTraites() != null
+                        ? delais.getNombreSignalementsTraites() : 0L)
                 .build();
     }
 
@@ -623,24 +768,50 @@ public class SignalementService {
      * Mapper une entité Signalement vers SignalementResponse
      */
     private SignalementResponse mapToResponse(Signalement signalement) {
-        // Récupérer les dates d'avancement depuis l'historique
-        List<HistoriqueStatutSignalement> historique = historiqueRepository
-                .findBySignalementIdOrderByDateAsc(signalement.getId());
-
-        LocalDateTime dateNouveau = null;
-        LocalDateTime dateEnCours = null;
-        LocalDateTime dateTermine = null;
-
-        for (HistoriqueStatutSignalement h : historique) {
-            String statut = h.getStatutAvancementSignalement().getStatut();
-            if ("NOUVEAU".equals(statut) && dateNouveau == null) {
-                dateNouveau = h.getDate();
-            } else if ("EN_COURS".equals(statut) && dateEnCours == null) {
-                dateEnCours = h.getDate();
-            } else if ("TERMINE".equals(statut) && dateTermine == null) {
-                dateTermine = h.getDate();
-            }
+        Map<String, JalonsStatut> jalons = chargerJalonsStatut(List.of(signalement));
+        return mapToResponse(signalement, jalons.get(signalement.getId()), getPrixM2Global());
+    }
+
+    /**
+     * Mapper une liste de signalements: l'historique est chargé en une requête agrégée
+     * par lot et le prix global n'est lu qu'une seule fois
+     */
+    private List<SignalementResponse> mapToResponses(List<Signalement> signalements) {
+        if (signalements.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        BigDecimal prixM2Global = getPrixM2Global();
+        Map<String, JalonsStatut> jalons = chargerJalonsStatut(signalements);
+
+        return signalements.stream()
+                .map(s -> mapToResponse(s, jalons.get(s.getId()), prixM2Global))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Charger les dates d'avancement (premier NOUVEAU / EN_COURS / TERMINE) indexées par signalement
+     */
+    private Map<String, JalonsStatut> chargerJalonsStatut(List<Signalement> signalements) {
+        List<String> ids = signalements.stream()
+                .map(Signalement::getId)
+                .filter(java.util.Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+
+        Map<String, JalonsStatut> jalons = new HashMap<>();
+        for (int i = 0; i < ids.size(); i += JALONS_BATCH_SIZE) {
+            List<String> lot = ids.subList(i, Math.min(i + JALONS_BATCH_SIZE, ids.size()));
+            historiqueRepository.findJalonsStatutBySignalementIds(lot)
+                    .forEach(j -> jalons.put(j.getSignalementId(), j));
         }
+        return jalons;
+    }
+
+    private SignalementResponse mapToResponse(Signalement signalement, JalonsStatut jalons, BigDecimal prixM2Global) {
+        LocalDateTime dateNouveau = jalons != null ? jalons.getDateNouveau() : null;
+        LocalDateTime dateEnCours = jalons != null ? jalons.getDateEnCours() : null;
+        LocalDateTime dateTermine = jalons != null ? jalons.getDateTermine() : null;
 
         // Si pas d'historique NOUVEAU, utiliser createdAt
         if (dateNouveau == null) {
@@ -648,10 +819,6 @@ public class SignalementService {
         }
 
         // Calcul dynamique du budget: prix_m2_global × niveau × surface_m2
-        BigDecimal prixM2Global = globalConfigRepository.findByConfigKey(com.idp.entity.GlobalConfig.PRIX_M2_GLOBAL_KEY)
-                .map(com.idp.entity.GlobalConfig::getValueAsBigDecimal)
-                .orElse(BigDecimal.ZERO);
-
         BigDecimal budgetCalcule = BigDecimal.ZERO;
         if (signalement.getSurfaceM2() != null && signalement.getNiveau() != null) {
             budgetCalcule = prixM2Global
@@ -0,0 +1,228 @@
+package com.idp.service;
+
+import com.idp.event.SignalementModifieEvent;
+import com.idp.repository.SignalementRepository;
+import com.idp.repository.SignalementRepository.PositionSignalement;
+import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.index.quadtree.Quadtree;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index spatial en mémoire de tous les signalements (JTS Quadtree), pour les déploiements
+ * sans PostGIS (geo.backend=memory). Chargé au démarrage, puis tenu à jour après chaque
+ * commit via SignalementModifieEvent. Le Quadtree accepte insertions et suppressions,
+ * contrairement au STRtree qui est figé une fois construit.
+ *
+ * Plusieurs nœuds: chaque écriture est diffusée par CacheInvalidationService, les autres
+ * nœuds relisent alors la position du signalement en base (clé vide: rechargement complet).
+ *
+ * Un (re)chargement lit la base sans bloquer l'index: les modifications reçues pendant la
+ * lecture sont appliquées à l'index courant et notées, puis rejouées sur le nouvel arbre
+ * juste avant qu'il ne le remplace.
+ */
+@Service
+@ConditionalOnProperty(name = "geo.backend", havingValue = "memory")
+@RequiredArgsConstructor
+@Slf4j
+public class SignalementSpatialIndex {
+
+    public static final String CACHE_NAME = "index-signalements";
+
+    private final SignalementRepository signalementRepository;
+    private final CacheInvalidationService cacheInvalidationService;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Quadtree quadtree = new Quadtree();
+    private Map<String, Entree> parId = new HashMap<>();
+    // Modifications reçues pendant un chargement (null: aucun chargement), entrée null = supprimé
+    private Map<String, Entree> pendantChargement;
+    private volatile boolean pret = false;
+
+    /**
+     * Entrée de l'index: de quoi filtrer, trier et regrouper sans relire la base
+     */
+    public record Entree(String id, double latitude, double longitude, LocalDateTime createdAt,
+                         String statut, BigDecimal niveauSurface) {
+
+        Envelope envelope() {
+            return new Envelope(longitude, longitude, latitude, latitude);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        cacheInvalidationService.enregistrerEcouteur(CACHE_NAME, this::rafraichir);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void charger() {
+        long debut = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            pendantChargement = new HashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        int rejouees;
+        try {
+            List<PositionSignalement> positions = signalementRepository.findAllPositions();
+
+            Quadtree nouvelArbre = new Quadtree();
+            Map<String, Entree> nouveauxParId = new HashMap<>(positions.size() * 2);
+            for (PositionSignalement position : positions) {
+                if (position.getLatitude() == null || position.getLongitude() == null) {
+                    continue;
+                }
+                Entree entree = new Entree(position.getId(), position.getLatitude(), position.getLongitude(),
+                        position.getCreatedAt(), position.getStatut(),
+                        niveauSurface(position.getNiveau(), position.getSurfaceM2()));
+                nouvelArbre.insert(entree.envelope(), entree);
+                nouveauxParId.put(entree.id(), entree);
+            }
+
+            lock.writeLock().lock();
+            try {
+                // La lecture a pu manquer des écritures commitées pendant qu'elle tournait
+                rejouees = pendantChargement.size();
+                pendantChargement.forEach((id, entree) -> appliquer(nouvelArbre, nouveauxParId, id, entree));
+                quadtree = nouvelArbre;
+                parId = nouveauxParId;
+                pret = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            lock.writeLock().lock();
+            try {
+                pendantChargement = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        log.info("🗺️ Index spatial en mémoire chargé: {} signalements ({} modifications rejouées) en {} ms",
+                taille(), rejouees, System.currentTimeMillis() - debut);
+    }
+
+    /**
+     * L'index a-t-il fini son chargement initial ?
+     */
+    public boolean isPret() {
+        return pret;
+    }
+
+    /**
+     * Signalements dans un rectangle (bornes incluses)
+     */
+    public List<Entree> rechercher(double minLat, double maxLat, double minLon, double maxLon) {
+        Envelope zone = new Envelope(minLon, maxLon, minLat, maxLat);
+        List<Entree> resultats = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            // Le Quadtree renvoie des candidats par nœud: filtre exact sur la position
+            for (Object candidat : quadtree.query(zone)) {
+                Entree entree = (Entree) candidat;
+                if (zone.contains(entree.longitude(), entree.latitude())) {
+                    resultats.add(entree);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return resultats;
+    }
+
+    public int taille() {
+        lock.readLock().lock();
+        try {
+            return parId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Appliquer une écriture commitée (création, déplacement, changement de statut, suppression)
+     * puis la signaler aux autres nœuds
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onSignalementModifie(SignalementModifieEvent event) {
+        SignalementModifieEvent.EtatCarte apres = event.apres();
+        Entree entree = apres != null && apres.aUnePosition()
+                ? new Entree(event.signalementId(), apres.latitude(), apres.longitude(), event.createdAt(),
+                        apres.statut(), niveauSurface(apres.niveau(), apres.surfaceM2()))
+                : null;
+        remplacer(event.signalementId(), entree);
+
+        try {
+            cacheInvalidationService.invaliderMaintenant(CACHE_NAME, event.signalementId());
+        } catch (Exception e) {
+            log.warn("Mise à jour de l'index non diffusée pour {}: {}", event.signalementId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Relire un signalement en base (notification d'un autre nœud)
+     */
+    private void rafraichir(String signalementId) {
+        if (signalementId == null || signalementId.isEmpty()) {
+            if (pret) {
+                charger();
+            }
+            return;
+        }
+        Entree entree = signalementRepository.findPositionById(signalementId)
+                .filter(p -> p.getLatitude() != null && p.getLongitude() != null)
+                .map(p -> new Entree(p.getId(), p.getLatitude(), p.getLongitude(), p.getCreatedAt(),
+                        p.getStatut(), niveauSurface(p.getNiveau(), p.getSurfaceM2())))
+                .orElse(null);
+        remplacer(signalementId, entree);
+    }
+
+    private void remplacer(String signalementId, Entree entree) {
+        lock.writeLock().lock();
+        try {
+            appliquer(quadtree, parId, signalementId, entree);
+            if (pendantChargement != null) {
+                pendantChargement.put(signalementId, entree);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void appliquer(Quadtree arbre, Map<String, Entree> index, String signalementId, Entree entree) {
+        Entree ancienne = index.remove(signalementId);
+        if (ancienne != null) {
+            arbre.remove(ancienne.envelope(), ancienne);
+        }
+        if (entree != null) {
+            arbre.insert(entree.envelope(), entree);
+            index.put(entree.id(), entree);
+        }
+    }
+
+    private static BigDecimal niveauSurface(Integer niveau, BigDecimal surfaceM2) {
+        if (niveau == null || surfaceM2 == null) {
+            return BigDecimal.ZERO;
+        }
+        return surfaceM2.multiply(BigDecimal.valueOf(niveau));
+    }
+}
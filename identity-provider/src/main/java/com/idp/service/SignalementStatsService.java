@@ -0,0 +1,223 @@
+package com.idp.service;
+
+import com.idp.dto.SignalementRecapResponse;
+import com.idp.entity.Signalement;
+import com.idp.entity.SignalementStats;
+import com.idp.entity.StatutAvancementSignalement;
+import com.idp.repository.SignalementStatsRepository;
+import com.idp.repository.StatutAvancementSignalementRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Maintenance incrémentale de l'agrégat signalement_stats.
+ * Chaque écriture sur un signalement capture sa contribution avant modification,
+ * puis applique la différence avec sa contribution après modification.
+ * Le récapitulatif se lit ensuite en O(nombre de statuts).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SignalementStatsService {
+
+    private final SignalementStatsRepository statsRepository;
+    private final StatutAvancementSignalementRepository statutRepository;
+
+    // Même échelle que les colonnes numeric(…, 2)
+    private static final int SCALE = 2;
+
+    /**
+     * Contribution d'un signalement à l'agrégat de son statut
+     */
+    public record Contribution(String statutId, BigDecimal surfaceM2, BigDecimal niveauSurface) {
+    }
+
+    /**
+     * Capturer la contribution actuelle d'un signalement (à appeler avant de le modifier)
+     */
+    public Contribution contribution(Signalement signalement) {
+        if (signalement == null || signalement.getStatut() == null) {
+            return null;
+        }
+        BigDecimal surface = signalement.getSurfaceM2() != null
+                ? signalement.getSurfaceM2().setScale(SCALE, RoundingMode.HALF_UP)
+                : BigDecimal.ZERO;
+        BigDecimal niveauSurface = signalement.getSurfaceM2() != null && signalement.getNiveau() != null
+                ? surface.multiply(new BigDecimal(signalement.getNiveau()))
+                : BigDecimal.ZERO;
+        return new Contribution(signalement.getStatut().getId(), surface, niveauSurface);
+    }
+
+    /**
+     * Nouveau signalement
+     */
+    @Transactional
+    public void enregistrerAjout(Signalement signalement) {
+        appliquer(null, contribution(signalement));
+    }
+
+    /**
+     * Signalement supprimé
+     */
+    @Transactional
+    public void enregistrerSuppression(Contribution avant) {
+        appliquer(avant, null);
+    }
+
+    /**
+     * Signalement modifié (statut, surface ou niveau)
+     */
+    @Transactional
+    public void enregistrerModification(Contribution avant, Signalement apres) {
+        appliquer(avant, contribution(apres));
+    }
+
+    /**
+     * Lot de modifications (import Firebase): deltas cumulés par statut, une requête par statut
+     * touché au lieu d'une ou deux par signalement
+     * @param avants contributions avant modification, dans le même ordre que apres (null: ajout)
+     */
+    @Transactional
+    public void enregistrerModifications(List<Contribution> avants, List<Signalement> apres) {
+        Map<String, Delta> deltas = new LinkedHashMap<>();
+        for (int i = 0; i < apres.size(); i++) {
+            Contribution avant = avants.get(i);
+            Contribution nouvelle = contribution(apres.get(i));
+            if (avant != null) {
+                deltas.computeIfAbsent(avant.statutId(), id -> new Delta()).retirer(avant);
+            }
+            if (nouvelle != null) {
+                deltas.computeIfAbsent(nouvelle.statutId(), id -> new Delta()).ajouter(nouvelle);
+            }
+        }
+        deltas.forEach((statutId, delta) -> {
+            if (!delta.estNul()) {
+                statsRepository.appliquerDelta(statutId, delta.nb, delta.surfaceM2, delta.niveauSurface);
+            }
+        });
+    }
+
+    private static class Delta {
+        private long nb = 0;
+        private BigDecimal surfaceM2 = BigDecimal.ZERO;
+        private BigDecimal niveauSurface = BigDecimal.ZERO;
+
+        void ajouter(Contribution contribution) {
+            nb++;
+            surfaceM2 = surfaceM2.add(contribution.surfaceM2());
+            niveauSurface = niveauSurface.add(contribution.niveauSurface());
+        }
+
+        void retirer(Contribution contribution) {
+            nb--;
+            surfaceM2 = surfaceM2.subtract(contribution.surfaceM2());
+            niveauSurface = niveauSurface.subtract(contribution.niveauSurface());
+        }
+
+        boolean estNul() {
+            return nb == 0 && surfaceM2.signum() == 0 && niveauSurface.signum() == 0;
+        }
+    }
+
+    private void appliquer(Contribution avant, Contribution apres) {
+        if (avant != null && apres != null && avant.statutId().equals(apres.statutId())) {
+            BigDecimal deltaSurface = apres.surfaceM2().subtract(avant.surfaceM2());
+            BigDecimal deltaNiveauSurface = apres.niveauSurface().subtract(avant.niveauSurface());
+            if (deltaSurface.signum() != 0 || deltaNiveauSurface.signum() != 0) {
+                statsRepository.appliquerDelta(avant.statutId(), 0, deltaSurface, deltaNiveauSurface);
+            }
+            return;
+        }
+        if (avant != null) {
+            statsRepository.appliquerDelta(avant.statutId(), -1,
+                    avant.surfaceM2().negate(), avant.niveauSurface().negate());
+        }
+        if (apres != null) {
+            statsRepository.appliquerDelta(apres.statutId(), 1, apres.surfaceM2(), apres.niveauSurface());
+        }
+    }
+
+    /**
+     * Reconstruire l'agrégat depuis la table signalements.
+     * Les écritures concurrentes sur signalements attendent la fin de la transaction.
+     */
+    @Transactional
+    public int reconstruire() {
+        statsRepository.verrouillerPourReconstruction();
+        statsRepository.viderStats();
+        int nbStatuts = statsRepository.reconstruireDepuisSignalements();
+        log.info("📊 Statistiques des signalements reconstruites ({} statuts)", nbStatuts);
+        return nbStatuts;
+    }
+
+    /**
+     * Reconstruire l'agrégat s'il n'a jamais été initialisé
+     */
+    @Transactional
+    public void initialiserSiVide() {
+        if (statsRepository.count() == 0) {
+            reconstruire();
+        }
+    }
+
+    /**
+     * Récapitulatif calculé depuis l'agrégat
+     */
+    @Transactional(readOnly = true)
+    public SignalementRecapResponse getRecap(BigDecimal prixM2Global) {
+        List<SignalementStats> stats = statsRepository.findAll();
+        Map<String, StatutAvancementSignalement> statuts = statutRepository.findAll().stream()
+                .collect(Collectors.toMap(StatutAvancementSignalement::getId, Function.identity()));
+
+        long total = 0;
+        long nouveaux = 0;
+        long enCours = 0;
+        long termines = 0;
+        long annules = 0;
+        long sommeAvancement = 0;
+        BigDecimal totalSurfaceM2 = BigDecimal.ZERO;
+        BigDecimal totalNiveauSurface = BigDecimal.ZERO;
+
+        for (SignalementStats ligne : stats) {
+            long nb = ligne.getNbSignalements();
+            total += nb;
+            totalSurfaceM2 = totalSurfaceM2.add(ligne.getTotalSurfaceM2());
+            totalNiveauSurface = totalNiveauSurface.add(ligne.getTotalNiveauSurface());
+
+            StatutAvancementSignalement statut = statuts.get(ligne.getStatutId());
+            if (statut == null) {
+                continue;
+            }
+            sommeAvancement += nb * statut.getAvancement();
+            switch (Objects.requireNonNullElse(statut.getStatut(), "")) {
+                case "NOUVEAU" -> nouveaux += nb;
+                case "EN_COURS" -> enCours += nb;
+                case "TERMINE" -> termines += nb;
+                case "ANNULE" -> annules += nb;
+                default -> { }
+            }
+        }
+
+        return SignalementRecapResponse.builder()
+                .totalSignalements(total)
+                .signalementNouveaux(nouveaux)
+                .signalementEnCours(enCours)
+                .signalementTermines(termines)
+                .signalementAnnules(annules)
+                .totalSurfaceM2(totalSurfaceM2)
+                .totalBudget(prixM2Global.multiply(totalNiveauSurface))
+                .averageAvancement(total > 0 ? (double) sommeAvancement / total : 0.0)
+                .build();
+    }
+}
@@ -0,0 +1,235 @@
+package com.idp.service;
+
+import com.idp.event.SignalementModifieEvent;
+import com.idp.exception.BusinessException;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * Tuiles vectorielles (Mapbox Vector Tile) des signalements, générées par PostGIS
+ * (ST_AsMVT) et mises en cache sur disque sous {z}/{x}/{y}.mvt.
+ *
+ * Invalidation: après chaque commit modifiant un signalement (création, déplacement,
+ * statut, niveau, suppression), les tuiles contenant l'ancienne et la nouvelle position
+ * sont supprimées à tous les zooms, sur tous les nœuds (via CacheInvalidationService).
+ * Une tuile générée pendant une invalidation qui la concerne n'est pas gardée en cache:
+ * chaque tuile a un numéro de génération (réparti sur GENERATIONS compteurs), incrémenté
+ * avant la suppression et vérifié après l'écriture du fichier.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SignalementTileService {
+
+    public static final String CACHE_NAME = "tiles-signalements";
+    public static final String LAYER_NAME = "signalements";
+
+    private static final int ZOOM_MAX = 22;
+    private static final int EXTENT = 4096;
+    // Marge autour de la tuile (unités de l'extent) pour ne pas couper les symboles en bordure
+    private static final int BUFFER = 256;
+    private static final double BUFFER_RATIO = (double) BUFFER / EXTENT;
+    private static final int GENERATIONS = 4096;
+
+    private static final String TILE_SQL =
+            "WITH bounds AS (SELECT ST_TileEnvelope(?, ?, ?) AS env, " +
+            "                       ST_TileEnvelope(?, ?, ?, margin => ?) AS env_marge), " +
+            "mvtgeom AS (" +
+            "  SELECT ST_AsMVTGeom(ST_Transform(s.geom, 3857), bounds.env, ?, ?, true) AS geom, " +
+            "         s.id, st.statut, s.niveau, st.avancement " +
+            "  FROM signalements s " +
+            "  JOIN statut_avancement_signalement st ON st.id = s.statut_id, bounds " +
+            "  WHERE s.geom && ST_Transform(bounds.env_marge, 4326)" +
+            ") " +
+            "SELECT ST_AsMVT(mvtgeom.*, ?, ?, 'geom') FROM mvtgeom";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CacheInvalidationService cacheInvalidationService;
+
+    // Générations des tuiles: plusieurs tuiles partagent un compteur (au pire, une mise en cache évitée)
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATIONS);
+
+    @Value("${tiles.cache.dir:${java.io.tmpdir}/idp-tiles}")
+    private String cacheDir;
+
+    @Value("${geo.backend:postgis}")
+    private String geoBackend;
+
+    @PostConstruct
+    public void init() {
+        cacheInvalidationService.enregistrerEcouteur(CACHE_NAME, this::supprimerTuiles);
+    }
+
+    /**
+     * Récupérer une tuile (cache disque, sinon génération PostGIS)
+     */
+    public byte[] getTile(int z, int x, int y) {
+        if (!"postgis".equalsIgnoreCase(geoBackend)) {
+            throw new BusinessException("TILES_UNAVAILABLE", "Tuiles vectorielles indisponibles sans PostGIS (geo.backend=" + geoBackend + ")");
+        }
+        validerCoordonnees(z, x, y);
+
+        Path fichier = cheminTuile(z, x, y);
+        try {
+            if (Files.exists(fichier)) {
+                return Files.readAllBytes(fichier);
+            }
+        } catch (IOException e) {
+            log.warn("Lecture de la tuile {}/{}/{} impossible, régénération: {}", z, x, y, e.getMessage());
+        }
+
+        int compteur = indiceGeneration(z, x, y);
+        long generation = generations.get(compteur);
+        byte[] tuile = jdbcTemplate.queryForObject(TILE_SQL, byte[].class,
+                z, x, y, z, x, y, BUFFER_RATIO, EXTENT, BUFFER, LAYER_NAME, EXTENT);
+        if (tuile == null) {
+            tuile = new byte[0];
+        }
+        if (generations.get(compteur) == generation) {
+            ecrireTuile(fichier, tuile);
+            // Invalidation survenue pendant l'écriture: elle a pu supprimer le fichier avant qu'il existe
+            if (generations.get(compteur) != generation) {
+                supprimerTuile(z, x, y);
+            }
+        }
+        return tuile;
+    }
+
+    /**
+     * Invalider les tuiles touchées par une écriture, une fois celle-ci commitée
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onSignalementModifie(SignalementModifieEvent event) {
+        Set<String> positions = new LinkedHashSet<>();
+        if (event.avant() != null && event.avant().aUnePosition()) {
+            positions.add(event.avant().longitude() + "," + event.avant().latitude());
+        }
+        if (event.apres() != null && event.apres().aUnePosition()) {
+            positions.add(event.apres().longitude() + "," + event.apres().latitude());
+        }
+        for (String position : positions) {
+            try {
+                cacheInvalidationService.invaliderMaintenant(CACHE_NAME, position);
+            } catch (Exception e) {
+                // Sans notification, au moins vider le cache local
+                log.warn("Invalidation des tuiles non diffusée pour {}: {}", position, e.getMessage());
+                supprimerTuiles(position);
+            }
+        }
+    }
+
+    /**
+     * Supprimer les tuiles contenant une position "lon,lat" (clé vide: tout le cache)
+     */
+    private void supprimerTuiles(String position) {
+        if (position == null || position.isEmpty()) {
+            for (int i = 0; i < GENERATIONS; i++) {
+                generations.incrementAndGet(i);
+            }
+            viderCache();
+            return;
+        }
+        String[] parts = position.split(",");
+        double lon = Double.parseDouble(parts[0]);
+        double lat = Double.parseDouble(parts[1]);
+
+        for (int z = 0; z <= ZOOM_MAX; z++) {
+            long n = 1L << z;
+            double fx = (lon + 180.0) / 360.0 * n;
+            double latRad = Math.toRadians(lat);
+            double fy = (1.0 - Math.log(Math.tan(latRad) + 1.0 / Math.cos(latRad)) / Math.PI) / 2.0 * n;
+            long x = Math.max(0, Math.min(n - 1, (long) Math.floor(fx)));
+            long y = Math.max(0, Math.min(n - 1, (long) Math.floor(fy)));
+
+            // Les tuiles voisines incluent aussi le point s'il est dans leur marge
+            long xMin = fx - x < BUFFER_RATIO ? Math.max(0, x - 1) : x;
+            long xMax = x + 1 - fx < BUFFER_RATIO ? Math.min(n - 1, x + 1) : x;
+            long yMin = fy - y < BUFFER_RATIO ? Math.max(0, y - 1) : y;
+            long yMax = y + 1 - fy < BUFFER_RATIO ? Math.min(n - 1, y + 1) : y;
+
+            for (long tx = xMin; tx <= xMax; tx++) {
+                for (long ty = yMin; ty <= yMax; ty++) {
+                    // Avant la suppression: une génération en cours ne sera pas mise en cache
+                    generations.incrementAndGet(indiceGeneration(z, tx, ty));
+                    supprimerTuile(z, tx, ty);
+                }
+            }
+        }
+    }
+
+    private void supprimerTuile(int z, long x, long y) {
+        try {
+            Files.deleteIfExists(cheminTuile(z, x, y));
+        } catch (IOException e) {
+            log.warn("Suppression de la tuile {}/{}/{} impossible: {}", z, x, y, e.getMessage());
+        }
+    }
+
+    private static int indiceGeneration(int z, long x, long y) {
+        return Math.floorMod(Objects.hash(z, x, y), GENERATIONS);
+    }
+
+    private void viderCache() {
+        Path racine = Paths.get(cacheDir);
+        if (!Files.exists(racine)) {
+            return;
+        }
+        try (Stream<Path> fichiers = Files.walk(racine)) {
+            fichiers.filter(Files::isRegularFile).forEach(fichier -> {
+                try {
+                    Files.deleteIfExists(fichier);
+                } catch (IOException e) {
+                    log.warn("Suppression de {} impossible: {}", fichier, e.getMessage());
+                }
+            });
+            log.info("🗺️ Cache des tuiles vidé ({})", racine);
+        } catch (IOException e) {
+            log.warn("Impossible de vider le cache des tuiles {}: {}", racine, e.getMessage());
+        }
+    }
+
+    /**
+     * Écriture atomique: fichier temporaire puis renommage, un lecteur ne voit jamais une tuile partielle
+     */
+    private void ecrireTuile(Path fichier, byte[] tuile) {
+        try {
+            Files.createDirectories(fichier.getParent());
+            Path temporaire = Files.createTempFile(fichier.getParent(), "tile", ".tmp");
+            Files.write(temporaire, tuile);
+            Files.move(temporaire, fichier, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Mise en cache de la tuile {} impossible: {}", fichier, e.getMessage());
+        }
+    }
+
+    private Path cheminTuile(int z, long x, long y) {
+        return Paths.get(cacheDir, String.valueOf(z), String.valueOf(x), y + ".mvt");
+    }
+
+    private void validerCoordonnees(int z, int x, int y) {
+        if (z < 0 || z > ZOOM_MAX) {
+            throw new BusinessException("INVALID_TILE", "Zoom hors limites (0-" + ZOOM_MAX + "): " + z);
+        }
+        long n = 1L << z;
+        if (x < 0 || x >= n || y < 0 || y >= n) {
+            throw new BusinessException("INVALID_TILE", "Tuile inexistante: " + z + "/" + x + "/" + y);
+        }
+    }
+}
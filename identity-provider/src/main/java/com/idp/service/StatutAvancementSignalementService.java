@@ -1,11 +1,10 @@
 package com.idp.service;
 
-import com.google.api.core.ApiFuture;
-import com.google.cloud.firestore.Firestore;
-import com.google.cloud.firestore.WriteResult;
+import com.idp.config.CacheConfig;
 import com.idp.entity.StatutAvancementSignalement;
 import com.idp.exception.BusinessException;
 import com.idp.repository.StatutAvancementSignalementRepository;
+import com.idp.store.DocumentStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -17,6 +16,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -24,7 +24,9 @@ import java.util.UUID;
 public class StatutAvancementSignalementService {
 
     private final StatutAvancementSignalementRepository statutRepository;
-    private final Firestore firestore;
+    private final DocumentStore documentStore;
+    private final CacheInvalidationService cacheInvalidationService;
+    private final FirestoreBatchWriter batchWriter;
 
     // Collection Firestore
     private static final String FIRESTORE_STATUTS_COLLECTION = "statut_avancement_signalement";
@@ -59,6 +61,7 @@ public class StatutAvancementSignalementService {
                 .build();
 
         StatutAvancementSignalement saved = statutRepository.save(nouveauStatut);
+        cacheInvalidationService.invaliderTout(CacheConfig.STATUTS);
         log.info("✅ Statut créé avec succès: {} (ID: {})", statut, saved.getId());
 
         return saved;
@@ -121,6 +124,7 @@ public class StatutAvancementSignalementService {
         }
 
         StatutAvancementSignalement updated = statutRepository.save(existing);
+        cacheInvalidationService.invaliderTout(CacheConfig.STATUTS);
         log.info("✅ Statut mis à jour avec succès: {}", id);
 
         return updated;
@@ -138,6 +142,7 @@ public class StatutAvancementSignalementService {
         }
 
         statutRepository.deleteById(id);
+        cacheInvalidationService.invaliderTout(CacheConfig.STATUTS);
         log.info("✅ Statut supprimé avec succès: {}", id);
     }
 
@@ -153,28 +158,30 @@ public class StatutAvancementSignalementService {
     }
 
     /**
-     * Synchroniser TOUS les statuts vers Firebase
+     * Synchroniser TOUS les statuts vers Firebase, en lots Firestore
      */
-    @Transactional
     public void synchroniseAllToFirebase() {
         log.info("📤 Synchronisation de TOUS les statuts vers Firebase");
 
-        List<StatutAvancementSignalement> statuts = statutRepository.findAll();
+        List<FirestoreBatchWriter.Ecriture> ecritures = statutRepository.findAll().stream()
+                .map(statut -> new FirestoreBatchWriter.Ecriture(statut.getId(), FIRESTORE_STATUTS_COLLECTION,
+                        statut.getId(), donneesFirestore(statut)))
+                .collect(Collectors.toList());
 
-        int successCount = 0;
-        int errorCount = 0;
+        // Rien à marquer en base pour les statuts
+        FirestoreBatchWriter.Bilan bilan = batchWriter.ecrire(ecritures, lot -> { });
 
-        for (StatutAvancementSignalement statut : statuts) {
-            try {
-                synchroniseStatusToFirestore(statut);
-                successCount++;
-            } catch (Exception e) {
-                errorCount++;
-                log.error("❌ Erreur lors de la synchronisation du statut {}: {}", statut.getId(), e.getMessage());
-            }
-        }
+        log.info("✅ Synchronisation complétée - Succès: {}, Erreurs: {}", bilan.ecrits(), bilan.echecs());
+    }
 
-        log.info("✅ Synchronisation complétée - Succès: {}, Erreurs: {}", successCount, errorCount);
+    private Map<String, Object> donneesFirestore(StatutAvancementSignalement statut) {
+        Map<String, Object> statutData = new HashMap<>();
+        statutData.put("id", statut.getId());
+        statutData.put("statut", statut.getStatut());
+        statutData.put("avancement", statut.getAvancement());
+        statutData.put("source", "POSTGRESQL");
+        statutData.put("syncedAt", LocalDateTime.now().format(DATE_FORMATTER));
+        return statutData;
     }
 
     /**
@@ -184,19 +191,10 @@ public class StatutAvancementSignalementService {
         try {
             log.info("   📝 Écriture du statut: {} dans Firestore", statut.getStatut());
 
-            Map<String, Object> statutData = new HashMap<>();
-            statutData.put("id", statut.getId());
-            statutData.put("statut", statut.getStatut());
-            statutData.put("avancement", statut.getAvancement());
-            statutData.put("source", "POSTGRESQL");
-            statutData.put("syncedAt", LocalDateTime.now().format(DATE_FORMATTER));
-
-            ApiFuture<WriteResult> future = firestore
-                    .collection(FIRESTORE_STATUTS_COLLECTION)
-                    .document(statut.getId())
-                    .set(statutData);
+            Map<String, Object> statutData = donneesFirestore(statut);
 
-            future.get(); // Attendre la completion
+            documentStore.set(FIRESTORE_STATUTS_COLLECTION, statut.getId(), statutData)
+                    .get(); // Attendre la completion
             log.info("   ✅ Statut '{}' synchronisé avec succès vers Firebase", statut.getStatut());
 
         } catch (Exception e) {
@@ -1,11 +1,10 @@
 package com.idp.service;
 
-import com.google.api.core.ApiFuture;
-import com.google.cloud.firestore.*;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.UserRecord;
 import com.google.firebase.auth.AuthErrorCode;
 import com.google.firebase.auth.FirebaseAuthException;
+import com.idp.entity.FirestoreOutbox;
 import com.idp.entity.User;
 import com.idp.entity.UserSession;
 import com.idp.entity.LoginAttempt;
@@ -15,34 +14,44 @@ import com.idp.repository.UserSessionRepository;
 import com.idp.repository.LoginAttemptRepository;
 import com.idp.repository.SecuritySettingRepository;
 import com.idp.repository.RoleRepository;
+import com.idp.store.DocumentStore;
+import com.idp.store.DocumentStore.Document;
 import com.idp.util.EncryptionUtil;
+import com.idp.util.FirestoreEmpreinte;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
-public class SyncService {
+public class SyncService implements FirestoreOutboxHandler {
 
-    private final Firestore firestore;
+    private final DocumentStore documentStore;
     private final FirebaseAuth firebaseAuth;
     private final UserRepository userRepository;
     private final UserSessionRepository sessionRepository;
@@ -51,33 +60,42 @@ public class SyncService {
     private final RoleRepository roleRepository;
     private final EncryptionUtil encryptionUtil;
     private final PasswordEncoder passwordEncoder;
+    private final FirestoreOutboxService outboxService;
+    private final FirestoreBatchWriter batchWriter;
+    private final FirestoreIncrementalPull incrementalPull;
+    private final FirebaseHealthMonitor firebaseHealthMonitor;
+    private final FirestoreIngestionQueue ingestionQueue;
+    private final PlatformTransactionManager transactionManager;
 
     // Pour gérer les listeners Firestore
-    private ListenerRegistration userListener;
-    private ListenerRegistration sessionListener;
-    private ListenerRegistration loginAttemptsListener;
+    private DocumentStore.Abonnement userListener;
+    private DocumentStore.Abonnement sessionListener;
+    private DocumentStore.Abonnement loginAttemptsListener;
 
     // Collections Firestore
     private static final String FIRESTORE_USERS_COLLECTION = "users";
     private static final String FIRESTORE_SESSIONS_COLLECTION = "user_sessions";
     private static final String FIRESTORE_LOGIN_ATTEMPTS_COLLECTION = "login_attempts";
 
+    // Champs réécrits à chaque push, hors comparaison avec l'empreinte du dernier push
+    private static final Set<String> METADONNEES_FIRESTORE_USER = Set.of(
+            "updatedAt", "syncStatus", "source", "localUpdatedAt");
+
     // Formateur de dates
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 
-    // Cache du statut de connexion (évite les appels répétés lents)
-    private static final long CACHE_DURATION_MS = 5_000; // 5 secondes (réduit pour réagir plus vite au changement de
-                                                         // connexion)
-    private static final int CONNECTION_TIMEOUT_SECONDS = 10; // 10 secondes max pour vérifier (augmenté)
-    private final AtomicBoolean cachedOnlineStatus = new AtomicBoolean(false);
-    private final AtomicLong lastOnlineCheck = new AtomicLong(0);
-
     /**
      * Initialiser les listeners Firestore
      */
     @PostConstruct
     public void initFirestoreListeners() {
         log.info("🚀 Initialisation des listeners Firestore...");
+        ingestionQueue.enregistrer(FIRESTORE_USERS_COLLECTION, documents -> incrementalPull.noterReessais(
+                FIRESTORE_USERS_COLLECTION, appliquerUtilisateurs(documents)));
+        ingestionQueue.enregistrer(FIRESTORE_SESSIONS_COLLECTION,
+                documents -> documents.forEach(this::syncSessionFromFirestoreToPostgres));
+        ingestionQueue.enregistrer(FIRESTORE_LOGIN_ATTEMPTS_COLLECTION,
+                documents -> documents.forEach(this::syncLoginAttemptFromFirestoreToPostgres));
         if (isOnline()) {
             // startFirestoreListeners();
         }
@@ -96,46 +114,19 @@ public class SyncService {
             log.info("🚀 Démarrage des listeners Firestore (mobile → PostgreSQL)...");
 
             // Listener pour les utilisateurs (mobile → PostgreSQL)
-            userListener = firestore.collection(FIRESTORE_USERS_COLLECTION)
-                    .addSnapshotListener((snapshots, e) -> {
-                        if (e != null) {
-                            log.error("❌ Erreur listener users: {}", e.getMessage());
-                            return;
-                        }
-
-                        for (DocumentChange dc : snapshots.getDocumentChanges()) {
-                            DocumentSnapshot document = dc.getDocument();
-                            syncUserFromFirestoreToPostgres(document);
-                        }
-                    });
+            userListener = documentStore.listen(FIRESTORE_USERS_COLLECTION, null,
+                    versIngestion(FIRESTORE_USERS_COLLECTION),
+                    e -> log.error("❌ Erreur listener users: {}", e.getMessage()));
 
             // Listener pour les sessions (mobile → PostgreSQL)
-            sessionListener = firestore.collection(FIRESTORE_SESSIONS_COLLECTION)
-                    .addSnapshotListener((snapshots, e) -> {
-                        if (e != null) {
-                            log.error("❌ Erreur listener sessions: {}", e.getMessage());
-                            return;
-                        }
-
-                        for (DocumentChange dc : snapshots.getDocumentChanges()) {
-                            DocumentSnapshot document = dc.getDocument();
-                            syncSessionFromFirestoreToPostgres(document);
-                        }
-                    });
+            sessionListener = documentStore.listen(FIRESTORE_SESSIONS_COLLECTION, null,
+                    versIngestion(FIRESTORE_SESSIONS_COLLECTION),
+                    e -> log.error("❌ Erreur listener sessions: {}", e.getMessage()));
 
             // Listener pour les tentatives de connexion (mobile → PostgreSQL)
-            loginAttemptsListener = firestore.collection(FIRESTORE_LOGIN_ATTEMPTS_COLLECTION)
-                    .addSnapshotListener((snapshots, e) -> {
-                        if (e != null) {
-                            log.error("❌ Erreur listener login attempts: {}", e.getMessage());
-                            return;
-                        }
-
-                        for (DocumentChange dc : snapshots.getDocumentChanges()) {
-                            DocumentSnapshot document = dc.getDocument();
-                            syncLoginAttemptFromFirestoreToPostgres(document);
-                        }
-                    });
+            loginAttemptsListener = documentStore.listen(FIRESTORE_LOGIN_ATTEMPTS_COLLECTION, null,
+                    versIngestion(FIRESTORE_LOGIN_ATTEMPTS_COLLECTION),
+                    e -> log.error("❌ Erreur listener login attempts: {}", e.getMessage()));
 
             log.info("✅ Listeners Firestore démarrés (mobile → PostgreSQL)");
 
@@ -145,143 +136,156 @@ public class SyncService {
     }
 
     /**
-     * Synchroniser un utilisateur de Firestore vers PostgreSQL (mobile → web)
-     * MET À JOUR TOUS LES CHAMPS
+     * Changements reçus par un listener: application en arrière-plan, par lots (FirestoreIngestionQueue)
      */
-    @Transactional
-    private void syncUserFromFirestoreToPostgres(DocumentSnapshot document) {
-        try {
-            String email = document.getString("email");
-            String firestoreId = document.getId();
-
-            if (email == null) {
-                log.warn("⚠️ Document Firestore sans email, ignoré");
-                return;
-            }
-
-            log.info("📥 Sync Firestore→PostgreSQL - Email: {}", email);
-
-            // Chercher l'utilisateur par email
-            Optional<User> userOpt = userRepository.findByEmail(email);
-            User user;
+    private Consumer<List<Document>> versIngestion(String collection) {
+        return documents -> documents.forEach(document -> ingestionQueue.soumettre(collection, document));
+    }
 
-            if (userOpt.isPresent()) {
-                // Utilisateur existe déjà - mettre à jour TOUS les champs
-                user = userOpt.get();
-                log.info("✅ Utilisateur trouvé dans PostgreSQL: {}", email);
-            } else {
-                // Créer un nouvel utilisateur
-                log.info("🆕 Création nouvel utilisateur pour: {}", email);
-                user = new User();
-                user.setId(UUID.randomUUID().toString());
-                user.setEmail(email);
-                user.setCreatedAt(LocalDateTime.now());
-            }
+    /**
+     * Synchroniser un utilisateur de Firestore vers PostgreSQL (mobile → web).
+     * Les champs du document sont comparés à l'utilisateur avant toute modification:
+     * document identique (ex: écho de notre propre push) → aucune écriture. Si l'utilisateur
+     * a aussi des modifications locales non poussées (PENDING/FAILED), la plus récente gagne
+     * (updatedAt Firestore contre updatedAt PostgreSQL, égalité au profit de PostgreSQL).
+     */
+    @Transactional
+    private void syncUserFromFirestoreToPostgres(Document document) {
+        String email = document.getString("email");
+        String firestoreId = document.id();
 
-            // Compléter les champs obligatoires si nouvel utilisateur
-            if (!userOpt.isPresent()) {
-                // Mot de passe par défaut (à changer côté web si besoin)
-                String defaultPassword = "changeme123";
-                if (user.getPasswordHash() == null) {
-                    user.setPasswordHash(passwordEncoder.encode(defaultPassword));
-                }
-                if (user.getEncryptedPassword() == null) {
-                    user.setEncryptedPassword(encryptionUtil.encrypt(defaultPassword));
-                }
-                // Rôle par défaut : USER
-                if (user.getRole() == null) {
-                    var defaultRole = roleRepository.findByNom("USER")
-                        .orElseThrow(() -> new RuntimeException("Rôle USER non trouvé"));
-                    user.setRole(defaultRole);
-                }
-            }
+        if (email == null) {
+            log.warn("⚠️ Document Firestore sans email, ignoré");
+            return;
+        }
 
-            // METTRE À JOUR TOUS LES CHAMPS depuis Firestore
+        // Chercher l'utilisateur par email
+        Optional<User> userOpt = userRepository.findByEmail(email);
+        boolean nouveau = userOpt.isEmpty();
+        User user;
 
-            // 1. Informations personnelles
-            String fullName = document.getString("fullName");
-            if (fullName != null && !fullName.equals(user.getFullName())) {
-                log.info("✏️ Mise à jour fullName: {} → {}", user.getFullName(), fullName);
-                user.setFullName(fullName);
-            }
+        if (!nouveau) {
+            user = userOpt.get();
+        } else {
+            // Créer un nouvel utilisateur
+            log.info("🆕 Création nouvel utilisateur pour: {}", email);
+            user = new User();
+            user.setId(UUID.randomUUID().toString());
+            user.setEmail(email);
+            user.setCreatedAt(LocalDateTime.now());
+
+            // Mot de passe par défaut (à changer côté web si besoin)
+            String defaultPassword = "changeme123";
+            user.setPasswordHash(passwordEncoder.encode(defaultPassword));
+            user.setEncryptedPassword(encryptionUtil.encrypt(defaultPassword));
+            // Rôle par défaut : USER
+            var defaultRole = roleRepository.findByNom("USER")
+                    .orElseThrow(() -> new RuntimeException("Rôle USER non trouvé"));
+            user.setRole(defaultRole);
+        }
 
-            String phone = document.getString("phone");
-            if (phone != null && !phone.equals(user.getPhone())) {
-                log.info("✏️ Mise à jour phone: {} → {}", user.getPhone(), phone);
-                user.setPhone(phone);
+        // Champs qui diffèrent, appliqués seulement une fois la décision prise
+        // (l'utilisateur est géré par la transaction: toute modification serait écrite)
+        Map<String, Runnable> modifications = new LinkedHashMap<>();
+        siDifferent(modifications, "fullName", document.getString("fullName"), user.getFullName(),
+                user::setFullName);
+        siDifferent(modifications, "phone", document.getString("phone"), user.getPhone(), user::setPhone);
+        siDifferent(modifications, "isActive", document.getBoolean("isActive"), user.getIsActive(),
+                user::setIsActive);
+        Long attempts = document.getLong("failedLoginAttempts");
+        siDifferent(modifications, "failedLoginAttempts", attempts != null ? attempts.intValue() : null,
+                user.getFailedLoginAttempts(), user::setFailedLoginAttempts);
+        siDifferent(modifications, "isLocked", document.getBoolean("isLocked"), user.getIsLocked(),
+                user::setIsLocked);
+        siDifferent(modifications, "lastFailedLogin", parseDate(document.getString("lastFailedLogin")),
+                user.getLastFailedLogin(), user::setLastFailedLogin);
+        siDifferent(modifications, "lastLogin", parseDate(document.getString("lastLogin")),
+                user.getLastLogin(), user::setLastLogin);
+        siDifferent(modifications, "firestoreId", firestoreId, user.getFirestoreId(), user::setFirestoreId);
+
+        boolean modificationsLocales = "PENDING".equals(user.getSyncStatus())
+                || "FAILED".equals(user.getSyncStatus());
+        if (!nouveau) {
+            if (modifications.isEmpty()) {
+                log.debug("⏭️ Utilisateur {} inchangé dans Firestore, aucune écriture", email);
+                return;
             }
-
-            // 2. Statut du compte
-            Boolean isActive = document.getBoolean("isActive");
-            if (isActive != null && !isActive.equals(user.getIsActive())) {
-                log.info("✏️ Mise à jour isActive: {} → {}", user.getIsActive(), isActive);
-                user.setIsActive(isActive);
+            if (modificationsLocales && !firestorePlusRecent(document, user)) {
+                // PostgreSQL gagne: sans empreinte, le push en attente réécrit le document en entier
+                // (un push partiel laisserait en place les champs modifiés par le mobile)
+                log.info("⚔️ Conflit sur {}: PostgreSQL plus récent ({}), champs Firestore {} ignorés",
+                        email, user.getUpdatedAt(), modifications.keySet());
+                user.setFirestoreSnapshot(null);
+                userRepository.save(user);
+                return;
             }
+        }
 
-            // 3. Sécurité - tentatives de connexion
-            Long attempts = document.getLong("failedLoginAttempts");
-            if (attempts != null && attempts.intValue() != user.getFailedLoginAttempts()) {
-                log.info("✏️ Mise à jour failedLoginAttempts: {} → {}",
-                        user.getFailedLoginAttempts(), attempts);
-                user.setFailedLoginAttempts(attempts.intValue());
-            }
+        modifications.values().forEach(Runnable::run);
+        // Document modifié hors du backend: le prochain push le réécrira en entier
+        user.setFirestoreSnapshot(null);
+        if (nouveau || !modificationsLocales) {
+            user.setSyncStatus("SYNCED");
+        }
 
-            // 4. Sécurité - verrouillage
-            Boolean isLocked = document.getBoolean("isLocked");
-            if (isLocked != null && !isLocked.equals(user.getIsLocked())) {
-                log.info("✏️ Mise à jour isLocked: {} → {}", user.getIsLocked(), isLocked);
-                user.setIsLocked(isLocked);
-            }
+        userRepository.save(user);
 
-            // 5. Dates importantes
-            String lastFailedLogin = document.getString("lastFailedLogin");
-            if (lastFailedLogin != null) {
-                LocalDateTime parsedDate = parseDate(lastFailedLogin);
-                if (parsedDate != null && !parsedDate.equals(user.getLastFailedLogin())) {
-                    log.info("✏️ Mise à jour lastFailedLogin: {} → {}",
-                            user.getLastFailedLogin(), parsedDate);
-                    user.setLastFailedLogin(parsedDate);
-                }
-            }
+        log.info("✅ Utilisateur {} syncé Firestore→PostgreSQL: {}", email, modifications.keySet());
+    }
 
-            String lastLogin = document.getString("lastLogin");
-            if (lastLogin != null) {
-                LocalDateTime parsedDate = parseDate(lastLogin);
-                if (parsedDate != null && !parsedDate.equals(user.getLastLogin())) {
-                    log.info("✏️ Mise à jour lastLogin: {} → {}",
-                            user.getLastLogin(), parsedDate);
-                    user.setLastLogin(parsedDate);
-                }
+    /**
+     * Appliquer une page de documents utilisateurs, chacun dans sa propre transaction:
+     * un document en échec n'annule pas les autres ni la transaction de la page
+     * @return les ids des documents en échec, à relire au prochain passage
+     */
+    private List<String> appliquerUtilisateurs(List<Document> documents) {
+        TransactionTemplate parDocument = new TransactionTemplate(transactionManager);
+        parDocument.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        List<String> enEchec = new ArrayList<>();
+        for (Document document : documents) {
+            try {
+                parDocument.executeWithoutResult(status -> syncUserFromFirestoreToPostgres(document));
+            } catch (Exception e) {
+                log.error("❌ Erreur sync user {} Firestore→PostgreSQL, nouvel essai au prochain passage: {}",
+                        document.id(), e.getMessage());
+                enEchec.add(document.id());
             }
+        }
+        return enEchec;
+    }
 
-            // 6. Métadonnées de sync
-            user.setFirestoreId(firestoreId);
-            user.setSyncStatus("SYNCED");
-            user.setUpdatedAt(LocalDateTime.now());
-
-            // Log avant save pour debug
-            log.info("User à sauvegarder: {}", user);
-
-            // Sauvegarder
-            userRepository.save(user);
-
-            log.info("✅ Utilisateur {} complètement syncé Firestore→PostgreSQL", email);
+    /**
+     * Noter une modification si Firestore fournit une valeur différente de la valeur actuelle
+     */
+    private static <T> void siDifferent(Map<String, Runnable> modifications, String champ, T valeur, T actuelle,
+                                        Consumer<T> modifier) {
+        if (valeur != null && !valeur.equals(actuelle)) {
+            modifications.put(champ, () -> modifier.accept(valeur));
+        }
+    }
 
-        } catch (Exception e) {
-            log.error("❌ Erreur sync user Firestore→PostgreSQL: {}", e.getMessage());
-            if (e.getCause() != null) {
-                log.error("Cause: {}", e.getCause().getMessage());
-            }
+    /**
+     * Le document Firestore a-t-il été modifié après l'utilisateur PostgreSQL?
+     * updatedAt: horodatage (mobile) ou texte ISO (écrit par le backend); absent → non
+     */
+    private boolean firestorePlusRecent(Document document, User user) {
+        Instant instant = document.getInstant("updatedAt");
+        LocalDateTime distant = instant != null
+                ? LocalDateTime.ofInstant(instant, ZoneId.systemDefault())
+                : parseDate(document.getString("updatedAt"));
+        if (distant == null) {
+            return false;
         }
+        return user.getUpdatedAt() == null || distant.isAfter(user.getUpdatedAt());
     }
 
     /**
-     * Tirer TOUS les utilisateurs depuis Firestore vers PostgreSQL
+     * Tirer depuis Firestore vers PostgreSQL les utilisateurs modifiés depuis le dernier passage
+     * (pull incrémental, voir FirestoreIncrementalPull)
      * @return le nombre d'utilisateurs synchronisés
      */
-    @Transactional
     public int pullAllUsersFromFirestore() {
-        log.info("📥 PULL ALL - Récupération de tous les utilisateurs depuis Firestore...");
+        log.info("📥 PULL - Récupération des utilisateurs modifiés depuis Firestore...");
 
         if (!isOnline()) {
             log.warn("❌ Firebase hors ligne - Impossible de récupérer les utilisateurs");
@@ -289,19 +293,12 @@ public class SyncService {
         }
 
         try {
-            ApiFuture<QuerySnapshot> future = firestore.collection(FIRESTORE_USERS_COLLECTION).get();
-            QuerySnapshot querySnapshot = future.get(CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
-
-            int count = 0;
-            for (DocumentSnapshot document : querySnapshot.getDocuments()) {
-                syncUserFromFirestoreToPostgres(document);
-                count++;
-            }
+            int count = incrementalPull.tirer(FIRESTORE_USERS_COLLECTION, this::appliquerUtilisateurs);
 
-            log.info("✅ PULL ALL terminé - {} utilisateurs synchronisés depuis Firestore", count);
+            log.info("✅ PULL terminé - {} utilisateurs synchronisés depuis Firestore", count);
             return count;
         } catch (Exception e) {
-            log.error("❌ Erreur PULL ALL depuis Firestore: {}", e.getMessage());
+            log.error("❌ Erreur PULL depuis Firestore: {}", e.getMessage());
             return 0;
         }
     }
@@ -310,7 +307,7 @@ public class SyncService {
      * Synchroniser une session de Firestore vers PostgreSQL
      */
     @Transactional
-    private void syncSessionFromFirestoreToPostgres(DocumentSnapshot document) {
+    private void syncSessionFromFirestoreToPostgres(Document document) {
         try {
             String sessionToken = document.getString("sessionToken");
 
@@ -347,7 +344,7 @@ public class SyncService {
                 session.setCreatedAt(LocalDateTime.now());
             }
 
-            session.setFirestoreId(document.getId());
+            session.setFirestoreId(document.id());
             session.setSyncStatus("SYNCED");
 
             sessionRepository.save(session);
@@ -363,7 +360,7 @@ public class SyncService {
      * Synchroniser une tentative de connexion de Firestore vers PostgreSQL
      */
     @Transactional
-    private void syncLoginAttemptFromFirestoreToPostgres(DocumentSnapshot document) {
+    private void syncLoginAttemptFromFirestoreToPostgres(Document document) {
         try {
             String email = document.getString("email");
 
@@ -392,7 +389,7 @@ public class SyncService {
                 attempt.setAttemptedAt(LocalDateTime.now());
             }
 
-            attempt.setFirestoreId(document.getId());
+            attempt.setFirestoreId(document.id());
             attempt.setSyncStatus("SYNCED");
 
             loginAttemptRepository.save(attempt);
@@ -410,15 +407,15 @@ public class SyncService {
     public void stopFirestoreListeners() {
         try {
             if (userListener != null) {
-                userListener.remove();
+                userListener.arreter();
                 userListener = null;
             }
             if (sessionListener != null) {
-                sessionListener.remove();
+                sessionListener.arreter();
                 sessionListener = null;
             }
             if (loginAttemptsListener != null) {
-                loginAttemptsListener.remove();
+                loginAttemptsListener.arreter();
                 loginAttemptsListener = null;
             }
             log.info("⏹️  Listeners Firestore arrêtés");
@@ -441,122 +438,151 @@ public class SyncService {
     }
 
     /**
-     * Vérifie la connexion à Firestore avec cache et timeout
-     * Évite les appels répétés lents quand il n'y a pas de connexion
+     * Firebase est-il disponible ? Lit l'état du disjoncteur alimenté par la sonde
+     * en arrière-plan (FirebaseHealthMonitor), sans jamais attendre le réseau
      */
     public boolean isOnline() {
-        long now = System.currentTimeMillis();
-        long lastCheck = lastOnlineCheck.get();
-
-        // Utiliser le cache si la dernière vérification est récente
-        if (now - lastCheck < CACHE_DURATION_MS) {
-            return cachedOnlineStatus.get();
-        }
-
-        // Vérifier la connexion avec timeout
-        boolean online = checkFirebaseConnectionWithTimeout();
-
-        // Mettre à jour le cache
-        cachedOnlineStatus.set(online);
-        lastOnlineCheck.set(now);
-
-        return online;
-    }
-
-    /**
-     * Vérifie la connexion Firebase avec un timeout court
-     */
-    private boolean checkFirebaseConnectionWithTimeout() {
-        try {
-            log.debug("🔍 Vérification connexion Firebase (timeout: {} sec)...", CONNECTION_TIMEOUT_SECONDS);
-            // Utiliser un Future avec timeout pour éviter les blocages longs
-            ApiFuture<QuerySnapshot> future = firestore.collection(FIRESTORE_USERS_COLLECTION).limit(1).get();
-            QuerySnapshot result = future.get(CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
-            log.info("✅ Firebase ONLINE - {} documents dans collection users", result.size());
-            return true;
-        } catch (TimeoutException e) {
-            log.warn("⏱️ Timeout lors de la vérification Firebase ({} secondes) - Firebase probablement inaccessible",
-                    CONNECTION_TIMEOUT_SECONDS);
-            return false;
-        } catch (ExecutionException e) {
-            log.warn("❌ Firebase ExecutionException: {}",
-                    e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
-            return false;
-        } catch (InterruptedException e) {
-            log.warn("❌ Firebase InterruptedException: {}", e.getMessage());
-            Thread.currentThread().interrupt();
-            return false;
-        } catch (Exception e) {
-            log.warn("❌ Firebase offline - Exception: {} - {}", e.getClass().getSimpleName(), e.getMessage());
-            return false;
-        }
+        return firebaseHealthMonitor.isDisponible();
     }
 
     /**
-     * Force une nouvelle vérification de la connexion (invalide le cache)
+     * Force une vérification immédiate de la connexion (bloquant: endpoints de test uniquement)
      */
     public void invalidateOnlineCache() {
-        lastOnlineCheck.set(0);
+        firebaseHealthMonitor.verifierMaintenant();
     }
 
     /**
-     * Synchroniser un utilisateur vers Firebase (Auth + Firestore)
+     * Planifier la synchronisation d'un utilisateur vers Firebase (Auth + Firestore).
+     * L'envoi se fait après le commit, par l'outbox: le thread de la requête n'attend pas Firebase.
      */
     @Transactional
     public void syncUserToFirestore(User user) {
-        log.info("📤 Sync PostgreSQL→Firebase - User: {}", user.getEmail());
+        log.info("📤 Sync PostgreSQL→Firebase planifiée - User: {}", user.getEmail());
+        user.setSyncStatus("PENDING");
+        userRepository.save(user);
+        outboxService.enregistrer(FirestoreOutbox.TYPE_USER, user.getId());
+    }
 
-        boolean online = isOnline();
-        log.info("   🌐 isOnline() = {} (cache: lastCheck={}ms ago)",
-                online,
-                System.currentTimeMillis() - lastOnlineCheck.get());
+    @Override
+    public String getTypeEntite() {
+        return FirestoreOutbox.TYPE_USER;
+    }
 
-        if (!online) {
-            log.warn("   ❌ Firebase offline - User {} reste PENDING", user.getEmail());
-            user.setSyncStatus("PENDING");
-            userRepository.save(user);
-            return;
+    /**
+     * Écrire l'état courant d'un utilisateur dans Firebase Auth et Firestore
+     * (dispatcher de l'outbox, hors transaction)
+     */
+    @Override
+    public Runnable pousser(String userId, long timeoutSecondes) throws Exception {
+        Optional<User> userOpt = userRepository.findById(userId);
+        if (userOpt.isEmpty()) {
+            return null;
+        }
+        User user = userOpt.get();
+
+        if (!isOnline()) {
+            // Réessayé plus tard par le dispatcher, l'utilisateur reste PENDING
+            throw new IllegalStateException("Firebase hors ligne");
         }
 
+        // 1. Créer ou mettre à jour sur Firebase Auth (non-bloquant)
         try {
-            // 1. Créer ou mettre à jour sur Firebase Auth (non-bloquant)
-            try {
-                createOrUpdateFirebaseAuthUser(user);
-            } catch (FirebaseAuthException authEx) {
-                // Firebase Auth inaccessible (ex: identitytoolkit.googleapis.com bloqué)
-                // On continue quand même avec la sync Firestore
-                log.warn("⚠️ Firebase Auth indisponible pour {} ({}), sync Firestore uniquement",
-                        user.getEmail(), authEx.getMessage());
-            }
+            createOrUpdateFirebaseAuthUser(user);
+        } catch (FirebaseAuthException authEx) {
+            // Firebase Auth inaccessible (ex: identitytoolkit.googleapis.com bloqué)
+            // On continue quand même avec la sync Firestore
+            log.warn("⚠️ Firebase Auth indisponible pour {} ({}), sync Firestore uniquement",
+                    user.getEmail(), authEx.getMessage());
+        }
+
+        // 2. Utiliser le firebaseUid comme ID du document Firestore (cohérence Auth/Firestore)
+        if (user.getFirebaseUid() != null) {
+            user.setFirestoreId(user.getFirebaseUid());
+        } else if (user.getFirestoreId() == null) {
+            user.setFirestoreId("user_" + user.getId());
+        }
+
+        // Seuls les champs modifiés depuis le dernier push partent (ex: connexion → lastLogin)
+        FirestoreEmpreinte comparaison = comparerAuDernierPush(user);
+        if (comparaison.isInchange()) {
+            log.info("⏭️ User {} inchangé côté Firestore, aucune écriture", user.getEmail());
+        } else {
+            comparaison.ecrire(documentStore, FIRESTORE_USERS_COLLECTION).get(timeoutSecondes, TimeUnit.SECONDS);
+            log.info("✅ User {} syncé PostgreSQL→Firebase ({})", user.getEmail(),
+                    comparaison.isComplet() ? "document complet" : comparaison.getChamps().keySet());
+        }
+
+        String firebaseUid = user.getFirebaseUid();
+        String firestoreId = user.getFirestoreId();
+        LocalDateTime version = user.getUpdatedAt();
+        String empreinte = comparaison.getEmpreinte();
+        return () -> {
+            userRepository.definirIdentifiantsFirebase(userId, firebaseUid, firestoreId);
+            // Effacer le mot de passe chiffré après sync réussie, sauf si l'utilisateur a changé entre-temps
+            userRepository.marquerSynchronise(userId, version, empreinte);
+        };
+    }
+
+    /**
+     * Synchroniser un ensemble d'utilisateurs (push-all): Firebase Auth reste un appel par
+     * utilisateur, et seulement pour ceux qui n'ont pas encore d'UID; les documents Firestore
+     * partent par lots, confirmés en base par une mise à jour groupée par lot.
+     */
+    public FirestoreBatchWriter.Bilan syncUsersToFirestore(List<User> users) {
+        if (!isOnline()) {
+            log.warn("❌ Firebase offline - {} utilisateurs restent PENDING", users.size());
+            return new FirestoreBatchWriter.Bilan(0, 0, users.size(), 0);
+        }
+        // Les utilisateurs modifiés après cette lecture ne seront pas marqués SYNCED
+        LocalDateTime luA = LocalDateTime.now();
 
-            // 2. Utiliser le firebaseUid comme ID du document Firestore (cohérence Auth/Firestore)
+        List<FirestoreBatchWriter.Ecriture> ecritures = new ArrayList<>(users.size());
+        for (User user : users) {
+            if (user.getFirebaseUid() == null) {
+                try {
+                    createOrUpdateFirebaseAuthUser(user);
+                } catch (FirebaseAuthException authEx) {
+                    log.warn("⚠️ Firebase Auth indisponible pour {} ({}), sync Firestore uniquement",
+                            user.getEmail(), authEx.getMessage());
+                }
+            }
             if (user.getFirebaseUid() != null) {
                 user.setFirestoreId(user.getFirebaseUid());
             } else if (user.getFirestoreId() == null) {
                 user.setFirestoreId("user_" + user.getId());
             }
+            // L'UID Firebase Auth est conservé même si le lot Firestore échoue ensuite
+            userRepository.definirIdentifiantsFirebase(user.getId(), user.getFirebaseUid(), user.getFirestoreId());
 
-            Map<String, Object> userData = prepareUserData(user);
-            userData.put("source", "POSTGRESQL");
-            userData.put("localUpdatedAt", formatDate(LocalDateTime.now()));
-
-            ApiFuture<WriteResult> future = firestore
-                    .collection(FIRESTORE_USERS_COLLECTION)
-                    .document(user.getFirestoreId())
-                    .set(userData);
-
-            WriteResult result = future.get();
+            ecritures.add(FirestoreBatchWriter.Ecriture.depuis(user.getId(), FIRESTORE_USERS_COLLECTION,
+                    user.getFirestoreId(), comparerAuDernierPush(user)));
+        }
 
-            user.setSyncStatus("SYNCED");
-            // Effacer le mot de passe chiffré après sync réussie
-            user.setEncryptedPassword(null);
-            userRepository.save(user);
+        return batchWriter.ecrire(ecritures, lot -> {
+            // Inchangés: l'empreinte reste la même, une requête groupée suffit
+            List<String> inchanges = lot.stream()
+                    .filter(FirestoreBatchWriter.Ecriture::inchangee)
+                    .map(FirestoreBatchWriter.Ecriture::entiteId)
+                    .collect(Collectors.toList());
+            if (!inchanges.isEmpty()) {
+                userRepository.marquerSynchronises(inchanges, luA);
+            }
+            lot.stream()
+                    .filter(e -> !e.inchangee())
+                    .forEach(e -> userRepository.marquerSynchroniseAvecEmpreinte(e.entiteId(), e.empreinte(), luA));
+        });
+    }
 
-        } catch (Exception e) {
-            user.setSyncStatus("FAILED");
-            userRepository.save(user);
-            log.error("❌ Erreur sync utilisateur {}: {}", user.getEmail(), e.getMessage());
-        }
+    /**
+     * Document Firestore d'un utilisateur, comparé à l'empreinte de son dernier push réussi
+     */
+    private FirestoreEmpreinte comparerAuDernierPush(User user) {
+        Map<String, Object> userData = prepareUserData(user);
+        userData.put("source", "POSTGRESQL");
+        userData.put("localUpdatedAt", formatDate(LocalDateTime.now()));
+        return FirestoreEmpreinte.comparer(user.getFirestoreId(), userData, user.getFirestoreSnapshot(),
+                METADONNEES_FIRESTORE_USER);
     }
 
     /**
@@ -662,85 +688,23 @@ public class SyncService {
     }
 
     /**
-     * Synchroniser une session vers Firestore
+     * Planifier la synchronisation d'une session vers Firestore (outbox, envoyée après le commit
+     * par SessionFirestoreSync: la requête n'attend pas Firestore)
      */
     @Transactional
     public void syncSessionToFirestore(UserSession session) {
-        log.info("📤 Sync PostgreSQL→Firestore - Session: {}", session.getId());
-
-        if (!isOnline()) {
-            session.setSyncStatus("PENDING");
-            sessionRepository.save(session);
-            return;
-        }
-
-        try {
-            Map<String, Object> sessionData = prepareSessionData(session);
-            sessionData.put("source", "POSTGRESQL");
-            sessionData.put("localUpdatedAt", formatDate(LocalDateTime.now()));
-
-            if (session.getFirestoreId() == null) {
-                session.setFirestoreId("session_" + session.getId());
-            }
-
-            ApiFuture<WriteResult> future = firestore
-                    .collection(FIRESTORE_SESSIONS_COLLECTION)
-                    .document(session.getFirestoreId())
-                    .set(sessionData);
-
-            WriteResult result = future.get();
-
-            session.setSyncStatus("SYNCED");
-            sessionRepository.save(session);
-
-            log.info("✅ Session {} syncée PostgreSQL→Firestore", session.getId());
-
-        } catch (Exception e) {
-            session.setSyncStatus("FAILED");
-            sessionRepository.save(session);
-            log.error("❌ Erreur sync session {}: {}", session.getId(), e.getMessage());
-        }
+        log.debug("📤 Sync PostgreSQL→Firestore planifiée - Session: {}", session.getId());
+        outboxService.enregistrer(FirestoreOutbox.TYPE_SESSION, session.getId());
     }
 
     /**
-     * Synchroniser une tentative de connexion vers Firestore
+     * Planifier la synchronisation d'une tentative de connexion vers Firestore (outbox, envoyée
+     * après le commit par LoginAttemptFirestoreSync)
      */
     @Transactional
     public void syncLoginAttemptToFirestore(LoginAttempt attempt) {
-        log.info("📤 Sync PostgreSQL→Firestore - Login Attempt: {}", attempt.getId());
-
-        if (!isOnline()) {
-            attempt.setSyncStatus("PENDING");
-            loginAttemptRepository.save(attempt);
-            return;
-        }
-
-        try {
-            Map<String, Object> attemptData = prepareLoginAttemptData(attempt);
-            attemptData.put("source", "POSTGRESQL");
-            attemptData.put("localUpdatedAt", formatDate(LocalDateTime.now()));
-
-            if (attempt.getFirestoreId() == null) {
-                attempt.setFirestoreId("attempt_" + attempt.getId());
-            }
-
-            ApiFuture<WriteResult> future = firestore
-                    .collection(FIRESTORE_LOGIN_ATTEMPTS_COLLECTION)
-                    .document(attempt.getFirestoreId())
-                    .set(attemptData);
-
-            WriteResult result = future.get();
-
-            attempt.setSyncStatus("SYNCED");
-            loginAttemptRepository.save(attempt);
-
-            log.info("✅ Login attempt {} syncé PostgreSQL→Firestore", attempt.getId());
-
-        } catch (Exception e) {
-            attempt.setSyncStatus("FAILED");
-            loginAttemptRepository.save(attempt);
-            log.error("❌ Erreur sync login attempt {}: {}", attempt.getId(), e.getMessage());
-        }
+        log.debug("📤 Sync PostgreSQL→Firestore planifiée - Login Attempt: {}", attempt.getId());
+        outboxService.enregistrer(FirestoreOutbox.TYPE_LOGIN_ATTEMPT, attempt.getId());
     }
 
     /**
@@ -783,17 +747,14 @@ public class SyncService {
             log.info("🔧 Force sync pour: {}", email);
 
             // 1. Récupérer depuis Firestore
-            var users = firestore.collection("users")
-                    .whereEqualTo("email", email)
-                    .get()
-                    .get();
+            var users = documentStore.findByField(FIRESTORE_USERS_COLLECTION, "email", email, 1).get();
 
             if (users.isEmpty()) {
                 log.error("❌ Utilisateur {} non trouvé dans Firestore", email);
                 return;
             }
 
-            var doc = users.getDocuments().get(0);
+            var doc = users.get(0);
 
             // 2. Récupérer ou créer dans PostgreSQL
             Optional<User> userOpt = userRepository.findByEmail(email);
@@ -822,7 +783,8 @@ public class SyncService {
             user.setLastFailedLogin(parseDate(doc.getString("lastFailedLogin")));
             user.setLastLogin(parseDate(doc.getString("lastLogin")));
 
-            user.setFirestoreId(doc.getId());
+            user.setFirestoreId(doc.id());
+            user.setFirestoreSnapshot(null);
             user.setSyncStatus("SYNCED");
             user.setUpdatedAt(LocalDateTime.now());
 
@@ -858,43 +820,6 @@ public class SyncService {
         return data;
     }
 
-    /**
-     * Prépare les données de session pour Firestore
-     */
-    private Map<String, Object> prepareSessionData(UserSession session) {
-        Map<String, Object> data = new HashMap<>();
-        data.put("id", session.getId());
-        data.put("userId", session.getUser() != null ? session.getUser().getId() : null);
-        data.put("sessionToken", session.getSessionToken());
-        data.put("refreshToken", session.getRefreshToken());
-        data.put("deviceInfo", session.getDeviceInfo());
-        data.put("ipAddress", session.getIpAddress());
-        data.put("expiresAt", formatDate(session.getExpiresAt()));
-        data.put("createdAt", formatDate(session.getCreatedAt()));
-        data.put("isValid", session.getIsValid() != null ? session.getIsValid() : true);
-        data.put("firestoreId", session.getFirestoreId());
-        data.put("syncStatus", session.getSyncStatus() != null ? session.getSyncStatus() : "PENDING");
-        return data;
-    }
-
-    /**
-     * Prépare les données de tentative de connexion pour Firestore
-     */
-    private Map<String, Object> prepareLoginAttemptData(LoginAttempt attempt) {
-        Map<String, Object> data = new HashMap<>();
-        data.put("id", attempt.getId());
-        data.put("userId", attempt.getUser() != null ? attempt.getUser().getId() : null);
-        data.put("email", attempt.getEmail());
-        data.put("ipAddress", attempt.getIpAddress());
-        data.put("userAgent", attempt.getUserAgent());
-        data.put("success", attempt.getSuccess() != null ? attempt.getSuccess() : false);
-        data.put("failureReason", attempt.getFailureReason());
-        data.put("attemptedAt", formatDate(attempt.getAttemptedAt()));
-        data.put("firestoreId", attempt.getFirestoreId());
-        data.put("syncStatus", attempt.getSyncStatus() != null ? attempt.getSyncStatus() : "PENDING");
-        return data;
-    }
-
     /**
      * Formate une LocalDateTime en String pour Firestore
      */
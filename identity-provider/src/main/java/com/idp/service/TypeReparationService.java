@@ -25,6 +25,7 @@ public class TypeReparationService {
     private final TypeReparationRepository typeReparationRepository;
     private final SignalementRepository signalementRepository;
     private final GlobalConfigService globalConfigService;
+    private final SignalementStatsService statsService;
 
     /**
      * Récupérer tous les types de réparation (triés par niveau)
@@ -149,6 +150,7 @@ public class TypeReparationService {
                         "Signalement non trouvé avec l'ID: " + signalementId));
 
         TypeReparation typeReparation = getTypeById(typeReparationId);
+        SignalementStatsService.Contribution avant = statsService.contribution(signalement);
 
         // Affecter le type et copier son niveau
         signalement.setTypeReparation(typeReparation);
@@ -159,6 +161,7 @@ public class TypeReparationService {
         signalement.setBudget(calculatedBudget);
 
         Signalement saved = signalementRepository.save(signalement);
+        statsService.enregistrerModification(avant, saved);
         log.info("✅ Type {} affecté au signalement {}. Niveau: {}, Budget calculé: {} MGA",
                 typeReparation.getNom(), signalementId, typeReparation.getNiveau(), calculatedBudget);
 
@@ -179,6 +182,7 @@ public class TypeReparationService {
                 .orElseThrow(() -> new BusinessException("SIGNALEMENT_NOT_FOUND",
                         "Signalement non trouvé avec l'ID: " + signalementId));
 
+        SignalementStatsService.Contribution avant = statsService.contribution(signalement);
         signalement.setNiveau(niveau);
 
         // Calculer le budget
@@ -186,6 +190,7 @@ public class TypeReparationService {
         signalement.setBudget(calculatedBudget);
 
         Signalement saved = signalementRepository.save(signalement);
+        statsService.enregistrerModification(avant, saved);
         log.info("✅ Niveau {} défini pour signalement {}. Budget calculé: {} MGA",
                 niveau, signalementId, calculatedBudget);
 
@@ -0,0 +1,23 @@
+package com.idp.store;
+
+/**
+ * Modification (update) d'un document qui n'existe pas, ou plus, dans le DocumentStore
+ */
+public class DocumentAbsentException extends RuntimeException {
+
+    public DocumentAbsentException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    /**
+     * L'erreur (ou l'une de ses causes) signale-t-elle un document absent ?
+     */
+    public static boolean estCause(Throwable erreur) {
+        for (Throwable t = erreur; t != null; t = t.getCause()) {
+            if (t instanceof DocumentAbsentException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,137 @@
+package com.idp.store;
+
+import com.google.cloud.Timestamp;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Stockage de documents utilisé par la synchronisation (Firestore en production).
+ *
+ * Interface volontairement étroite: écritures, lecture paginée, lecture incrémentale sur
+ * updatedAt et écoute des modifications. Elle permet de remplacer Firestore par
+ * InMemoryDocumentStore (sync.store=memory) pour mesurer la synchronisation hors ligne.
+ *
+ * Les opérations sont asynchrones; l'appelant choisit son timeout avec get(...).
+ */
+public interface DocumentStore {
+
+    /**
+     * Champ de date de modification suivi par querySince et listen
+     */
+    String CHAMP_UPDATED_AT = "updatedAt";
+
+    /**
+     * Document lu: identifiant et champs (types Firestore: String, Long, Double, Boolean, Timestamp...)
+     */
+    record Document(String id, Map<String, Object> data) {
+
+        public Object get(String champ) {
+            return data != null ? data.get(champ) : null;
+        }
+
+        public String getString(String champ) {
+            return get(champ) instanceof String valeur ? valeur : null;
+        }
+
+        public Boolean getBoolean(String champ) {
+            return get(champ) instanceof Boolean valeur ? valeur : null;
+        }
+
+        public Long getLong(String champ) {
+            return get(champ) instanceof Number valeur ? valeur.longValue() : null;
+        }
+
+        /**
+         * Date d'un champ horodaté (Timestamp, Date ou Instant), null pour tout autre type
+         */
+        public Instant getInstant(String champ) {
+            Object valeur = get(champ);
+            if (valeur instanceof Timestamp timestamp) {
+                return Instant.ofEpochSecond(timestamp.getSeconds(), timestamp.getNanos());
+            }
+            if (valeur instanceof Date date) {
+                return date.toInstant();
+            }
+            return valeur instanceof Instant instant ? instant : null;
+        }
+    }
+
+    /**
+     * Un document à écrire: set complet, ou update des seuls champs fournis (fusion = true).
+     * Un update vise un document existant: s'il manque, tout le lot est refusé
+     * (DocumentAbsentException), plutôt que de créer un document incomplet.
+     */
+    record Ecriture(String collection, String documentId, Map<String, Object> data, boolean fusion) {
+
+        public Ecriture(String collection, String documentId, Map<String, Object> data) {
+            this(collection, documentId, data, false);
+        }
+    }
+
+    /**
+     * Position dans l'ordre (updatedAt, id du document)
+     */
+    record Curseur(Instant updatedAt, String documentId) {
+    }
+
+    /**
+     * Écoute en cours
+     */
+    interface Abonnement {
+        void arreter();
+    }
+
+    /**
+     * Créer ou remplacer un document
+     */
+    CompletableFuture<Void> set(String collection, String documentId, Map<String, Object> data);
+
+    /**
+     * Modifier des champs d'un document existant (DocumentAbsentException s'il n'existe pas)
+     */
+    CompletableFuture<Void> update(String collection, String documentId, Map<String, Object> champs);
+
+    CompletableFuture<Void> delete(String collection, String documentId);
+
+    /**
+     * Écrire un lot de documents de façon atomique (au plus 500 pour Firestore)
+     */
+    CompletableFuture<Void> setAll(List<Ecriture> ecritures);
+
+    /**
+     * Parcourir une collection dans l'ordre des identifiants
+     * @param apresId dernier identifiant de la page précédente, null pour la première page
+     */
+    CompletableFuture<List<Document>> list(String collection, String apresId, int limite);
+
+    /**
+     * Documents dont updatedAt (horodatage) est postérieur ou égal à depuis, triés par
+     * (updatedAt, id). Les updatedAt d'un autre type (texte...) sont ignorés.
+     * @param apres reprendre strictement après cette position, null pour la première page
+     */
+    CompletableFuture<List<Document>> querySince(String collection, Instant depuis, Curseur apres, int limite);
+
+    /**
+     * Documents désignés par leur id (les documents absents sont omis)
+     */
+    CompletableFuture<List<Document>> getAll(String collection, List<String> documentIds);
+
+    /**
+     * Documents dont un champ vaut une valeur donnée
+     */
+    CompletableFuture<List<Document>> findByField(String collection, String champ, Object valeur, int limite);
+
+    /**
+     * Écouter les documents créés ou modifiés (les suppressions ne sont pas remontées).
+     * Le premier appel livre les documents existants qui correspondent.
+     * @param depuis ne suivre que les documents dont updatedAt est postérieur ou égal, null pour tous
+     * @param erreur appelé si l'écoute s'arrête définitivement
+     */
+    Abonnement listen(String collection, Instant depuis, Consumer<List<Document>> changements,
+                      Consumer<Throwable> erreur);
+}
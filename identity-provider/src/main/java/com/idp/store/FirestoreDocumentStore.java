@@ -0,0 +1,197 @@
+package com.idp.store;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentChange;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.FirestoreException;
+import com.google.cloud.firestore.ListenerRegistration;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.google.cloud.firestore.WriteBatch;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * DocumentStore adossé à Cloud Firestore (par défaut)
+ */
+@Component
+@ConditionalOnProperty(name = "sync.store", havingValue = "firestore", matchIfMissing = true)
+@RequiredArgsConstructor
+public class FirestoreDocumentStore implements DocumentStore {
+
+    private final Firestore firestore;
+
+    @Override
+    public CompletableFuture<Void> set(String collection, String documentId, Map<String, Object> data) {
+        return sansResultat(firestore.collection(collection).document(documentId).set(data));
+    }
+
+    @Override
+    public CompletableFuture<Void> update(String collection, String documentId, Map<String, Object> champs) {
+        return documentAbsent(sansResultat(firestore.collection(collection).document(documentId).update(champs)),
+                collection + "/" + documentId);
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(String collection, String documentId) {
+        return sansResultat(firestore.collection(collection).document(documentId).delete());
+    }
+
+    @Override
+    public CompletableFuture<Void> setAll(List<Ecriture> ecritures) {
+        WriteBatch batch = firestore.batch();
+        ecritures.forEach(e -> {
+            DocumentReference reference = firestore.collection(e.collection()).document(e.documentId());
+            if (e.fusion()) {
+                // Document absent: tout le lot est refusé (NOT_FOUND), l'appelant le renvoie complet
+                batch.update(reference, e.data());
+            } else {
+                batch.set(reference, e.data());
+            }
+        });
+        return documentAbsent(sansResultat(batch.commit()), "lot de " + ecritures.size() + " documents");
+    }
+
+    @Override
+    public CompletableFuture<List<Document>> list(String collection, String apresId, int limite) {
+        Query query = firestore.collection(collection)
+                .orderBy(FieldPath.documentId())
+                .limit(limite);
+        if (apresId != null) {
+            query = query.startAfter(apresId);
+        }
+        return documents(query.get());
+    }
+
+    @Override
+    public CompletableFuture<List<Document>> querySince(String collection, Instant depuis, Curseur apres, int limite) {
+        // Filtre de plage sur un Timestamp: Firestore ne retient que les valeurs de ce type
+        Query query = firestore.collection(collection)
+                .whereGreaterThanOrEqualTo(CHAMP_UPDATED_AT, versTimestamp(depuis))
+                .orderBy(CHAMP_UPDATED_AT)
+                .orderBy(FieldPath.documentId())
+                .limit(limite);
+        if (apres != null) {
+            query = query.startAfter(versTimestamp(apres.updatedAt()), apres.documentId());
+        }
+        return documents(query.get());
+    }
+
+    @Override
+    public CompletableFuture<List<Document>> getAll(String collection, List<String> documentIds) {
+        if (documentIds.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        DocumentReference[] references = documentIds.stream()
+                .map(id -> firestore.collection(collection).document(id))
+                .toArray(DocumentReference[]::new);
+        return completable(firestore.getAll(references)).thenApply(snapshots -> snapshots.stream()
+                .filter(DocumentSnapshot::exists)
+                .map(FirestoreDocumentStore::versDocument)
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public CompletableFuture<List<Document>> findByField(String collection, String champ, Object valeur, int limite) {
+        return documents(firestore.collection(collection).whereEqualTo(champ, valeur).limit(limite).get());
+    }
+
+    @Override
+    public Abonnement listen(String collection, Instant depuis, Consumer<List<Document>> changements,
+                             Consumer<Throwable> erreur) {
+        Query query = depuis != null
+                ? firestore.collection(collection).whereGreaterThanOrEqualTo(CHAMP_UPDATED_AT, versTimestamp(depuis))
+                : firestore.collection(collection);
+        ListenerRegistration registration = query.addSnapshotListener((snapshots, e) -> {
+            if (e != null) {
+                erreur.accept(e);
+                return;
+            }
+            List<Document> documents = snapshots.getDocumentChanges().stream()
+                    .filter(dc -> dc.getType() != DocumentChange.Type.REMOVED)
+                    .map(dc -> versDocument(dc.getDocument()))
+                    .collect(Collectors.toList());
+            if (!documents.isEmpty()) {
+                changements.accept(documents);
+            }
+        });
+        return registration::remove;
+    }
+
+    private static Document versDocument(DocumentSnapshot snapshot) {
+        return new Document(snapshot.getId(), snapshot.getData());
+    }
+
+    private static Timestamp versTimestamp(Instant instant) {
+        return Timestamp.ofTimeSecondsAndNanos(instant.getEpochSecond(), instant.getNano());
+    }
+
+    private static CompletableFuture<List<Document>> documents(ApiFuture<QuerySnapshot> requete) {
+        return completable(requete).thenApply(snapshot -> snapshot.getDocuments().stream()
+                .map(FirestoreDocumentStore::versDocument)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Traduire un refus NOT_FOUND de Firestore en DocumentAbsentException
+     */
+    private static CompletableFuture<Void> documentAbsent(CompletableFuture<Void> ecriture, String cible) {
+        return ecriture.exceptionallyCompose(e -> CompletableFuture.failedFuture(
+                estIntrouvable(e) ? new DocumentAbsentException("Document absent: " + cible, e) : e));
+    }
+
+    private static boolean estIntrouvable(Throwable erreur) {
+        for (Throwable t = erreur; t != null; t = t.getCause()) {
+            if (t instanceof FirestoreException fe && fe.getStatus() != null
+                    && fe.getStatus().getCode() == Status.Code.NOT_FOUND) {
+                return true;
+            }
+            if (t instanceof ApiException ae && ae.getStatusCode().getCode() == StatusCode.Code.NOT_FOUND) {
+                return true;
+            }
+            if (t instanceof StatusRuntimeException sre && sre.getStatus().getCode() == Status.Code.NOT_FOUND) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static <T> CompletableFuture<Void> sansResultat(ApiFuture<T> future) {
+        return completable(future).thenApply(resultat -> null);
+    }
+
+    private static <T> CompletableFuture<T> completable(ApiFuture<T> future) {
+        CompletableFuture<T> resultat = new CompletableFuture<>();
+        ApiFutures.addCallback(future, new ApiFutureCallback<T>() {
+            @Override
+            public void onFailure(Throwable t) {
+                resultat.completeExceptionally(t);
+            }
+
+            @Override
+            public void onSuccess(T valeur) {
+                resultat.complete(valeur);
+            }
+        }, MoreExecutors.directExecutor());
+        return resultat;
+    }
+}
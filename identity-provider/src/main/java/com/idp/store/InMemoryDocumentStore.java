@@ -0,0 +1,312 @@
+package com.idp.store;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * DocumentStore en mémoire, pour mesurer la synchronisation hors ligne (sync.store=memory).
+ *
+ * Chaque opération répond après une latence simulée (latency-ms, plus une variation
+ * aléatoire jusqu'à latency-jitter-ms) et échoue avec la probabilité failure-rate.
+ * Le tirage aléatoire part d'une graine fixe (seed): deux exécutions identiques donnent
+ * les mêmes latences et les mêmes échecs. Les écoutes sont notifiées après la latence,
+ * sur un thread du store, comme les callbacks Firestore.
+ *
+ * La durée de chaque opération (appel → réponse) est relevée une fois par document écrit
+ * ou lu: un lot de 400 documents compte 400 fois sa durée (voir SyncBenchmarkTest).
+ */
+@Component
+@ConditionalOnProperty(name = "sync.store", havingValue = "memory")
+@Slf4j
+public class InMemoryDocumentStore implements DocumentStore {
+
+    private static final Comparator<Document> ORDRE_UPDATED_AT = Comparator
+            .comparing((Document d) -> d.getInstant(CHAMP_UPDATED_AT))
+            .thenComparing(Document::id);
+
+    private final Map<String, NavigableMap<String, Map<String, Object>>> collections = new ConcurrentHashMap<>();
+    private final List<Ecoute> ecoutes = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(4, r -> {
+        Thread thread = new Thread(r, "memory-store");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong operations = new AtomicLong();
+    private final AtomicLong echecsInjectes = new AtomicLong();
+    private final Queue<Long> latencesParDocument = new ConcurrentLinkedQueue<>();
+
+    private Random random;
+    private volatile long latencyMs;
+    private volatile long latencyJitterMs;
+    private volatile double failureRate;
+
+    private record Ecoute(String collection, Instant depuis, Consumer<List<Document>> changements) {
+    }
+
+    public InMemoryDocumentStore(@Value("${sync.store.memory.latency-ms:0}") long latencyMs,
+                                 @Value("${sync.store.memory.latency-jitter-ms:0}") long latencyJitterMs,
+                                 @Value("${sync.store.memory.failure-rate:0}") double failureRate,
+                                 @Value("${sync.store.memory.seed:42}") long seed) {
+        configurer(latencyMs, latencyJitterMs, failureRate, seed);
+        log.info("🧪 DocumentStore en mémoire (latence {} ms ± {} ms, taux d'échec {})",
+                latencyMs, latencyJitterMs, failureRate);
+    }
+
+    @PreDestroy
+    public void arreter() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Changer la latence et l'injection d'échecs (et repartir de la graine)
+     */
+    public synchronized void configurer(long latencyMs, long latencyJitterMs, double failureRate, long seed) {
+        this.latencyMs = Math.max(0, latencyMs);
+        this.latencyJitterMs = Math.max(0, latencyJitterMs);
+        this.failureRate = Math.min(1.0, Math.max(0.0, failureRate));
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Tout effacer (documents, écoutes, compteurs)
+     */
+    public void vider() {
+        collections.clear();
+        ecoutes.clear();
+        reinitialiserMesures();
+    }
+
+    /**
+     * Remettre à zéro les compteurs et les latences relevées (documents conservés)
+     */
+    public void reinitialiserMesures() {
+        operations.set(0);
+        echecsInjectes.set(0);
+        latencesParDocument.clear();
+    }
+
+    public int taille(String collection) {
+        NavigableMap<String, Map<String, Object>> documents = collections.get(collection);
+        return documents != null ? documents.size() : 0;
+    }
+
+    public long getOperations() {
+        return operations.get();
+    }
+
+    public long getEchecsInjectes() {
+        return echecsInjectes.get();
+    }
+
+    /**
+     * Latences relevées en nanosecondes, une valeur par document écrit ou lu
+     */
+    public List<Long> getLatencesParDocument() {
+        return new ArrayList<>(latencesParDocument);
+    }
+
+    @Override
+    public CompletableFuture<Void> set(String collection, String documentId, Map<String, Object> data) {
+        return executer(() -> {
+            ecrire(collection, documentId, new HashMap<>(data));
+            return null;
+        }, r -> 1);
+    }
+
+    @Override
+    public CompletableFuture<Void> update(String collection, String documentId, Map<String, Object> champs) {
+        return executer(() -> {
+            Map<String, Object> existant = collection(collection).get(documentId);
+            if (existant == null) {
+                throw new DocumentAbsentException("Document absent: " + collection + "/" + documentId, null);
+            }
+            Map<String, Object> modifie = new HashMap<>(existant);
+            modifie.putAll(champs);
+            ecrire(collection, documentId, modifie);
+            return null;
+        }, r -> 1);
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(String collection, String documentId) {
+        return executer(() -> {
+            collection(collection).remove(documentId);
+            return null;
+        }, r -> 1);
+    }
+
+    @Override
+    public CompletableFuture<Void> setAll(List<Ecriture> ecritures) {
+        // Un seul tirage pour le lot: tout ou rien, comme un WriteBatch
+        return executer(() -> {
+            // Update d'un document absent: lot entier refusé, comme Firestore (NOT_FOUND)
+            ecritures.stream()
+                    .filter(e -> e.fusion() && !collection(e.collection()).containsKey(e.documentId()))
+                    .findFirst()
+                    .ifPresent(e -> {
+                        throw new DocumentAbsentException(
+                                "Document absent: " + e.collection() + "/" + e.documentId(), null);
+                    });
+            ecritures.forEach(e -> {
+                Map<String, Object> data = new HashMap<>();
+                if (e.fusion()) {
+                    data.putAll(collection(e.collection()).get(e.documentId()));
+                }
+                data.putAll(e.data());
+                ecrire(e.collection(), e.documentId(), data);
+            });
+            return null;
+        }, r -> ecritures.size());
+    }
+
+    @Override
+    public CompletableFuture<List<Document>> list(String collection, String apresId, int limite) {
+        return executer(() -> {
+            NavigableMap<String, Map<String, Object>> documents = collection(collection);
+            NavigableMap<String, Map<String, Object>> suite = apresId != null
+                    ? documents.tailMap(apresId, false)
+                    : documents;
+            return suite.entrySet().stream()
+                    .limit(limite)
+                    .map(e -> new Document(e.getKey(), new HashMap<>(e.getValue())))
+                    .collect(Collectors.toList());
+        }, List::size);
+    }
+
+    @Override
+    public CompletableFuture<List<Document>> querySince(String collection, Instant depuis, Curseur apres, int limite) {
+        return executer(() -> {
+            Document reprise = apres != null
+                    ? new Document(apres.documentId(), Map.of(CHAMP_UPDATED_AT, apres.updatedAt()))
+                    : null;
+            return collection(collection).entrySet().stream()
+                    .map(e -> new Document(e.getKey(), new HashMap<>(e.getValue())))
+                    .filter(d -> correspond(d, depuis))
+                    .filter(d -> reprise == null || ORDRE_UPDATED_AT.compare(d, reprise) > 0)
+                    .sorted(ORDRE_UPDATED_AT)
+                    .limit(limite)
+                    .collect(Collectors.toList());
+        }, List::size);
+    }
+
+    @Override
+    public CompletableFuture<List<Document>> getAll(String collection, List<String> documentIds) {
+        return executer(() -> documentIds.stream()
+                .filter(id -> collection(collection).containsKey(id))
+                .map(id -> new Document(id, new HashMap<>(collection(collection).get(id))))
+                .collect(Collectors.toList()), List::size);
+    }
+
+    @Override
+    public CompletableFuture<List<Document>> findByField(String collection, String champ, Object valeur, int limite) {
+        return executer(() -> collection(collection).entrySet().stream()
+                .filter(e -> Objects.equals(e.getValue().get(champ), valeur))
+                .limit(limite)
+                .map(e -> new Document(e.getKey(), new HashMap<>(e.getValue())))
+                .collect(Collectors.toList()), List::size);
+    }
+
+    @Override
+    public Abonnement listen(String collection, Instant depuis, Consumer<List<Document>> changements,
+                             Consumer<Throwable> erreur) {
+        Ecoute ecoute = new Ecoute(collection, depuis, changements);
+        ecoutes.add(ecoute);
+
+        List<Document> existants = collection(collection).entrySet().stream()
+                .map(e -> new Document(e.getKey(), new HashMap<>(e.getValue())))
+                .filter(d -> depuis == null || correspond(d, depuis))
+                .collect(Collectors.toList());
+        if (!existants.isEmpty()) {
+            executor.schedule(() -> changements.accept(existants), latence(), TimeUnit.MILLISECONDS);
+        }
+        return () -> ecoutes.remove(ecoute);
+    }
+
+    private void ecrire(String collection, String documentId, Map<String, Object> data) {
+        collection(collection).put(documentId, data);
+        Document document = new Document(documentId, new HashMap<>(data));
+        for (Ecoute ecoute : ecoutes) {
+            boolean suivi = ecoute.depuis() == null || correspond(document, ecoute.depuis());
+            if (ecoute.collection().equals(collection) && suivi) {
+                executor.schedule(() -> ecoute.changements().accept(new ArrayList<>(List.of(document))),
+                        latence(), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private static boolean correspond(Document document, Instant depuis) {
+        Instant updatedAt = document.getInstant(CHAMP_UPDATED_AT);
+        return updatedAt != null && !updatedAt.isBefore(depuis);
+    }
+
+    private NavigableMap<String, Map<String, Object>> collection(String nom) {
+        return collections.computeIfAbsent(nom, n -> new ConcurrentSkipListMap<>());
+    }
+
+    /**
+     * Exécuter une opération après la latence simulée, avec éventuellement un échec injecté
+     * @param documents nombre de documents concernés par le résultat (relevé des latences)
+     */
+    private <T> CompletableFuture<T> executer(Supplier<T> operation, ToIntFunction<T> documents) {
+        operations.incrementAndGet();
+        long debut = System.nanoTime();
+        boolean echec;
+        long delai;
+        synchronized (this) {
+            delai = latence();
+            echec = failureRate > 0 && random.nextDouble() < failureRate;
+        }
+
+        CompletableFuture<T> resultat = new CompletableFuture<>();
+        executor.schedule(() -> {
+            if (echec) {
+                echecsInjectes.incrementAndGet();
+                resultat.completeExceptionally(new IOException("Échec injecté (DocumentStore en mémoire)"));
+                return;
+            }
+            try {
+                T valeur = operation.get();
+                long duree = System.nanoTime() - debut;
+                for (int i = documents.applyAsInt(valeur); i > 0; i--) {
+                    latencesParDocument.add(duree);
+                }
+                resultat.complete(valeur);
+            } catch (Exception e) {
+                resultat.completeExceptionally(e);
+            }
+        }, delai, TimeUnit.MILLISECONDS);
+        return resultat;
+    }
+
+    private synchronized long latence() {
+        return latencyJitterMs > 0 ? latencyMs + (long) (random.nextDouble() * latencyJitterMs) : latencyMs;
+    }
+}
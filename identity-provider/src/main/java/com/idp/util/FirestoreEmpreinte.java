@@ -0,0 +1,154 @@
+package com.idp.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.idp.store.DocumentAbsentException;
+import com.idp.store.DocumentStore;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Empreinte du dernier document poussé vers Firestore: id du document et valeur texte de
+ * chaque champ synchronisé, conservée avec l'entité (colonne firestore_snapshot).
+ *
+ * Comparée au document à pousser, elle donne les seuls champs modifiés depuis le dernier
+ * push réussi (update partiel), ou aucun (écriture évitée). Sans empreinte (jamais poussé,
+ * ou modifié depuis par un import Firestore) le document est réécrit en entier.
+ */
+public final class FirestoreEmpreinte {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, String>> TYPE = new TypeReference<>() {
+    };
+    private static final String CLE_DOCUMENT = "__document";
+
+    private final String documentId;
+    private final Map<String, Object> document;
+    private final Map<String, Object> champs;
+    private final boolean complet;
+    private final String empreinte;
+
+    private FirestoreEmpreinte(String documentId, Map<String, Object> document, Map<String, Object> champs,
+                               boolean complet, String empreinte) {
+        this.documentId = documentId;
+        this.document = document;
+        this.champs = champs;
+        this.complet = complet;
+        this.empreinte = empreinte;
+    }
+
+    /**
+     * Calculer l'écriture à faire pour amener le document Firestore à data
+     * @param precedente empreinte du dernier push réussi (null: écriture complète)
+     * @param metadonnees champs qui changent à chaque push (updatedAt, source...): ignorés dans
+     *                    la comparaison, mais joints à toute écriture
+     */
+    public static FirestoreEmpreinte comparer(String documentId, Map<String, Object> data, String precedente,
+                                             Set<String> metadonnees) {
+        Map<String, String> nouvelle = new HashMap<>();
+        data.forEach((champ, valeur) -> {
+            if (!metadonnees.contains(champ)) {
+                nouvelle.put(champ, valeur != null ? String.valueOf(valeur) : null);
+            }
+        });
+        nouvelle.put(CLE_DOCUMENT, documentId);
+        String empreinte = serialiser(nouvelle);
+
+        Map<String, String> ancienne = lire(precedente);
+        if (ancienne == null || !Objects.equals(ancienne.get(CLE_DOCUMENT), documentId)) {
+            return new FirestoreEmpreinte(documentId, data, data, true, empreinte);
+        }
+
+        Map<String, Object> modifies = new HashMap<>();
+        nouvelle.forEach((champ, valeur) -> {
+            if (!CLE_DOCUMENT.equals(champ) && (!ancienne.containsKey(champ)
+                    || !Objects.equals(ancienne.get(champ), valeur))) {
+                modifies.put(champ, data.get(champ));
+            }
+        });
+        // Champ disparu du document (ex: référence retirée): effacé côté Firestore
+        ancienne.keySet().stream()
+                .filter(champ -> !CLE_DOCUMENT.equals(champ) && !nouvelle.containsKey(champ))
+                .forEach(champ -> modifies.put(champ, null));
+
+        if (!modifies.isEmpty()) {
+            metadonnees.stream().filter(data::containsKey).forEach(champ -> modifies.put(champ, data.get(champ)));
+        }
+        return new FirestoreEmpreinte(documentId, data, modifies, false, empreinte);
+    }
+
+    /**
+     * Écrire le document: set complet, ou update des seuls champs modifiés. Si le document a été
+     * supprimé côté Firestore entre-temps, il est réécrit en entier; toute autre erreur (timeout,
+     * droits...) est remontée telle quelle.
+     */
+    public CompletableFuture<Void> ecrire(DocumentStore documentStore, String collection) {
+        if (complet) {
+            return documentStore.set(collection, documentId, document);
+        }
+        return documentStore.update(collection, documentId, champs)
+                .exceptionallyCompose(e -> DocumentAbsentException.estCause(e)
+                        ? documentStore.set(collection, documentId, document)
+                        : CompletableFuture.failedFuture(e));
+    }
+
+    /**
+     * Champs à écrire: tout le document si complet, sinon les seuls champs modifiés
+     */
+    public Map<String, Object> getChamps() {
+        return champs;
+    }
+
+    /**
+     * Document complet, quels que soient les champs modifiés
+     */
+    public Map<String, Object> getDocument() {
+        return document;
+    }
+
+    /**
+     * Document à réécrire en entier (set), plutôt qu'à modifier (update)
+     */
+    public boolean isComplet() {
+        return complet;
+    }
+
+    /**
+     * Rien de synchronisé n'a changé depuis le dernier push: aucune écriture nécessaire
+     */
+    public boolean isInchange() {
+        return !complet && champs.isEmpty();
+    }
+
+    /**
+     * Empreinte à enregistrer une fois l'écriture confirmée
+     */
+    public String getEmpreinte() {
+        return empreinte;
+    }
+
+    private static String serialiser(Map<String, String> valeurs) {
+        try {
+            return MAPPER.writeValueAsString(valeurs);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Empreinte Firestore non sérialisable", e);
+        }
+    }
+
+    private static Map<String, String> lire(String empreinte) {
+        if (empreinte == null || empreinte.isEmpty()) {
+            return null;
+        }
+        try {
+            return MAPPER.readValue(empreinte, TYPE);
+        } catch (JsonProcessingException e) {
+            // Empreinte illisible: traitée comme absente (écriture complète)
+            return null;
+        }
+    }
+}
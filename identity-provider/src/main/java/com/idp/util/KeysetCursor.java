@@ -0,0 +1,63 @@
+package com.idp.util;
+
+import com.idp.exception.BusinessException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Curseur de pagination keyset sur (created_at, id).
+ * Encodé en Base64 URL-safe pour rester opaque côté client.
+ */
+public final class KeysetCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private final LocalDateTime createdAt;
+    private final String id;
+
+    private KeysetCursor(LocalDateTime createdAt, String id) {
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    public static KeysetCursor of(LocalDateTime createdAt, String id) {
+        return new KeysetCursor(createdAt, id);
+    }
+
+    /**
+     * Décoder un curseur reçu du client
+     */
+    public static KeysetCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator <= 0 || separator == raw.length() - 1) {
+                throw new BusinessException("INVALID_CURSOR", "Curseur de pagination invalide");
+            }
+            return new KeysetCursor(
+                    LocalDateTime.parse(raw.substring(0, separator)),
+                    raw.substring(separator + 1));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new BusinessException("INVALID_CURSOR", "Curseur de pagination invalide");
+        }
+    }
+
+    /**
+     * Encoder le curseur pour le client
+     */
+    public String encode() {
+        String raw = createdAt + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+}
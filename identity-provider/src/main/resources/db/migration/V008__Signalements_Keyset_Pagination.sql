@@ -0,0 +1,13 @@
+-- Migration: Index pour la pagination par curseur des signalements
+-- Date: 2026-10-17
+-- Description: Tri (created_at DESC, id DESC) servi directement par l'index,
+--              y compris pour les listes filtrées par statut ou par utilisateur
+
+CREATE INDEX IF NOT EXISTS idx_signalements_created_at_id
+    ON signalements(created_at DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_signalements_statut_created_at_id
+    ON signalements(statut_id, created_at DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_signalements_user_created_at_id
+    ON signalements(user_id, created_at DESC, id DESC);
@@ -0,0 +1,23 @@
+-- Migration: Agrégat matérialisé des statistiques de signalements
+-- Date: 2026-10-17
+-- Description: Une ligne par statut, maintenue dans la même transaction que les écritures
+--              sur signalements (upsert par delta). Le récapitulatif ne parcourt plus la table.
+--              Budget total = prix_m2_global × total_niveau_surface
+
+CREATE TABLE IF NOT EXISTS signalement_stats (
+    statut_id VARCHAR(36) PRIMARY KEY,
+    nb_signalements BIGINT NOT NULL DEFAULT 0,
+    total_surface_m2 NUMERIC(20, 2) NOT NULL DEFAULT 0,
+    total_niveau_surface NUMERIC(22, 2) NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Initialisation depuis les données existantes (équivalent de POST /api/signalements/stats/rebuild)
+INSERT INTO signalement_stats (statut_id, nb_signalements, total_surface_m2, total_niveau_surface, updated_at)
+SELECT statut_id, COUNT(*), COALESCE(SUM(surface_m2), 0), COALESCE(SUM(niveau * surface_m2), 0), NOW()
+FROM signalements
+GROUP BY statut_id
+ON CONFLICT (statut_id) DO NOTHING;
+
+COMMENT ON TABLE signalement_stats IS 'Statistiques agrégées des signalements par statut';
+COMMENT ON COLUMN signalement_stats.total_niveau_surface IS 'Somme de niveau × surface_m2 pour le calcul du budget total';
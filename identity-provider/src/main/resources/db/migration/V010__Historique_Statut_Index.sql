@@ -0,0 +1,7 @@
+-- Migration: Index pour les délais moyens de traitement
+-- Date: 2026-10-17
+-- Description: Le calcul des délais agrège l'historique par signalement en une requête;
+--              l'index couvre aussi le chargement groupé des jalons (premier passage par statut)
+
+CREATE INDEX IF NOT EXISTS idx_historique_statut_signalement_jalons
+    ON historique_statut_signalement(signalement_id, statut_id, date);
@@ -0,0 +1,24 @@
+-- Migration: Colonne géométrique PostGIS pour les signalements
+-- Date: 2026-10-17
+-- Description: geom (Point, SRID 4326) dérivée de latitude/longitude, maintenue par l'entité
+--              (@PrePersist/@PreUpdate). Les requêtes de zone utilisent geom && ST_MakeEnvelope(...)
+--              et sont servies par l'index GiST.
+
+CREATE EXTENSION IF NOT EXISTS postgis;
+
+ALTER TABLE signalements
+ADD COLUMN IF NOT EXISTS geom geometry(Point, 4326);
+
+-- Initialiser geom pour les signalements existants (x = longitude, y = latitude)
+UPDATE signalements
+SET geom = ST_SetSRID(ST_MakePoint(longitude, latitude), 4326)
+WHERE geom IS NULL
+AND latitude IS NOT NULL
+AND longitude IS NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_signalements_geom
+    ON signalements USING GIST (geom);
+
+ANALYZE signalements;
+
+COMMENT ON COLUMN signalements.geom IS 'Position WGS84 (SRID 4326) dérivée de latitude/longitude, indexée en GiST';
@@ -0,0 +1,30 @@
+-- Migration: geom recalculée par trigger en complément de l'entité JPA
+-- Date: 2026-10-17
+-- Description: L'entité Signalement tient geom à jour (@PrePersist/@PreUpdate, geo.backend=postgis).
+--              Ce trigger couvre aussi les écritures hors JPA (SQL manuel, reprises de données):
+--              geom est recalculée depuis latitude/longitude à chaque INSERT/UPDATE.
+--              Ne pas appliquer sur une base sans PostGIS (geo.backend=memory).
+
+CREATE OR REPLACE FUNCTION signalements_sync_geom() RETURNS trigger AS $$
+BEGIN
+    IF NEW.latitude IS NULL OR NEW.longitude IS NULL THEN
+        NEW.geom := NULL;
+    ELSE
+        NEW.geom := ST_SetSRID(ST_MakePoint(NEW.longitude, NEW.latitude), 4326);
+    END IF;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_signalements_sync_geom ON signalements;
+
+CREATE TRIGGER trg_signalements_sync_geom
+    BEFORE INSERT OR UPDATE OF latitude, longitude ON signalements
+    FOR EACH ROW EXECUTE FUNCTION signalements_sync_geom();
+
+-- Rattraper les lignes écrites sans geom
+UPDATE signalements
+SET geom = ST_SetSRID(ST_MakePoint(longitude, latitude), 4326)
+WHERE geom IS NULL
+AND latitude IS NOT NULL
+AND longitude IS NOT NULL;
@@ -0,0 +1,8 @@
+-- Migration: Index KNN pour la recherche de proximité
+-- Date: 2026-10-17
+-- Description: /api/signalements/geo/nearby trie par geom::geography <-> point (distance sur la sphère).
+--              Un index GiST sur l'expression geography permet au planificateur de parcourir
+--              les voisins par ordre de distance et de filtrer le rayon (ST_DWithin) sans scan.
+
+CREATE INDEX IF NOT EXISTS idx_signalements_geog
+ON signalements USING GIST ((geom::geography));
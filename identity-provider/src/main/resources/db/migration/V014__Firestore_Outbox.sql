@@ -0,0 +1,28 @@
+-- Migration: Outbox des écritures Firestore
+-- Date: 2026-10-17
+-- Description: Les écritures vers Firestore (signalements, notifications, utilisateurs) sont
+--              enregistrées dans la transaction PostgreSQL puis envoyées en arrière-plan
+--              par FirestoreOutboxDispatcher. Table créée par Hibernate (ddl-auto=update),
+--              script fourni pour les déploiements gérés à la main.
+
+CREATE TABLE IF NOT EXISTS firestore_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    type_entite VARCHAR(30) NOT NULL,
+    entite_id VARCHAR(255) NOT NULL,
+    operation VARCHAR(10) NOT NULL,
+    collection VARCHAR(100),
+    document_id VARCHAR(255),
+    tentatives INTEGER NOT NULL DEFAULT 0,
+    prochaine_tentative TIMESTAMP NOT NULL,
+    reserve_jusqu_a TIMESTAMP,
+    derniere_erreur VARCHAR(1000),
+    created_at TIMESTAMP
+);
+
+-- Sélection des entrées prêtes, dans l'ordre d'insertion
+CREATE INDEX IF NOT EXISTS idx_firestore_outbox_prochaine_tentative
+ON firestore_outbox (prochaine_tentative, id);
+
+-- Regroupement des écritures en attente pour une même entité
+CREATE INDEX IF NOT EXISTS idx_firestore_outbox_entite
+ON firestore_outbox (type_entite, entite_id);
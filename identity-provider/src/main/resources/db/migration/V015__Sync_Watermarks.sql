@@ -0,0 +1,14 @@
+-- Migration: Points de reprise du pull Firestore
+-- Date: 2026-10-17
+-- Description: Le pull Firestore → PostgreSQL (signalements, utilisateurs) ne relit plus
+--              toute la collection: il reprend après le dernier document traité, dans
+--              l'ordre (updatedAt, id du document). Table créée par Hibernate
+--              (ddl-auto=update), script fourni pour les déploiements gérés à la main.
+--              Supprimer la ligne d'une collection force un parcours complet.
+
+CREATE TABLE IF NOT EXISTS sync_watermarks (
+    collection VARCHAR(100) PRIMARY KEY,
+    updated_at_max TIMESTAMP WITH TIME ZONE NOT NULL,
+    document_id VARCHAR(255) NOT NULL,
+    last_run_at TIMESTAMP
+);
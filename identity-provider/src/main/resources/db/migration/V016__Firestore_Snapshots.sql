@@ -0,0 +1,10 @@
+-- Migration: Empreinte du dernier push Firestore
+-- Date: 2026-10-17
+-- Description: Les valeurs des champs synchronisés au dernier push réussi sont conservées
+--              (JSON). Le push suivant n'envoie que les champs modifiés (update partiel)
+--              et n'écrit rien si aucun n'a changé. NULL: prochain push en document complet.
+--              Colonnes créées par Hibernate (ddl-auto=update), script fourni pour les
+--              déploiements gérés à la main.
+
+ALTER TABLE users ADD COLUMN IF NOT EXISTS firestore_snapshot TEXT;
+ALTER TABLE signalements ADD COLUMN IF NOT EXISTS firestore_snapshot TEXT;
@@ -0,0 +1,16 @@
+-- Migration: Documents Firestore à relire au prochain pull
+-- Date: 2026-10-17
+-- Description: Un document lu par le pull incrémental mais pas encore applicable (signalement
+--              dont l'utilisateur n'est pas encore dans PostgreSQL) est noté ici: le point de
+--              reprise l'a dépassé, il est relu par son id à chaque passage jusqu'à ce qu'il
+--              s'applique. Table créée par Hibernate (ddl-auto=update), script fourni pour les
+--              déploiements gérés à la main.
+
+CREATE TABLE IF NOT EXISTS sync_reessais (
+    id BIGSERIAL PRIMARY KEY,
+    collection VARCHAR(100) NOT NULL,
+    document_id VARCHAR(255) NOT NULL,
+    tentatives INTEGER NOT NULL DEFAULT 0,
+    created_at TIMESTAMP,
+    CONSTRAINT uk_sync_reessais_document UNIQUE (collection, document_id)
+);
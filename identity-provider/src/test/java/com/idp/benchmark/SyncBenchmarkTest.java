@@ -0,0 +1,401 @@
+package com.idp.benchmark;
+
+import com.idp.entity.LoginAttempt;
+import com.idp.entity.Role;
+import com.idp.entity.Signalement;
+import com.idp.entity.StatutAvancementSignalement;
+import com.idp.entity.User;
+import com.idp.entity.UserSession;
+import com.idp.repository.FirestoreOutboxRepository;
+import com.idp.repository.LoginAttemptRepository;
+import com.idp.repository.RoleRepository;
+import com.idp.repository.SignalementRepository;
+import com.idp.repository.StatutAvancementSignalementRepository;
+import com.idp.repository.SyncWatermarkRepository;
+import com.idp.repository.UserRepository;
+import com.idp.repository.UserSessionRepository;
+import com.idp.service.SignalementService;
+import com.idp.service.SyncService;
+import com.idp.service.UserService;
+import com.idp.store.DocumentStore;
+import com.idp.store.InMemoryDocumentStore;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestConstructor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+
+/**
+ * Banc de mesure des chemins de synchronisation (profil "benchmark", sync.store=memory).
+ * Hors de la suite de tests habituelle, lancé à la demande contre une base dédiée:
+ * mvn test -Dtest=SyncBenchmarkTest -Dbenchmark=true
+ *
+ * N utilisateurs, sessions, tentatives de connexion et signalements PENDING
+ * sont créés dans PostgreSQL, puis poussés vers le DocumentStore en mémoire (latence
+ * injectée); N documents utilisateurs et signalements y sont ensuite déposés puis tirés
+ * (pull complet, puis pull incrémental après modification de 10% d'entre eux).
+ *
+ * Pour chaque scénario: documents par seconde, latence par document (p50/p99, relevée par
+ * InMemoryDocumentStore) et nombre de requêtes SQL préparées (statistiques Hibernate).
+ * Le rapport est journalisé et, si benchmark.report-file est renseigné, ajouté en CSV pour
+ * comparer les exécutions.
+ */
+@SpringBootTest
+@ActiveProfiles("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@TestConstructor(autowireMode = TestConstructor.AutowireMode.ALL)
+@RequiredArgsConstructor
+@Slf4j
+class SyncBenchmarkTest {
+
+    private final InMemoryDocumentStore documentStore;
+    private final UserService userService;
+    private final SignalementService signalementService;
+    private final SyncService syncService;
+    private final UserRepository userRepository;
+    private final UserSessionRepository sessionRepository;
+    private final LoginAttemptRepository loginAttemptRepository;
+    private final SignalementRepository signalementRepository;
+    private final RoleRepository roleRepository;
+    private final StatutAvancementSignalementRepository statutRepository;
+    private final SyncWatermarkRepository watermarkRepository;
+    private final FirestoreOutboxRepository outboxRepository;
+    private final EntityManagerFactory entityManagerFactory;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${benchmark.documents:1000}")
+    private int documents;
+
+    @Value("${benchmark.seed-batch-size:500}")
+    private int seedBatchSize;
+
+    @Value("${benchmark.latency-ms:20}")
+    private long latencyMs;
+
+    @Value("${benchmark.latency-jitter-ms:10}")
+    private long latencyJitterMs;
+
+    @Value("${benchmark.failure-rate:0}")
+    private double failureRate;
+
+    @Value("${benchmark.seed:42}")
+    private long seed;
+
+    @Value("${benchmark.report-file:}")
+    private String reportFile;
+
+    @Value("${benchmark.outbox-timeout-seconds:600}")
+    private long outboxTimeoutSeconds;
+
+    /**
+     * Résultat d'un scénario
+     */
+    public record Resultat(String scenario, int documents, long dureeMs, double documentsParSeconde,
+                           double p50Ms, double p99Ms, long requetesSql, long operationsStore,
+                           long echecsInjectes) {
+    }
+
+    @Test
+    void mesurerLaSynchronisation() {
+        log.info("🏁 Benchmark sync: {} documents par scénario, latence {} ms ± {} ms, taux d'échec {}",
+                documents, latencyMs, latencyJitterMs, failureRate);
+
+        List<Resultat> resultats = new ArrayList<>();
+        syncService.invalidateOnlineCache();
+        if (!syncService.isOnline()) {
+            throw new IllegalStateException("DocumentStore indisponible (circuit ouvert)");
+        }
+
+        List<User> users = seederPostgres();
+
+        // PUSH PostgreSQL → DocumentStore
+        resultats.add(mesurer("push-users", () -> {
+            userService.synchronizeAllPending();
+            return documentStore.taille("users");
+        }));
+        resultats.add(mesurer("push-signalements", () -> {
+            signalementService.synchronizeAllPending();
+            return documentStore.taille(SignalementService.COLLECTION_NAME);
+        }));
+        // Sessions et tentatives: planifiées dans l'outbox, mesurées jusqu'à ce qu'elle soit vide
+        resultats.add(mesurer("push-sessions", () -> {
+            List<UserSession> sessions = sessionRepository.findBySyncStatus("PENDING");
+            sessions.forEach(syncService::syncSessionToFirestore);
+            attendreOutboxVide();
+            return sessions.size();
+        }));
+        resultats.add(mesurer("push-login-attempts", () -> {
+            List<LoginAttempt> attempts = loginAttemptRepository.findBySyncStatus("PENDING");
+            attempts.forEach(syncService::syncLoginAttemptToFirestore);
+            attendreOutboxVide();
+            return attempts.size();
+        }));
+
+        // PULL DocumentStore → PostgreSQL: un store neuf, sans les documents poussés ci-dessus
+        documentStore.vider();
+        watermarkRepository.deleteAll();
+        List<String> usersFirestore = seederDocuments("users", this::documentUser);
+        String statutId = statutRepository.findByStatut("NOUVEAU")
+                .map(StatutAvancementSignalement::getId)
+                .orElseThrow(() -> new IllegalStateException("Statut NOUVEAU introuvable"));
+        List<String> signalementsFirestore = seederDocuments(SignalementService.COLLECTION_NAME,
+                i -> documentSignalement(i, users.get(i % users.size()).getId(), statutId));
+
+        resultats.add(mesurer("pull-users-complet", syncService::pullAllUsersFromFirestore));
+        resultats.add(mesurer("pull-signalements-complet",
+                () -> signalementService.syncFromFirebase().size()));
+
+        toucherDixPourcent("users", usersFirestore);
+        toucherDixPourcent(SignalementService.COLLECTION_NAME, signalementsFirestore);
+        resultats.add(mesurer("pull-users-incremental", syncService::pullAllUsersFromFirestore));
+        resultats.add(mesurer("pull-signalements-incremental",
+                () -> signalementService.syncFromFirebase().size()));
+
+        rapporter(resultats);
+    }
+
+    /**
+     * Exécuter un scénario en relevant durée, latences par document et requêtes SQL
+     * @param scenario renvoie le nombre de documents traités
+     */
+    private Resultat mesurer(String nom, IntSupplier scenario) {
+        documentStore.configurer(latencyMs, latencyJitterMs, failureRate, seed);
+        documentStore.reinitialiserMesures();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        log.info("▶️ Scénario {}", nom);
+        long debut = System.nanoTime();
+        int traites = scenario.getAsInt();
+        long dureeNanos = System.nanoTime() - debut;
+
+        List<Long> latences = documentStore.getLatencesParDocument();
+        Collections.sort(latences);
+        double secondes = dureeNanos / 1_000_000_000.0;
+        Resultat resultat = new Resultat(nom, traites, dureeNanos / 1_000_000,
+                secondes > 0 ? traites / secondes : 0,
+                percentileMs(latences, 0.50), percentileMs(latences, 0.99),
+                statistics.getPrepareStatementCount(),
+                documentStore.getOperations(), documentStore.getEchecsInjectes());
+        log.info("⏱️ {}: {} documents en {} ms", nom, traites, resultat.dureeMs());
+        return resultat;
+    }
+
+    /**
+     * Attendre que le dispatcher de l'outbox ait tout envoyé
+     */
+    private void attendreOutboxVide() {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(outboxTimeoutSeconds);
+        while (outboxRepository.count() > 0) {
+            if (System.nanoTime() > limite) {
+                throw new IllegalStateException("Outbox Firestore non vidée après " + outboxTimeoutSeconds + " s");
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Attente de l'outbox interrompue", e);
+            }
+        }
+    }
+
+    private static double percentileMs(List<Long> triees, double percentile) {
+        if (triees.isEmpty()) {
+            return 0;
+        }
+        int rang = (int) Math.ceil(percentile * triees.size()) - 1;
+        return triees.get(Math.max(0, rang)) / 1_000_000.0;
+    }
+
+    /**
+     * Créer N éléments PENDING de chaque type dans PostgreSQL (par lots, sans latence de store)
+     * @return les utilisateurs créés
+     */
+    private List<User> seederPostgres() {
+        log.info("🌱 Création de {} utilisateurs, sessions, tentatives et signalements PENDING...", documents);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        Role role = roleRepository.findByNom("USER")
+                .orElseThrow(() -> new IllegalStateException("Rôle USER introuvable"));
+        StatutAvancementSignalement nouveau = statutRepository.findByStatut("NOUVEAU")
+                .orElseThrow(() -> new IllegalStateException("Statut NOUVEAU introuvable"));
+
+        List<User> users = new ArrayList<>();
+        for (int debut = 0; debut < documents; debut += seedBatchSize) {
+            int fin = Math.min(documents, debut + seedBatchSize);
+            int premier = debut;
+            users.addAll(transactionTemplate.execute(status -> {
+                List<User> lot = new ArrayList<>();
+                for (int i = premier; i < fin; i++) {
+                    User user = new User();
+                    user.setId(UUID.randomUUID().toString());
+                    user.setEmail("bench-" + i + "@benchmark.local");
+                    // Pas d'encodage BCrypt ici: seul le coût de la synchronisation est mesuré
+                    user.setPasswordHash("benchmark");
+                    user.setFullName("Utilisateur " + i);
+                    user.setRole(role);
+                    // Déjà connu de Firebase Auth: le push n'appelle que le DocumentStore
+                    user.setFirebaseUid("bench-uid-" + i);
+                    user.setSyncStatus("PENDING");
+                    lot.add(user);
+                }
+                return userRepository.saveAll(lot);
+            }));
+        }
+
+        for (int debut = 0; debut < documents; debut += seedBatchSize) {
+            int fin = Math.min(documents, debut + seedBatchSize);
+            int premier = debut;
+            transactionTemplate.executeWithoutResult(status -> {
+                List<UserSession> sessions = new ArrayList<>();
+                List<LoginAttempt> attempts = new ArrayList<>();
+                List<Signalement> signalements = new ArrayList<>();
+                for (int i = premier; i < fin; i++) {
+                    User user = users.get(i);
+
+                    UserSession session = new UserSession();
+                    session.setId(UUID.randomUUID().toString());
+                    session.setUser(user);
+                    session.setSessionToken("bench-token-" + i);
+                    session.setExpiresAt(LocalDateTime.now().plusDays(1));
+                    sessions.add(session);
+
+                    LoginAttempt attempt = new LoginAttempt();
+                    attempt.setId(UUID.randomUUID().toString());
+                    attempt.setUser(user);
+                    attempt.setEmail(user.getEmail());
+                    attempt.setSuccess(i % 4 != 0);
+                    attempts.add(attempt);
+
+                    Signalement signalement = Signalement.builder()
+                            .titre("Signalement benchmark " + i)
+                            .statut(nouveau)
+                            .latitude(-18.95 + (i % 100) * 0.001)
+                            .longitude(47.50 + (i / 100 % 100) * 0.001)
+                            .signaleur(user)
+                            .isSynchronized(false)
+                            .build();
+                    signalements.add(signalement);
+                }
+                sessionRepository.saveAll(sessions);
+                loginAttemptRepository.saveAll(attempts);
+                signalementRepository.saveAll(signalements);
+            });
+        }
+        log.info("✅ Données PENDING créées");
+        return users;
+    }
+
+    /**
+     * Déposer N documents dans une collection du store, modifiés il y a une heure
+     * (hors de la fenêtre de recouvrement du pull incrémental)
+     * @return les ids des documents
+     */
+    private List<String> seederDocuments(String collection, IntFunction<Map<String, Object>> donnees) {
+        documentStore.configurer(0, 0, 0, seed);
+        Instant modifieA = Instant.now().minus(Duration.ofHours(1));
+        List<DocumentStore.Ecriture> ecritures = new ArrayList<>();
+        for (int i = 0; i < documents; i++) {
+            Map<String, Object> data = donnees.apply(i);
+            data.put(DocumentStore.CHAMP_UPDATED_AT, modifieA);
+            ecritures.add(new DocumentStore.Ecriture(collection, collection + "-bench-" + i, data));
+        }
+        documentStore.setAll(ecritures).join();
+        return ecritures.stream().map(DocumentStore.Ecriture::documentId).toList();
+    }
+
+    private Map<String, Object> documentUser(int i) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("email", "mobile-" + i + "@benchmark.local");
+        data.put("fullName", "Mobile " + i);
+        data.put("phone", "034" + String.format("%07d", i));
+        data.put("isActive", true);
+        data.put("isLocked", false);
+        return data;
+    }
+
+    private Map<String, Object> documentSignalement(int i, String userId, String statutId) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("titre", "Signalement mobile " + i);
+        data.put("description", "Créé par le benchmark");
+        data.put("latitude", -18.90 + (i % 100) * 0.001);
+        data.put("longitude", 47.52 + (i / 100 % 100) * 0.001);
+        data.put("surfaceM2", 10.0 + i % 50);
+        data.put("userId", userId);
+        data.put("statutId", statutId);
+        return data;
+    }
+
+    /**
+     * Marquer modifiés maintenant 10% des documents d'une collection (un sur dix)
+     */
+    private void toucherDixPourcent(String collection, List<String> ids) {
+        documentStore.configurer(0, 0, 0, seed);
+        Instant maintenant = Instant.now();
+        for (int i = 0; i < ids.size(); i += 10) {
+            documentStore.update(collection, ids.get(i), Map.of(DocumentStore.CHAMP_UPDATED_AT, maintenant)).join();
+        }
+    }
+
+    private void rapporter(List<Resultat> resultats) {
+        StringBuilder rapport = new StringBuilder("\n📊 Benchmark sync (")
+                .append(documents).append(" documents, latence ")
+                .append(latencyMs).append(" ms ± ").append(latencyJitterMs).append(" ms)\n");
+        rapport.append(String.format(Locale.ROOT, "%-30s %8s %10s %10s %10s %10s %10s %8s%n",
+                "scénario", "docs", "durée ms", "docs/s", "p50 ms", "p99 ms", "req. SQL", "échecs"));
+        for (Resultat r : resultats) {
+            rapport.append(String.format(Locale.ROOT, "%-30s %8d %10d %10.1f %10.1f %10.1f %10d %8d%n",
+                    r.scenario(), r.documents(), r.dureeMs(), r.documentsParSeconde(),
+                    r.p50Ms(), r.p99Ms(), r.requetesSql(), r.echecsInjectes()));
+        }
+        log.info(rapport.toString());
+
+        if (reportFile == null || reportFile.isBlank()) {
+            return;
+        }
+        try {
+            Path chemin = Path.of(reportFile);
+            List<String> lignes = new ArrayList<>();
+            if (!Files.exists(chemin)) {
+                lignes.add("date,scenario,documents,latence_ms,duree_ms,docs_par_seconde,p50_ms,p99_ms,"
+                        + "requetes_sql,operations_store,echecs_injectes");
+            }
+            String date = LocalDateTime.now().toString();
+            for (Resultat r : resultats) {
+                lignes.add(String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%.1f,%.2f,%.2f,%d,%d,%d",
+                        date, r.scenario(), r.documents(), latencyMs, r.dureeMs(), r.documentsParSeconde(),
+                        r.p50Ms(), r.p99Ms(), r.requetesSql(), r.operationsStore(), r.echecsInjectes()));
+            }
+            Files.write(chemin, lignes, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            log.info("📝 Rapport ajouté à {}", chemin.toAbsolutePath());
+        } catch (IOException e) {
+            log.error("❌ Écriture du rapport impossible: {}", e.getMessage());
+        }
+    }
+}
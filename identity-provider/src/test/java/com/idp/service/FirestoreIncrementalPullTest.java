@@ -0,0 +1,244 @@
+package com.idp.service;
+
+import com.idp.entity.SyncReessai;
+import com.idp.entity.SyncWatermark;
+import com.idp.repository.SyncReessaiRepository;
+import com.idp.repository.SyncWatermarkRepository;
+import com.idp.store.DocumentStore;
+import com.idp.store.DocumentStore.Document;
+import com.idp.store.InMemoryDocumentStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pull incrémental contre InMemoryDocumentStore; points de reprise et documents à relire
+ * gardés en mémoire à la place des repositories JPA.
+ */
+class FirestoreIncrementalPullTest {
+
+    private static final String COLLECTION = "signalements";
+    private static final Instant REPRISE = Instant.now().minus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.SECONDS);
+
+    private final InMemoryDocumentStore documentStore = new InMemoryDocumentStore(0, 0, 0, 42);
+    private final Map<String, SyncWatermark> watermarks = new HashMap<>();
+    private final List<SyncReessai> reessais = new ArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    // Traitement des pages: applique les signalements dont l'utilisateur est connu
+    private final Set<String> utilisateursConnus = new HashSet<>();
+    private final List<String> appliques = new ArrayList<>();
+    private final Function<List<Document>, Collection<String>> traiter = documents -> {
+        List<String> aReessayer = new ArrayList<>();
+        for (Document document : documents) {
+            if (utilisateursConnus.contains(document.getString("userId"))) {
+                appliques.add(document.id());
+            } else {
+                aReessayer.add(document.id());
+            }
+        }
+        return aReessayer;
+    };
+
+    private FirestoreIncrementalPull pull;
+
+    @BeforeEach
+    void preparer() {
+        SyncWatermarkRepository watermarkRepository = mock(SyncWatermarkRepository.class);
+        when(watermarkRepository.findById(anyString()))
+                .thenAnswer(i -> Optional.ofNullable(watermarks.get(i.<String>getArgument(0))));
+        when(watermarkRepository.save(any(SyncWatermark.class))).thenAnswer(i -> {
+            SyncWatermark watermark = i.getArgument(0);
+            watermarks.put(watermark.getCollection(), watermark);
+            return watermark;
+        });
+
+        SyncReessaiRepository reessaiRepository = mock(SyncReessaiRepository.class);
+        doAnswer(i -> {
+            String collection = i.getArgument(0);
+            String documentId = i.getArgument(1);
+            if (reessais.stream().noneMatch(r -> r.getCollection().equals(collection)
+                    && r.getDocumentId().equals(documentId))) {
+                reessais.add(SyncReessai.builder()
+                        .id(sequence.incrementAndGet())
+                        .collection(collection)
+                        .documentId(documentId)
+                        .createdAt(LocalDateTime.now().minusMinutes(1))
+                        .build());
+            }
+            return null;
+        }).when(reessaiRepository).ajouterSiAbsent(anyString(), anyString());
+        when(reessaiRepository.findByCollectionAndIdGreaterThanOrderById(anyString(), anyLong(), any(Pageable.class)))
+                .thenAnswer(i -> reessais.stream()
+                        .filter(r -> r.getCollection().equals(i.getArgument(0)))
+                        .filter(r -> r.getId() > i.<Long>getArgument(1))
+                        .sorted(Comparator.comparing(SyncReessai::getId))
+                        .limit(i.<Pageable>getArgument(2).getPageSize())
+                        .toList());
+        when(reessaiRepository.findById(anyLong()))
+                .thenAnswer(i -> reessais.stream().filter(r -> r.getId().equals(i.getArgument(0))).findFirst());
+        doAnswer(i -> reessais.removeIf(r -> r.getId().equals(i.getArgument(0))))
+                .when(reessaiRepository).deleteById(anyLong());
+
+        // Transactions sans effet: les données de test sont en mémoire
+        pull = new FirestoreIncrementalPull(documentStore, watermarkRepository, reessaiRepository,
+                mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(pull, "pageSize", 2);
+        ReflectionTestUtils.setField(pull, "overlapSeconds", 0L);
+        ReflectionTestUtils.setField(pull, "timeoutSeconds", 5L);
+        ReflectionTestUtils.setField(pull, "retryMaxHours", 72L);
+
+        utilisateursConnus.add("u1");
+    }
+
+    @AfterEach
+    void arreter() {
+        documentStore.arreter();
+    }
+
+    @Test
+    void premierPassageParcourtToutEtPoseLePointDeReprise() throws Exception {
+        for (int i = 1; i <= 5; i++) {
+            deposer("s" + i, REPRISE.plusSeconds(i), "u1");
+        }
+        Instant avant = Instant.now();
+
+        int lus = pull.tirer(COLLECTION, traiter);
+
+        assertThat(lus).isEqualTo(5);
+        assertThat(appliques).containsExactly("s1", "s2", "s3", "s4", "s5");
+        SyncWatermark watermark = watermarks.get(COLLECTION);
+        assertThat(watermark.getDocumentId()).isEmpty();
+        assertThat(watermark.getUpdatedAtMax()).isAfterOrEqualTo(avant);
+    }
+
+    @Test
+    void passageIncrementalNeLitQueLesDocumentsModifies() throws Exception {
+        poserPointDeReprise(REPRISE, "");
+        deposer("a", REPRISE.minusSeconds(60), "u1");
+        deposer("b", REPRISE.plusSeconds(10), "u1");
+        deposer("d", REPRISE.plusSeconds(20), "u1");
+        deposer("c", REPRISE.plusSeconds(20), "u1");
+
+        int lus = pull.tirer(COLLECTION, traiter);
+
+        // Même updatedAt: départagés par id, à cheval sur deux pages sans perte ni doublon
+        assertThat(lus).isEqualTo(3);
+        assertThat(appliques).containsExactly("b", "c", "d");
+        SyncWatermark watermark = watermarks.get(COLLECTION);
+        assertThat(watermark.getUpdatedAtMax()).isEqualTo(REPRISE.plusSeconds(20));
+        assertThat(watermark.getDocumentId()).isEqualTo("d");
+
+        assertThat(pull.tirer(COLLECTION, traiter)).isZero();
+    }
+
+    @Test
+    void documentNonApplicableReluAuPassageSuivant() throws Exception {
+        poserPointDeReprise(REPRISE, "");
+        deposer("s1", REPRISE.plusSeconds(1), "u1");
+        deposer("s2", REPRISE.plusSeconds(2), "u2");
+
+        pull.tirer(COLLECTION, traiter);
+
+        // Le point de reprise a dépassé s2, mais il est noté pour être relu
+        assertThat(appliques).containsExactly("s1");
+        assertThat(watermarks.get(COLLECTION).getDocumentId()).isEqualTo("s2");
+        assertThat(reessais).extracting(SyncReessai::getDocumentId).containsExactly("s2");
+
+        utilisateursConnus.add("u2");
+        pull.tirer(COLLECTION, traiter);
+
+        assertThat(appliques).containsExactly("s1", "s2");
+        assertThat(reessais).isEmpty();
+    }
+
+    @Test
+    void documentToujoursNonApplicableGardeEtCompte() throws Exception {
+        deposer("s2", REPRISE, "u2");
+        pull.noterReessais(COLLECTION, List.of("s2"));
+
+        assertThat(pull.reessayer(COLLECTION, traiter)).isZero();
+
+        assertThat(reessais).singleElement()
+                .extracting(SyncReessai::getTentatives)
+                .isEqualTo(1);
+    }
+
+    @Test
+    void documentSupprimeDeFirestoreOublie() throws Exception {
+        pull.noterReessais(COLLECTION, List.of("disparu"));
+
+        assertThat(pull.reessayer(COLLECTION, traiter)).isZero();
+
+        assertThat(reessais).isEmpty();
+    }
+
+    @Test
+    void documentAbandonneApresLeDelai() throws Exception {
+        ReflectionTestUtils.setField(pull, "retryMaxHours", 0L);
+        deposer("s2", REPRISE, "u2");
+        pull.noterReessais(COLLECTION, List.of("s2"));
+
+        pull.reessayer(COLLECTION, traiter);
+
+        assertThat(reessais).isEmpty();
+        assertThat(appliques).isEmpty();
+    }
+
+    @Test
+    void relectureParPagesDeLaTailleDuPull() throws Exception {
+        utilisateursConnus.add("u2");
+        for (int i = 1; i <= 5; i++) {
+            deposer("s" + i, REPRISE, "u2");
+        }
+        pull.noterReessais(COLLECTION, List.of("s1", "s2", "s3", "s4", "s5"));
+
+        assertThat(pull.reessayer(COLLECTION, traiter)).isEqualTo(5);
+
+        assertThat(appliques).containsExactlyInAnyOrder("s1", "s2", "s3", "s4", "s5");
+        assertThat(reessais).isEmpty();
+    }
+
+    private void deposer(String documentId, Instant updatedAt, String userId) throws Exception {
+        Map<String, Object> data = new HashMap<>();
+        data.put("titre", "Signalement " + documentId);
+        data.put("userId", userId);
+        data.put(DocumentStore.CHAMP_UPDATED_AT, updatedAt);
+        documentStore.set(COLLECTION, documentId, data).get(5, TimeUnit.SECONDS);
+    }
+
+    private void poserPointDeReprise(Instant updatedAtMax, String documentId) {
+        watermarks.put(COLLECTION, SyncWatermark.builder()
+                .collection(COLLECTION)
+                .updatedAtMax(updatedAtMax)
+                .documentId(documentId)
+                .build());
+    }
+}
@@ -0,0 +1,163 @@
+package com.idp.util;
+
+import com.idp.store.DocumentStore;
+import com.idp.store.InMemoryDocumentStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FirestoreEmpreinteTest {
+
+    private static final Set<String> METADONNEES = Set.of("updatedAt", "source");
+
+    private final InMemoryDocumentStore documentStore = new InMemoryDocumentStore(0, 0, 0, 42);
+
+    @AfterEach
+    void arreter() {
+        documentStore.arreter();
+    }
+
+    @Test
+    void sansEmpreinteLeDocumentEstEcritEnEntier() {
+        Map<String, Object> data = document("Nid de poule", "NOUVEAU", "t1");
+
+        FirestoreEmpreinte comparaison = FirestoreEmpreinte.comparer("sig-1", data, null, METADONNEES);
+
+        assertThat(comparaison.isComplet()).isTrue();
+        assertThat(comparaison.getChamps()).isEqualTo(data);
+    }
+
+    @Test
+    void seulesLesMetadonneesChangentAucuneEcriture() {
+        String precedente = FirestoreEmpreinte.comparer("sig-1", document("Nid de poule", "NOUVEAU", "t1"),
+                null, METADONNEES).getEmpreinte();
+
+        FirestoreEmpreinte comparaison = FirestoreEmpreinte.comparer("sig-1",
+                document("Nid de poule", "NOUVEAU", "t2"), precedente, METADONNEES);
+
+        assertThat(comparaison.isComplet()).isFalse();
+        assertThat(comparaison.isInchange()).isTrue();
+    }
+
+    @Test
+    void champModifieEnvoyeAvecLesMetadonnees() {
+        String precedente = FirestoreEmpreinte.comparer("sig-1", document("Nid de poule", "NOUVEAU", "t1"),
+                null, METADONNEES).getEmpreinte();
+
+        FirestoreEmpreinte comparaison = FirestoreEmpreinte.comparer("sig-1",
+                document("Nid de poule", "EN_COURS", "t2"), precedente, METADONNEES);
+
+        assertThat(comparaison.isComplet()).isFalse();
+        assertThat(comparaison.getChamps())
+                .containsOnlyKeys("statut", "updatedAt", "source")
+                .containsEntry("statut", "EN_COURS")
+                .containsEntry("updatedAt", "t2");
+    }
+
+    @Test
+    void champDisparuEffaceCoteFirestore() {
+        Map<String, Object> avant = document("Nid de poule", "NOUVEAU", "t1");
+        avant.put("entrepriseConcernee", "Colas");
+        String precedente = FirestoreEmpreinte.comparer("sig-1", avant, null, METADONNEES).getEmpreinte();
+
+        FirestoreEmpreinte comparaison = FirestoreEmpreinte.comparer("sig-1",
+                document("Nid de poule", "NOUVEAU", "t2"), precedente, METADONNEES);
+
+        assertThat(comparaison.getChamps()).containsEntry("entrepriseConcernee", null);
+    }
+
+    @Test
+    void empreinteDUnAutreDocumentDonneUneEcritureComplete() {
+        String precedente = FirestoreEmpreinte.comparer("sig-1", document("Nid de poule", "NOUVEAU", "t1"),
+                null, METADONNEES).getEmpreinte();
+
+        FirestoreEmpreinte comparaison = FirestoreEmpreinte.comparer("sig-2",
+                document("Nid de poule", "NOUVEAU", "t1"), precedente, METADONNEES);
+
+        assertThat(comparaison.isComplet()).isTrue();
+    }
+
+    @Test
+    void empreinteIllisibleDonneUneEcritureComplete() {
+        FirestoreEmpreinte comparaison = FirestoreEmpreinte.comparer("sig-1",
+                document("Nid de poule", "NOUVEAU", "t1"), "pas du json", METADONNEES);
+
+        assertThat(comparaison.isComplet()).isTrue();
+    }
+
+    @Test
+    void updatePartielConserveLesAutresChamps() throws Exception {
+        Map<String, Object> avant = document("Nid de poule", "NOUVEAU", "t1");
+        avant.put("commentaire", "écrit par le mobile");
+        documentStore.set("signalements", "sig-1", avant).get(5, TimeUnit.SECONDS);
+        String precedente = FirestoreEmpreinte.comparer("sig-1", document("Nid de poule", "NOUVEAU", "t1"),
+                null, METADONNEES).getEmpreinte();
+
+        FirestoreEmpreinte.comparer("sig-1", document("Nid de poule", "EN_COURS", "t2"), precedente, METADONNEES)
+                .ecrire(documentStore, "signalements").get(5, TimeUnit.SECONDS);
+
+        Map<String, Object> ecrit = lire("sig-1");
+        assertThat(ecrit).containsEntry("statut", "EN_COURS").containsEntry("commentaire", "écrit par le mobile");
+    }
+
+    @Test
+    void documentSupprimeCoteFirestoreReecritEnEntier() throws Exception {
+        String precedente = FirestoreEmpreinte.comparer("sig-1", document("Nid de poule", "NOUVEAU", "t1"),
+                null, METADONNEES).getEmpreinte();
+
+        FirestoreEmpreinte.comparer("sig-1", document("Nid de poule", "EN_COURS", "t2"), precedente, METADONNEES)
+                .ecrire(documentStore, "signalements").get(5, TimeUnit.SECONDS);
+
+        assertThat(lire("sig-1")).isEqualTo(document("Nid de poule", "EN_COURS", "t2"));
+    }
+
+    @Test
+    void autreErreurRemonteeSansEcritureComplete() {
+        DocumentStore enPanne = mock(DocumentStore.class);
+        when(enPanne.update(anyString(), anyString(), anyMap()))
+                .thenReturn(CompletableFuture.failedFuture(new IOException("délai dépassé")));
+        String precedente = FirestoreEmpreinte.comparer("sig-1", document("Nid de poule", "NOUVEAU", "t1"),
+                null, METADONNEES).getEmpreinte();
+
+        CompletableFuture<Void> ecriture = FirestoreEmpreinte.comparer("sig-1",
+                document("Nid de poule", "EN_COURS", "t2"), precedente, METADONNEES).ecrire(enPanne, "signalements");
+
+        assertThatThrownBy(() -> ecriture.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasRootCauseInstanceOf(IOException.class);
+        verify(enPanne, never()).set(anyString(), anyString(), any());
+    }
+
+    private Map<String, Object> lire(String documentId) throws Exception {
+        return documentStore.getAll("signalements", List.of(documentId))
+                .get(5, TimeUnit.SECONDS).get(0)
+                .data();
+    }
+
+    private static Map<String, Object> document(String titre, String statut, String updatedAt) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("titre", titre);
+        data.put("statut", statut);
+        data.put("updatedAt", updatedAt);
+        data.put("source", "backend");
+        return data;
+    }
+}
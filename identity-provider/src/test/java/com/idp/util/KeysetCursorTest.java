@@ -0,0 +1,70 @@
+package com.idp.util;
+
+import com.idp.exception.BusinessException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeysetCursorTest {
+
+    @Test
+    void encodeEtDecodeRestituentLaPosition() {
+        LocalDateTime createdAt = LocalDateTime.of(2026, 10, 17, 10, 15, 30, 123456000);
+
+        KeysetCursor curseur = KeysetCursor.decode(KeysetCursor.of(createdAt, "sig-42").encode());
+
+        assertThat(curseur.getCreatedAt()).isEqualTo(createdAt);
+        assertThat(curseur.getId()).isEqualTo("sig-42");
+    }
+
+    @Test
+    void idContenantLeSeparateurEstConserve() {
+        LocalDateTime createdAt = LocalDateTime.of(2026, 1, 1, 0, 0);
+
+        KeysetCursor curseur = KeysetCursor.decode(KeysetCursor.of(createdAt, "a|b").encode());
+
+        assertThat(curseur.getId()).isEqualTo("a|b");
+    }
+
+    @Test
+    void encodageUtilisableDansUneUrl() {
+        String token = KeysetCursor.of(LocalDateTime.of(2026, 10, 17, 23, 59, 59), "é?&/+").encode();
+
+        assertThat(token).doesNotContain("+", "/", "=");
+    }
+
+    @Test
+    void curseurQuiNEstPasDuBase64EstRefuse() {
+        assertInvalide("%%%");
+    }
+
+    @Test
+    void curseurSansSeparateurEstRefuse() {
+        assertInvalide(encoder("2026-10-17T10:15:30"));
+    }
+
+    @Test
+    void curseurSansIdEstRefuse() {
+        assertInvalide(encoder("2026-10-17T10:15:30|"));
+    }
+
+    @Test
+    void curseurAvecDateIllisibleEstRefuse() {
+        assertInvalide(encoder("hier|sig-42"));
+    }
+
+    private static void assertInvalide(String token) {
+        assertThatThrownBy(() -> KeysetCursor.decode(token))
+                .isInstanceOf(BusinessException.class)
+                .hasFieldOrPropertyWithValue("code", "INVALID_CURSOR");
+    }
+
+    private static String encoder(String brut) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(brut.getBytes(StandardCharsets.UTF_8));
+    }
+}